@@ -1,24 +1,36 @@
 package com.genesys.knowledge.classification.classifier;
 
+import com.genesys.knowledge.classification.classifier.feature.CachingFeatureEncoder;
+import com.genesys.knowledge.classification.classifier.feature.CorpusStatistics;
+import com.genesys.knowledge.classification.classifier.feature.TermIdFeatureEncoder;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
 import com.genesys.knowledge.classification.exception.CategoryNotFoundException;
 import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
 import com.genesys.knowledge.classification.learner.Learner;
 import com.genesys.knowledge.classification.util.CategoryHandler;
+import com.genesys.knowledge.classification.util.PreprocessedCorpus;
 import com.genesys.knowledge.domain.Category;
 import com.genesys.knowledge.domain.Document;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.mahout.classifier.AbstractVectorClassifier;
+import org.apache.mahout.math.RandomAccessSparseVector;
 import org.apache.mahout.math.Vector;
 import org.apache.mahout.vectorizer.encoders.ConstantValueEncoder;
 import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
 import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 /**
  * Created by rhorilyi on 25.04.2017.
@@ -26,15 +38,34 @@ import java.util.List;
 @Slf4j
 public abstract class AbstractClassifier {
 
-    private final ConstantValueEncoder interceptEncoder = new ConstantValueEncoder("intercept");
-    private final FeatureVectorEncoder featureEncoder = new StaticWordValueEncoder("feature");
+    @Getter
+    private final ConstantValueEncoder interceptEncoder =
+            new ConstantValueEncoder(ClassifierDefaults.DEFAULT_INTERCEPT_ENCODER_NAME);
+    /**
+     * Encoder of tokens, which remembers where tokens are hashed to, see {@link CachingFeatureEncoder}.
+     */
+    @Getter
+    private final FeatureVectorEncoder featureEncoder = new CachingFeatureEncoder(
+            new StaticWordValueEncoder(ClassifierDefaults.DEFAULT_FEATURE_ENCODER_NAME),
+            ClassifierDefaults.DEFAULT_FEATURE_ENCODER_CACHE_SIZE);
+    /**
+     * Statistics of the corpus the classifier is trained on, used to weight tokens by tf-idf.
+     */
+    @Getter
+    private volatile CorpusStatistics corpusStatistics;
+    private volatile TermIdFeatureEncoder termIdEncoder;
 
     @Getter @Setter
     private CategoryHandler categoryHandler;
     @Getter @Setter
-    private AbstractVectorClassifier classifier;
+    private volatile AbstractVectorClassifier classifier;
     @Getter @Setter
-    boolean trained = false;
+    volatile boolean trained = false;
+    /**
+     * Executor which classifies batches of documents, the common fork-join pool if not set.
+     */
+    @Getter @Setter
+    private Executor batchExecutor;
 
     public AbstractClassifier() {
         categoryHandler = new CategoryHandler();
@@ -55,6 +86,11 @@ public abstract class AbstractClassifier {
         categoryHandler.initHandler(documents);
     }
 
+    public AbstractClassifier(PreprocessedCorpus corpus) {
+        this();
+        categoryHandler.initHandler(corpus);
+    }
+
     /**
      * Classifies the specified document calculating {@link Vector}
      * which holds pairs <{@link Category}, confidence score>.
@@ -66,7 +102,7 @@ public abstract class AbstractClassifier {
     public Vector classifyDocument(List<String> tokens, Collection<List<String>> documentTokens)
             throws ClassifierNotTrainedException {
         if (trained) {
-            return classifier.classifyFull(getFeatureVector(tokens, documentTokens));
+            return getScoringClassifier().classifyFull(getFeatureVector(tokens, documentTokens));
         } else {
             throw new ClassifierNotTrainedException();
         }
@@ -75,12 +111,23 @@ public abstract class AbstractClassifier {
     public Vector classifyDocument(Learner.Document document, List<Learner.Document> allDocuments)
             throws ClassifierNotTrainedException {
         if (trained) {
-            return classifier.classifyFull(getFeatureVector(document, allDocuments));
+            return getScoringClassifier().classifyFull(getFeatureVector(document, allDocuments));
         } else {
             throw new ClassifierNotTrainedException();
         }
     }
 
+    /**
+     * Classifies the specified document weighting its tokens by the statistics
+     * of the corpus {@code this} classifier has been built with.
+     *
+     * @param document document to classify
+     * @return {@link Vector} of pairs of categories and their confidence scores respectively
+     */
+    public Vector classifyDocument(Learner.Document document) throws ClassifierNotTrainedException {
+        return classifyDocument(document, Collections.emptyList());
+    }
+
     /**
      * Classifies the specified document calculating top N categories.
      *
@@ -92,57 +139,111 @@ public abstract class AbstractClassifier {
     public List<Vector.Element> classifyDocument(List<String> tokens, int numberOfTopResults, Collection<List<String>> documentTokens)
             throws ClassifierNotTrainedException {
         if (trained) {
-            List<Vector.Element> elements = new ArrayList<>();
-
-            Vector vector = classifier.classifyFull(getFeatureVector(tokens, documentTokens));
-            for (int i = 0; i < vector.size(); i++) {
-                Vector.Element element = vector.getElement(i);
-                elements.add(element);
-            }
-            elements.sort((o1, o2) -> {
-                double confidence1 = o1.get();
-                double confidence2 = o2.get();
-                if (confidence1 == confidence2)
-                    return 0;
-                else if (confidence1 < confidence2)
-                    return 1;
-                else
-                    return -1;
-            });
-
-            return elements.subList(0, numberOfTopResults);
+            Vector vector = getScoringClassifier().classifyFull(getFeatureVector(tokens, documentTokens));
+            return getTopElements(vector, numberOfTopResults);
         } else {
             throw new ClassifierNotTrainedException();
         }
     }
 
+    public List<Vector.Element> classifyDocument(Learner.Document document, int numberOfTopResults)
+            throws ClassifierNotTrainedException {
+        return classifyDocument(document, numberOfTopResults, Collections.emptyList());
+    }
+
     public List<Vector.Element> classifyDocument(Learner.Document document, int numberOfTopResults, List<Learner.Document> allDocuments)
             throws ClassifierNotTrainedException {
         if (trained) {
-            List<Vector.Element> elements = new ArrayList<>();
+            Vector vector = getScoringClassifier().classifyFull(getFeatureVector(document, allDocuments));
+            return getTopElements(vector, numberOfTopResults);
+        } else {
+            throw new ClassifierNotTrainedException();
+        }
+    }
 
-            Vector vector = classifier.classifyFull(getFeatureVector(document, allDocuments));
-            for (int i = 0; i < vector.size(); i++) {
-                Vector.Element element = vector.getElement(i);
-                elements.add(element);
-            }
-            elements.sort((o1, o2) -> {
-                double confidence1 = o1.get();
-                double confidence2 = o2.get();
-                if (confidence1 == confidence2)
-                    return 0;
-                else if (confidence1 < confidence2)
-                    return 1;
-                else
-                    return -1;
-            });
-
-            return elements.subList(0, numberOfTopResults);
+    /**
+     * Classifies the specified document calculating top K categories as a compact {@link TopCategories}.
+     *
+     * @param document document to classify
+     * @param numberOfTopResults number of top categories with the highest confidence level
+     * @return top categories sorted by confidence in descending order
+     */
+    public TopCategories classifyDocumentTopCategories(Learner.Document document, int numberOfTopResults)
+            throws ClassifierNotTrainedException {
+        if (trained) {
+            Vector vector = getScoringClassifier().classifyFull(getFeatureVector(document, Collections.emptyList()));
+            return TopCategories.select(vector, numberOfTopResults, categoryHandler);
         } else {
             throw new ClassifierNotTrainedException();
         }
     }
 
+    /**
+     * Classifies the specified documents in parallel using {@link #batchExecutor}.
+     *
+     * @param documents documents to classify
+     * @return vectors of confidence scores of categories in the order of the documents, and timings of the batch
+     */
+    public BatchClassificationResult<Vector> classifyBatch(List<Learner.Document> documents)
+            throws ClassifierNotTrainedException {
+        return classifyBatch(documents, vector -> vector);
+    }
+
+    /**
+     * Classifies the specified documents in parallel using {@link #batchExecutor} calculating top N categories.
+     *
+     * @param documents documents to classify
+     * @param numberOfTopResults number of top categories with the highest confidence level
+     * @return top categories of every document in the order of the documents, and timings of the batch
+     */
+    public BatchClassificationResult<List<Vector.Element>> classifyBatch(List<Learner.Document> documents,
+                                                                        int numberOfTopResults)
+            throws ClassifierNotTrainedException {
+        return classifyBatch(documents, vector -> getTopElements(vector, numberOfTopResults));
+    }
+
+    private <T> BatchClassificationResult<T> classifyBatch(List<Learner.Document> documents,
+                                                           Function<Vector, T> resultMapper)
+            throws ClassifierNotTrainedException {
+        if (!trained) {
+            throw new ClassifierNotTrainedException();
+        }
+
+        long start = System.nanoTime();
+        // the whole batch is scored with the same model even if another one is published meanwhile
+        AbstractVectorClassifier scoringClassifier = getBatchScoringClassifier();
+        Executor executor = batchExecutor != null ? batchExecutor : ForkJoinPool.commonPool();
+        int chunksNumber = Math.min(documents.size(), 4 * Runtime.getRuntime().availableProcessors());
+        Object[] results = new Object[documents.size()];
+        LongAdder vectorizationNanos = new LongAdder();
+        LongAdder scoringNanos = new LongAdder();
+
+        List<CompletableFuture<Void>> chunks = new ArrayList<>(chunksNumber);
+        for (int chunk = 0; chunk < chunksNumber; chunk++) {
+            int from = (int) ((long) chunk * documents.size() / chunksNumber);
+            int to = (int) ((long) (chunk + 1) * documents.size() / chunksNumber);
+            chunks.add(CompletableFuture.runAsync(() -> {
+                for (int i = from; i < to; i++) {
+                    long vectorizationStart = System.nanoTime();
+                    Vector featureVector = getFeatureVector(documents.get(i), Collections.emptyList());
+                    long scoringStart = System.nanoTime();
+                    Vector scores = scoringClassifier.classifyFull(featureVector);
+                    long scoringEnd = System.nanoTime();
+
+                    results[i] = resultMapper.apply(scores);
+                    vectorizationNanos.add(scoringStart - vectorizationStart);
+                    scoringNanos.add(scoringEnd - scoringStart);
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture[chunks.size()])).join();
+
+        @SuppressWarnings("unchecked")
+        List<T> resultList = (List<T>) Arrays.asList(results);
+        return new BatchClassificationResult<>(resultList, System.nanoTime() - start,
+                vectorizationNanos.sum(), scoringNanos.sum());
+    }
+
     /**
      * Calculates probability that the specified {@link Document} has the specified {@link Category}.
      * If {@code this} LogisticRegressionClassifier's {@link #categoryHandler} doesn't contain the category,
@@ -160,7 +261,7 @@ public abstract class AbstractClassifier {
             double probability;
 
             try {
-                Vector vector = classifier.classifyFull(getFeatureVector(tokens, documentTokens));
+                Vector vector = getScoringClassifier().classifyFull(getFeatureVector(tokens, documentTokens));
                 probability = vector.get(categoryHandler.getCategoryOrderNumber(category));
             } catch (CategoryNotFoundException e) {
                 probability = 0;
@@ -172,6 +273,11 @@ public abstract class AbstractClassifier {
         }
     }
 
+    public double calcCategoryProbability(Learner.Document document, Category category)
+            throws ClassifierNotTrainedException {
+        return calcCategoryProbability(document, category, Collections.emptyList());
+    }
+
     public double calcCategoryProbability(Learner.Document document, Category category,
                                           List<Learner.Document> allDocuments)
             throws ClassifierNotTrainedException {
@@ -179,7 +285,7 @@ public abstract class AbstractClassifier {
             double probability;
 
             try {
-                Vector vector = classifier.classifyFull(getFeatureVector(document, allDocuments));
+                Vector vector = getScoringClassifier().classifyFull(getFeatureVector(document, allDocuments));
                 probability = vector.get(categoryHandler.getCategoryOrderNumber(category));
             } catch (CategoryNotFoundException e) {
                 probability = 0;
@@ -201,17 +307,22 @@ public abstract class AbstractClassifier {
     public String classifyDocumentWithMostConfidentCategory(List<String> tokens, Collection<List<String>> documentTokens)
             throws ClassifierNotTrainedException {
         if (trained) {
-            int index = classifier.classifyFull(getFeatureVector(tokens, documentTokens)).maxValueIndex();
+            int index = getScoringClassifier().classifyFull(getFeatureVector(tokens, documentTokens)).maxValueIndex();
             return categoryHandler.getCategory(index).getId();
         } else {
             throw new ClassifierNotTrainedException();
         }
     }
 
+    public String classifyDocumentWithMostConfidentCategory(Learner.Document document)
+            throws ClassifierNotTrainedException {
+        return classifyDocumentWithMostConfidentCategory(document, Collections.emptyList());
+    }
+
     public String classifyDocumentWithMostConfidentCategory(Learner.Document document, List<Learner.Document> allDocuments)
             throws ClassifierNotTrainedException {
         if (trained) {
-            int index = classifier.classifyFull(getFeatureVector(document, allDocuments)).maxValueIndex();
+            int index = getScoringClassifier().classifyFull(getFeatureVector(document, allDocuments)).maxValueIndex();
             return categoryHandler.getCategory(index).getId();
         } else {
             throw new ClassifierNotTrainedException();
@@ -219,13 +330,75 @@ public abstract class AbstractClassifier {
     }
 
     /**
-     * Gets the vector of features that is used by classifier.
+     * Gets elements of the specified vector of confidence scores with the highest scores in descending order.
+     * All elements are returned if there are fewer than the specified number of them.
+     */
+    private List<Vector.Element> getTopElements(Vector vector, int numberOfTopResults) {
+        TopCategories topCategories = TopCategories.select(vector, numberOfTopResults, categoryHandler);
+        List<Vector.Element> elements = new ArrayList<>(topCategories.size());
+        for (int rank = 0; rank < topCategories.size(); rank++) {
+            elements.add(vector.getElement(topCategories.getIndex(rank)));
+        }
+        return elements;
+    }
+
+    public void setCorpusStatistics(CorpusStatistics corpusStatistics) {
+        this.corpusStatistics = corpusStatistics;
+        termIdEncoder = null;
+    }
+
+    /**
+     * Gets encoder of terms interned into the vocabulary of {@link #corpusStatistics}.
+     */
+    public TermIdFeatureEncoder getTermIdEncoder() {
+        TermIdFeatureEncoder encoder = termIdEncoder;
+        if (encoder == null || encoder.getVocabulary() != corpusStatistics.getVocabulary()) {
+            encoder = new TermIdFeatureEncoder(featureEncoder, corpusStatistics.getVocabulary(), getNumFeatures());
+            termIdEncoder = encoder;
+        }
+        return encoder;
+    }
+
+    /**
+     * Gets the model documents are scored with. It's {@link #classifier} unless a subclass trains
+     * one model and serves classifications from another one.
+     */
+    protected AbstractVectorClassifier getScoringClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Gets the model a batch of documents is scored with from several threads at once. It's
+     * {@link #getScoringClassifier()} unless scoring that model modifies it.
+     */
+    protected AbstractVectorClassifier getBatchScoringClassifier() {
+        return getScoringClassifier();
+    }
+
+    /**
+     * Gets size of feature vectors of the model.
+     */
+    public abstract int getNumFeatures();
+
+    /**
+     * Gets the vector of features that is used by classifier. By default it's the intercept term
+     * followed by the hashed tokens.
      *
      * @param tokens tokens of the document to classify
      * @param documentTokens sets of tokens which appear in all documents
      * @return feature vector
      */
-    public abstract Vector getFeatureVector(List<String> tokens, Collection<List<String>> documentTokens);
+    public Vector getFeatureVector(List<String> tokens, Collection<List<String>> documentTokens) {
+        Vector outputVector = new RandomAccessSparseVector(getNumFeatures());
+
+        getInterceptEncoder().addToVector("1", outputVector); // output[0] is the intercept term
+        // Look at the regression graph on the link below to see why we need the intercept.
+        // http://statistiksoftware.blogspot.nl/2013/01/why-we-need-intercept.html
+        for (String token : tokens) {
+            getFeatureEncoder().addToVector(token, 2, outputVector);
+        }
+        return outputVector;
+    }
 
     public abstract Vector getFeatureVector(Learner.Document document, List<Learner.Document> allDocuments);
 
@@ -0,0 +1,46 @@
+package com.genesys.knowledge.classification.classifier;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Results of classifying a batch of documents in the order of the documents, along with timings of the batch.
+ * <p>
+ * Vectorization and scoring times are summed over all documents, so with parallel classification
+ * they may exceed {@link #elapsedNanos}, which is the wall-clock time of the whole batch.
+ *
+ * @param <T> type of the result of a single document
+ */
+@Getter
+public class BatchClassificationResult<T> {
+
+    private final List<T> results;
+    private final long elapsedNanos;
+    private final long vectorizationNanos;
+    private final long scoringNanos;
+
+    public BatchClassificationResult(List<T> results, long elapsedNanos, long vectorizationNanos, long scoringNanos) {
+        this.results = results;
+        this.elapsedNanos = elapsedNanos;
+        this.vectorizationNanos = vectorizationNanos;
+        this.scoringNanos = scoringNanos;
+    }
+
+    public int getDocumentsNumber() {
+        return results.size();
+    }
+
+    /**
+     * Gets number of documents classified per second of wall-clock time.
+     */
+    public double getThroughput() {
+        return elapsedNanos > 0 ? results.size() * 1e9 / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d documents in %.1f ms (%.0f docs/s), vectorization %.1f ms, scoring %.1f ms",
+                results.size(), elapsedNanos / 1e6, getThroughput(), vectorizationNanos / 1e6, scoringNanos / 1e6);
+    }
+}
@@ -0,0 +1,178 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.classifier.feature.CorpusStatistics;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.learner.Learner;
+import com.genesys.knowledge.classification.util.PrimitiveTfIdf;
+import com.genesys.knowledge.classification.util.TfIdf;
+import com.genesys.knowledge.classification.util.Vocabulary;
+import com.genesys.knowledge.domain.Category;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.Vector;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Nearest centroid (Rocchio) classifier, see {@link CentroidModel}. It's trained in one pass over the corpus
+ * without iterating to convergence, which suits tenants with many categories and few documents per category.
+ * <p>
+ * Documents are weighted by cosine normalized tf-idf of their terms, the same as in {@link PrimitiveTfIdf},
+ * with inverse document frequencies of the corpus the classifier is built with. Feature vectors are indexed
+ * by ids of terms in the vocabulary of the corpus rather than hashed, so terms never collide;
+ * terms out of the vocabulary can't be similar to any category and are left out.
+ */
+@Slf4j
+public class CentroidClassifier extends AbstractClassifier {
+
+    private volatile double[] idfs;
+
+    /**
+     * Creates classifier trained on the specified documents.
+     *
+     * @param documents training documents
+     */
+    public CentroidClassifier(ArrayList<Learner.Document> documents) {
+        super(documents);
+        setCorpusStatistics(CorpusStatistics.build(documents));
+
+        CentroidModel.Builder builder = new CentroidModel.Builder(getCategoryHandler().getCategoriesQuantity(),
+                idfs.length);
+        for (Learner.Document document : documents) {
+            PrimitiveTfIdf.TermWeights weights = getTermWeights(document);
+            for (String categoryId : document.getCategories()) {
+                int category = getCategoryHandler().resolveCategoryOrderNumber(new Category(categoryId));
+                builder.addDocument(category, weights.getTermIds(), weights.getWeights());
+            }
+        }
+        setClassifier(builder.build());
+        setTrained(true);
+    }
+
+    public CentroidClassifier(byte[] modelData) {
+        super();
+        deserializeModel(modelData);
+    }
+
+    @Override
+    public void setCorpusStatistics(CorpusStatistics corpusStatistics) {
+        super.setCorpusStatistics(corpusStatistics);
+        double[] corpusIdfs = new double[corpusStatistics.getTermsNumber()];
+        for (int termId = 0; termId < corpusIdfs.length; termId++) {
+            corpusIdfs[termId] = corpusStatistics.getIdf(termId);
+        }
+        idfs = corpusIdfs;
+    }
+
+    public CentroidModel getModel() {
+        return (CentroidModel) getClassifier();
+    }
+
+    @Override
+    public int getNumFeatures() {
+        return getModel().getNumFeatures();
+    }
+
+    @Override
+    public Vector getFeatureVector(List<String> tokens, Collection<List<String>> documentTokens) {
+        return toVector(getTermWeights(getTermIds(tokens)));
+    }
+
+    @Override
+    public Vector getFeatureVector(Learner.Document document, List<Learner.Document> allDocuments) {
+        return toVector(getTermWeights(document));
+    }
+
+    private Vector toVector(PrimitiveTfIdf.TermWeights weights) {
+        Vector outputVector = new RandomAccessSparseVector(getNumFeatures(), weights.size());
+        int[] termIds = weights.getTermIds();
+        double[] termWeights = weights.getWeights();
+        for (int i = 0; i < termIds.length; i++) {
+            outputVector.setQuick(termIds[i], termWeights[i]);
+        }
+        return outputVector;
+    }
+
+    private PrimitiveTfIdf.TermWeights getTermWeights(Learner.Document document) {
+        int[] termIds;
+        if (document.getVocabulary() != null && document.getVocabulary() == getCorpusStatistics().getVocabulary()) {
+            int[] titleIds = document.getTitle().getTokenIds();
+            int[] bodyIds = document.getBody().getTokenIds();
+            termIds = Arrays.copyOf(titleIds, titleIds.length + bodyIds.length);
+            System.arraycopy(bodyIds, 0, termIds, titleIds.length, bodyIds.length);
+        } else {
+            List<String> tokens = new ArrayList<>(document.getTitle().getTokens());
+            tokens.addAll(document.getBody().getTokens());
+            termIds = getTermIds(tokens);
+        }
+        return getTermWeights(termIds);
+    }
+
+    private PrimitiveTfIdf.TermWeights getTermWeights(int[] termIds) {
+        double[] corpusIdfs = idfs;
+        int known = 0;
+        for (int termId : termIds) {
+            if (termId < corpusIdfs.length) {
+                termIds[known++] = termId;
+            }
+        }
+        return PrimitiveTfIdf.tfIdf(PrimitiveTfIdf.tf(Arrays.copyOf(termIds, known), ClassifierDefaults.DEFAULT_TF_TYPE),
+                corpusIdfs, TfIdf.Normalization.COSINE);
+    }
+
+    /**
+     * Gets ids of the specified tokens in the vocabulary of the corpus, tokens out of it are left out.
+     */
+    private int[] getTermIds(List<String> tokens) {
+        Vocabulary vocabulary = getCorpusStatistics().getVocabulary();
+        int[] termIds = new int[tokens.size()];
+        int known = 0;
+        for (String token : tokens) {
+            int termId = vocabulary.getId(token);
+            if (termId >= 0) {
+                termIds[known++] = termId;
+            }
+        }
+        return Arrays.copyOf(termIds, known);
+    }
+
+    /**
+     * Serializes the model followed by corpus statistics and ids of the categories.
+     */
+    @Override
+    public byte[] serializeModel() {
+        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+
+        try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(byteOutput))) {
+            getModel().write(dataOut);
+            getCorpusStatistics().write(dataOut);
+            getCategoryHandler().write(dataOut);
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+
+        return byteOutput.toByteArray();
+    }
+
+    @Override
+    public void deserializeModel(byte[] modelData) {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(modelData)));
+
+        try {
+            CentroidModel model = new CentroidModel();
+            model.readFields(dataIn);
+            CorpusStatistics corpusStatistics = new CorpusStatistics();
+            corpusStatistics.readFields(dataIn);
+            getCategoryHandler().readFields(dataIn);
+            setCorpusStatistics(corpusStatistics);
+            setClassifier(model);
+            setTrained(true);
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+}
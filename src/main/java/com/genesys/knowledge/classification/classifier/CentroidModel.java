@@ -0,0 +1,290 @@
+package com.genesys.knowledge.classification.classifier;
+
+import lombok.Getter;
+import org.apache.hadoop.io.Writable;
+import org.apache.mahout.classifier.AbstractVectorClassifier;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.list.DoubleArrayList;
+import org.apache.mahout.math.list.IntArrayList;
+import org.apache.mahout.math.map.OpenIntDoubleHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Rocchio classifier which scores a document by cosine similarity of its tf-idf vector to the centroids
+ * of the tf-idf vectors of categories' documents.
+ * <p>
+ * Centroids are stored as an inverted index keyed by term id: the postings of a term are the categories
+ * whose centroids contain the term, with the weight of the term there. Postings of all terms are kept in
+ * flat arrays, {@code offsets[t]} to {@code offsets[t + 1]} is the range of term {@code t}. Scoring walks
+ * the postings of the document's terms only, so it touches only categories sharing terms with the document,
+ * however many categories there are.
+ * <p>
+ * Similarities are normalized to sum to 1, so they take the place of probabilities in {@link AbstractClassifier};
+ * a document sharing no terms with any category gets equal scores of all categories.
+ * Instances are immutable and thread-safe.
+ */
+public class CentroidModel extends AbstractVectorClassifier implements Writable {
+
+    /**
+     * Maximum number of postings, the largest array most JVMs can allocate.
+     */
+    public static final int MAX_POSTINGS = Integer.MAX_VALUE - 8;
+
+    @Getter
+    private int numCategories;
+    private int[] offsets;
+    private int[] categories;
+    private double[] weights;
+
+    /**
+     * Creates empty model to read with {@link #readFields(DataInput)}.
+     */
+    public CentroidModel() {
+        this(0, new int[1], new int[0], new double[0]);
+    }
+
+    public CentroidModel(int numCategories, int[] offsets, int[] categories, double[] weights) {
+        if (categories.length != weights.length || offsets[offsets.length - 1] != categories.length) {
+            throw new IllegalArgumentException("Postings of " + (offsets.length - 1) + " terms are inconsistent.");
+        }
+        this.numCategories = numCategories;
+        this.offsets = offsets;
+        this.categories = categories;
+        this.weights = weights;
+    }
+
+    /**
+     * Number of terms of the index, term ids of scored vectors beyond it are ignored.
+     */
+    public int getNumFeatures() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public int numCategories() {
+        return numCategories;
+    }
+
+    /**
+     * Calculates scores of categories 1 to {@code numCategories - 1}.
+     */
+    @Override
+    public Vector classify(Vector instance) {
+        return new DenseVector(classifyFull(instance).viewPart(1, numCategories - 1));
+    }
+
+    @Override
+    public double classifyScalar(Vector instance) {
+        if (numCategories != 2) {
+            throw new IllegalArgumentException("Can only call classifyScalar with two categories.");
+        }
+        return classifyFull(instance).get(1);
+    }
+
+    /**
+     * Calculates cosine similarities to all categories before normalization.
+     */
+    @Override
+    public Vector classifyNoLink(Vector instance) {
+        return new DenseVector(similarities(instance), true);
+    }
+
+    /**
+     * Calculates normalized similarities of all categories.
+     */
+    @Override
+    public Vector classifyFull(Vector instance) {
+        double[] scores = similarities(instance);
+        double sum = 0;
+        for (double score : scores) {
+            sum += score;
+        }
+        if (sum > 0) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] /= sum;
+            }
+        } else {
+            Arrays.fill(scores, 1.0 / numCategories);
+        }
+        return new DenseVector(scores, true);
+    }
+
+    private double[] similarities(Vector instance) {
+        double[] scores = new double[numCategories];
+        int termsNumber = getNumFeatures();
+        for (Vector.Element element : instance.nonZeroes()) {
+            int termId = element.index();
+            if (termId >= termsNumber) {
+                continue;
+            }
+            double value = element.get();
+            for (int posting = offsets[termId]; posting < offsets[termId + 1]; posting++) {
+                scores[categories[posting]] += value * weights[posting];
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Gets weight of the specified term in the centroid of the specified category.
+     */
+    public double getWeight(int category, int termId) {
+        for (int posting = offsets[termId]; posting < offsets[termId + 1]; posting++) {
+            if (categories[posting] == category) {
+                return weights[posting];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets number of postings of all terms, i.e. number of non-zero weights of all centroids.
+     */
+    public int getPostingsNumber() {
+        return categories.length;
+    }
+
+    /**
+     * Estimates heap occupied by {@code this} model, which is mostly its postings.
+     */
+    public long estimateSizeInBytes() {
+        return 16 + 16 + 3 * 16 + 4L * offsets.length + 12L * categories.length;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(numCategories);
+        out.writeInt(offsets.length - 1);
+        out.writeInt(categories.length);
+        for (int termId = 0; termId < offsets.length - 1; termId++) {
+            out.writeInt(offsets[termId + 1] - offsets[termId]);
+        }
+        for (int posting = 0; posting < categories.length; posting++) {
+            out.writeInt(categories[posting]);
+            out.writeDouble(weights[posting]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int categoriesNumber = in.readInt();
+        int termsNumber = in.readInt();
+        int postingsNumber = in.readInt();
+        if (categoriesNumber < 0 || termsNumber < 0 || termsNumber >= MAX_POSTINGS || postingsNumber < 0
+                || postingsNumber > MAX_POSTINGS) {
+            throw new IOException("Invalid centroid model of " + categoriesNumber + " categories, " + termsNumber
+                    + " terms and " + postingsNumber + " postings.");
+        }
+        int[] readOffsets = new int[termsNumber + 1];
+        for (int termId = 1; termId < readOffsets.length; termId++) {
+            int termPostingsNumber = in.readInt();
+            if (termPostingsNumber < 0 || termPostingsNumber > postingsNumber - readOffsets[termId - 1]) {
+                throw new IOException("Invalid number of postings " + termPostingsNumber + " of term " + (termId - 1)
+                        + " of centroid model of " + postingsNumber + " postings.");
+            }
+            readOffsets[termId] = readOffsets[termId - 1] + termPostingsNumber;
+        }
+        if (readOffsets[termsNumber] != postingsNumber) {
+            throw new IOException("Centroid model of " + postingsNumber + " postings has postings of terms summing to "
+                    + readOffsets[termsNumber] + ".");
+        }
+        int[] readCategories = new int[postingsNumber];
+        double[] readWeights = new double[postingsNumber];
+        for (int posting = 0; posting < postingsNumber; posting++) {
+            readCategories[posting] = in.readInt();
+            if (readCategories[posting] < 0 || readCategories[posting] >= categoriesNumber) {
+                throw new IOException("Invalid category " + readCategories[posting] + " of centroid model of "
+                        + categoriesNumber + " categories.");
+            }
+            readWeights[posting] = in.readDouble();
+        }
+        numCategories = categoriesNumber;
+        offsets = readOffsets;
+        categories = readCategories;
+        weights = readWeights;
+    }
+
+    /**
+     * Sums tf-idf vectors of documents per category in one pass and builds the index of the normalized centroids.
+     * Not thread-safe.
+     */
+    public static class Builder {
+
+        private final int numFeatures;
+        private final OpenIntDoubleHashMap[] sums;
+
+        public Builder(int numCategories, int numFeatures) {
+            this.numFeatures = numFeatures;
+            sums = new OpenIntDoubleHashMap[numCategories];
+            for (int category = 0; category < numCategories; category++) {
+                sums[category] = new OpenIntDoubleHashMap();
+            }
+        }
+
+        /**
+         * Adds the specified cosine normalized tf-idf weights of a document to the centroid of the category.
+         * Terms with ids beyond the number of features are ignored.
+         *
+         * @param category order number of the category
+         * @param termIds ids of the document's terms
+         * @param termWeights weights of the terms
+         * @return {@code this} builder
+         */
+        public Builder addDocument(int category, int[] termIds, double[] termWeights) {
+            OpenIntDoubleHashMap sum = sums[category];
+            for (int i = 0; i < termIds.length; i++) {
+                if (termIds[i] >= numFeatures) {
+                    continue;
+                }
+                sum.adjustOrPutValue(termIds[i], termWeights[i], termWeights[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Builds the index of the normalized centroids. Terms which sum to zero weight get no postings, so
+         * a category whose documents have no weighted terms gets an empty centroid, i.e. zero similarity to
+         * every document, rather than weights divided by its zero norm.
+         */
+        public CentroidModel build() {
+            IntArrayList[] termIds = new IntArrayList[sums.length];
+            DoubleArrayList[] values = new DoubleArrayList[sums.length];
+            int[] offsets = new int[numFeatures + 1];
+            for (int category = 0; category < sums.length; category++) {
+                termIds[category] = new IntArrayList(sums[category].size());
+                values[category] = new DoubleArrayList(sums[category].size());
+                sums[category].pairsMatching((termId, value) -> value != 0, termIds[category], values[category]);
+                for (int i = 0; i < termIds[category].size(); i++) {
+                    offsets[termIds[category].getQuick(i) + 1]++;
+                }
+            }
+            for (int termId = 0; termId < numFeatures; termId++) {
+                offsets[termId + 1] += offsets[termId];
+            }
+
+            int[] categories = new int[offsets[numFeatures]];
+            double[] weights = new double[categories.length];
+            int[] positions = Arrays.copyOf(offsets, numFeatures);
+            // categories are added in ascending order, so postings of every term are sorted by category
+            for (int category = 0; category < sums.length; category++) {
+                double norm = 0;
+                for (int i = 0; i < values[category].size(); i++) {
+                    norm += values[category].getQuick(i) * values[category].getQuick(i);
+                }
+                norm = Math.sqrt(norm);
+
+                for (int i = 0; i < termIds[category].size(); i++) {
+                    int position = positions[termIds[category].getQuick(i)]++;
+                    categories[position] = category;
+                    weights[position] = values[category].getQuick(i) / norm;
+                }
+            }
+            return new CentroidModel(sums.length, offsets, categories, weights);
+        }
+    }
+}
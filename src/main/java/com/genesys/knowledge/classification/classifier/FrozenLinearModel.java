@@ -0,0 +1,247 @@
+package com.genesys.knowledge.classification.classifier;
+
+import lombok.Getter;
+import org.apache.hadoop.io.Writable;
+import org.apache.mahout.classifier.AbstractVectorClassifier;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Matrix;
+import org.apache.mahout.math.Vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Read-only multinomial logistic regression model which keeps only the coefficients of a trained
+ * {@link OnlineLogisticRegression}, without its per-feature update counters, prior and learning rate state.
+ * <p>
+ * As in Mahout, category 0 is the implicit reference category with score 0, so there are
+ * {@code numCategories - 1} coefficients per feature. They are stored in a flat array in feature-major order,
+ * i.e. the coefficients of a feature are adjacent, so scoring a sparse feature vector reads one contiguous
+ * block of the array per non-zero feature and computes the softmax over primitive arrays.
+ * <p>
+ * Weights may be quantized to a lower {@link WeightPrecision}, they are dequantized on the fly while scoring.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class FrozenLinearModel extends AbstractVectorClassifier implements Writable {
+
+    /**
+     * Maximum number of coefficients, which are stored in a single array.
+     */
+    public static final int MAX_WEIGHTS = Integer.MAX_VALUE - 8;
+
+    @Getter
+    private int numCategories;
+    @Getter
+    private int numFeatures;
+    private WeightStore weights;
+
+    /**
+     * Creates empty model to read with {@link #readFields(DataInput)}.
+     */
+    public FrozenLinearModel() {
+        weights = WeightStore.of(new double[0], 0, WeightPrecision.DOUBLE);
+    }
+
+    public FrozenLinearModel(int numCategories, int numFeatures, double[] weights) {
+        this(numCategories, numFeatures, WeightStore.of(weights, numCategories - 1, WeightPrecision.DOUBLE));
+    }
+
+    public FrozenLinearModel(int numCategories, int numFeatures, WeightStore weights) {
+        if (weights.size() != (long) (numCategories - 1) * numFeatures || weights.getStride() != numCategories - 1) {
+            throw new IllegalArgumentException("Expected " + (long) (numCategories - 1) * numFeatures
+                    + " weights but got " + weights.size() + ".");
+        }
+        this.numCategories = numCategories;
+        this.numFeatures = numFeatures;
+        this.weights = weights;
+    }
+
+    /**
+     * Copies coefficients of the specified model into a frozen one.
+     *
+     * @param model trained model
+     * @return frozen model which scores documents the same as the trained one
+     */
+    public static FrozenLinearModel of(OnlineLogisticRegression model) {
+        return of(model, WeightPrecision.DOUBLE);
+    }
+
+    /**
+     * Copies coefficients of the specified model into a frozen one quantizing them to the specified precision.
+     *
+     * @param model trained model
+     * @param precision precision to store coefficients with
+     * @return frozen model
+     */
+    public static FrozenLinearModel of(OnlineLogisticRegression model, WeightPrecision precision) {
+        long size = (long) (model.numCategories() - 1) * model.numFeatures();
+        if (size > MAX_WEIGHTS) {
+            throw new IllegalArgumentException("Model of " + model.numCategories() + " categories and "
+                    + model.numFeatures() + " features has " + size + " coefficients, at most " + MAX_WEIGHTS
+                    + " can be frozen.");
+        }
+
+        // the trained model applies regularization lazily, sealing a copy applies what's pending
+        // without touching the model itself, so the frozen model scores like the trained one
+        OnlineLogisticRegression sealed = LogisticRegressionClassifier.copyOf(model);
+        sealed.close();
+        Matrix beta = sealed.getBeta();
+        int rows = beta.rowSize();
+        int columns = beta.columnSize();
+        double[] weights = new double[(int) size];
+        for (int category = 0; category < rows; category++) {
+            for (Vector.Element element : beta.viewRow(category).nonZeroes()) {
+                weights[element.index() * rows + category] = element.get();
+            }
+        }
+        return new FrozenLinearModel(rows + 1, columns, WeightStore.of(weights, rows, precision));
+    }
+
+    /**
+     * Gets copy of {@code this} model with weights quantized to the specified precision. Quantizing an already
+     * quantized model compounds the rounding errors, so quantize the model exported at the full precision.
+     *
+     * @param precision precision to store weights with
+     * @return quantized model
+     */
+    public FrozenLinearModel quantize(WeightPrecision precision) {
+        double[] dequantized = new double[weights.size()];
+        for (int i = 0; i < dequantized.length; i++) {
+            dequantized[i] = weights.get(i);
+        }
+        return new FrozenLinearModel(numCategories, numFeatures, WeightStore.of(dequantized, numCategories - 1, precision));
+    }
+
+    public WeightPrecision getPrecision() {
+        return weights.getPrecision();
+    }
+
+    @Override
+    public int numCategories() {
+        return numCategories;
+    }
+
+    /**
+     * Calculates scores of categories 1 to {@code numCategories - 1} before the link function.
+     */
+    @Override
+    public Vector classifyNoLink(Vector instance) {
+        return new DenseVector(score(instance), true);
+    }
+
+    @Override
+    public Vector classify(Vector instance) {
+        double[] scores = score(instance);
+        softmax(scores);
+        return new DenseVector(scores, true);
+    }
+
+    @Override
+    public double classifyScalar(Vector instance) {
+        if (numCategories != 2) {
+            throw new IllegalArgumentException("Can only call classifyScalar with two categories.");
+        }
+        return 1 / (1 + Math.exp(-score(instance)[0]));
+    }
+
+    /**
+     * Calculates probabilities of all categories including category 0.
+     */
+    @Override
+    public Vector classifyFull(Vector instance) {
+        double[] scores = score(instance);
+        double[] probabilities = new double[numCategories];
+        System.arraycopy(scores, 0, probabilities, 1, scores.length);
+        softmax(probabilities);
+        return new DenseVector(probabilities, true);
+    }
+
+    private double[] score(Vector instance) {
+        double[] scores = new double[numCategories - 1];
+        for (Vector.Element element : instance.nonZeroes()) {
+            weights.addFeature(element.index(), element.get(), scores);
+        }
+        weights.finish(scores);
+        return scores;
+    }
+
+    /**
+     * Replaces scores by probabilities in place. If {@code scores} is one shorter than the number of categories,
+     * the implicit score 0 of category 0 takes part in the normalization but isn't returned, as in {@link #classify}.
+     */
+    private void softmax(double[] scores) {
+        boolean implicitReference = scores.length < numCategories;
+        double max = implicitReference ? 0 : Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+
+        double sum = implicitReference ? Math.exp(-max) : 0;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = Math.exp(scores[i] - max);
+            sum += scores[i];
+        }
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] /= sum;
+        }
+    }
+
+    /**
+     * Gets coefficient of the specified feature for the specified category.
+     *
+     * @param category category from 1 to {@code numCategories - 1}
+     * @param feature feature index
+     * @return coefficient
+     */
+    public double getWeight(int category, int feature) {
+        return weights.get(feature * (numCategories - 1) + category - 1);
+    }
+
+    /**
+     * Estimates heap occupied by {@code this} model, which is mostly its weights.
+     */
+    public long estimateSizeInBytes() {
+        return 16 + 16 + weights.estimateSizeInBytes();
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        write(out, -1);
+    }
+
+    /**
+     * Writes {@code this} model aligning its weights to 8 bytes from the beginning of the file,
+     * see {@link WeightStore#write(DataOutput, long)}.
+     *
+     * @param out output to write to
+     * @param position position of {@code out} in the file, negative not to align the weights
+     */
+    public void write(DataOutput out, long position) throws IOException {
+        out.writeInt(numCategories);
+        out.writeInt(numFeatures);
+        weights.write(out, position < 0 ? position : position + 8);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int categoriesNumber = in.readInt();
+        int featuresNumber = in.readInt();
+        if (categoriesNumber < 1 || featuresNumber < 0
+                || (long) (categoriesNumber - 1) * featuresNumber > MAX_WEIGHTS) {
+            throw new IOException("Invalid frozen model of " + categoriesNumber + " categories and "
+                    + featuresNumber + " features.");
+        }
+        WeightStore weightStore = WeightStore.read(in);
+        if (weightStore.size() != (categoriesNumber - 1) * featuresNumber
+                || weightStore.getStride() != categoriesNumber - 1) {
+            throw new IOException("Frozen model of " + categoriesNumber + " categories and " + featuresNumber
+                    + " features has " + weightStore.size() + " weights.");
+        }
+        numCategories = categoriesNumber;
+        numFeatures = featuresNumber;
+        weights = weightStore;
+    }
+}
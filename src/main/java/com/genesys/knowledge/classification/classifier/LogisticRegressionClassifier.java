@@ -1,30 +1,33 @@
 package com.genesys.knowledge.classification.classifier;
 
+import com.genesys.knowledge.classification.classifier.feature.CorpusStatistics;
+import com.genesys.knowledge.classification.classifier.feature.FeatureSpaceSizer;
 import com.genesys.knowledge.classification.classifier.feature.FeatureVectorHandlerImpl;
 import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.defaults.LearnerDefaults;
 import com.genesys.knowledge.classification.defaults.LogisticRegressionDefaults;
-import com.genesys.knowledge.classification.exception.CategoryNotFoundException;
 import com.genesys.knowledge.classification.learner.Learner;
-import com.genesys.knowledge.classification.util.DocumentHandler;
+import com.genesys.knowledge.classification.util.CategoryHandler;
+import com.genesys.knowledge.classification.util.CorpusPreprocessor;
+import com.genesys.knowledge.classification.util.PreprocessedCorpus;
 import com.genesys.knowledge.classification.util.TfIdf;
 import com.genesys.knowledge.domain.Category;
 import com.genesys.knowledge.domain.Document;
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.io.Writable;
+import org.apache.mahout.classifier.AbstractVectorClassifier;
 import org.apache.mahout.classifier.sgd.L2;
 import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
 import org.apache.mahout.classifier.sgd.PolymorphicWritable;
-import org.apache.mahout.math.RandomAccessSparseVector;
 import org.apache.mahout.math.Vector;
-import org.apache.mahout.vectorizer.encoders.ConstantValueEncoder;
-import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
-import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.genesys.knowledge.classification.util.TfIdf.*;
 
@@ -34,10 +37,18 @@ import static com.genesys.knowledge.classification.util.TfIdf.*;
 @Slf4j
 public class LogisticRegressionClassifier extends AbstractClassifier {
 
-    @Getter
-    private final ConstantValueEncoder interceptEncoder = new ConstantValueEncoder("intercept");
-    @Getter
-    private final FeatureVectorEncoder featureEncoder = new StaticWordValueEncoder("feature");
+    /**
+     * Sealed copy of the trained model classifications are scored with while snapshots are published,
+     * otherwise {@code null} and the trained model itself is used. Scoring the trained model applies its pending
+     * regularization, which writes the coefficients, so without snapshots classifications mustn't run
+     * while the classifier is trained.
+     */
+    private volatile OnlineLogisticRegression publishedModel;
+    private boolean snapshotPublishing;
+    private int snapshotUpdatesInterval;
+    private long snapshotTimeIntervalMillis;
+    private int updatesSinceSnapshot;
+    private long lastSnapshotTime;
 
     public LogisticRegressionClassifier() {
         this(ClassifierDefaults.DEFAULT_NUM_CATEGORIES, ClassifierDefaults.DEFAULT_NUM_FEATURES);
@@ -54,11 +65,26 @@ public class LogisticRegressionClassifier extends AbstractClassifier {
     }
 
     public LogisticRegressionClassifier(List<Document> documents) {
-        super(documents);
+        this(new CorpusPreprocessor().preprocess(documents));
+    }
+
+    /**
+     * Creates classifier for the documents of the specified corpus, which is sized by the statistics collected
+     * while the corpus was tokenized, so the documents aren't tokenized again. The number of features is
+     * chosen by {@link #sizeFeatureSpace(long, int)}.
+     *
+     * @param corpus preprocessed corpus
+     */
+    public LogisticRegressionClassifier(PreprocessedCorpus corpus) {
+        this(corpus, sizeFeatureSpace(corpus.getEstimatedVocabularySize(), corpus.getCategoryCounts().size()));
+    }
+
+    public LogisticRegressionClassifier(PreprocessedCorpus corpus, int featuresNumber) {
+        super(corpus);
 
         setClassifier(new OnlineLogisticRegression(
                 getCategoryHandler().getCategoriesQuantity(),
-                DocumentHandler.findMaxNumberOfTokens(documents),
+                featuresNumber,
                 new L2())
                 .learningRate(LogisticRegressionDefaults.DEFAULT_LR_LEARNING_RATE)
                 .alpha(LogisticRegressionDefaults.DEFAULT_LR_ALPHA)
@@ -68,12 +94,23 @@ public class LogisticRegressionClassifier extends AbstractClassifier {
         );
     }
 
+    /**
+     * Creates classifier for the specified tokenized documents. The number of features is chosen by
+     * {@link #sizeFeatureSpace(long, int)}.
+     *
+     * @param documents documents of the corpus
+     */
     public LogisticRegressionClassifier(ArrayList<Learner.Document> documents) {
+        this(documents, sizeFeatureSpace(documents));
+    }
+
+    public LogisticRegressionClassifier(ArrayList<Learner.Document> documents, int featuresNumber) {
         super(documents);
+        setCorpusStatistics(CorpusStatistics.build(documents));
 
         setClassifier(new OnlineLogisticRegression(
                 getCategoryHandler().getCategoriesQuantity(),
-                DocumentHandler.findMaxNumberOfTokens(documents),
+                featuresNumber,
                 new L2())
                 .learningRate(LogisticRegressionDefaults.DEFAULT_LR_LEARNING_RATE)
                 .alpha(LogisticRegressionDefaults.DEFAULT_LR_ALPHA)
@@ -83,6 +120,59 @@ public class LogisticRegressionClassifier extends AbstractClassifier {
         );
     }
 
+    private static int sizeFeatureSpace(List<Learner.Document> documents) {
+        FeatureSpaceSizer sizer = new FeatureSpaceSizer();
+        Set<String> categoryIds = new HashSet<>();
+        for (Learner.Document document : documents) {
+            sizer.addDocument(document);
+            categoryIds.addAll(document.getCategories());
+        }
+        return sizeFeatureSpace(sizer.estimateVocabularySize(), categoryIds.size());
+    }
+
+    /**
+     * Gets number of features which keeps {@link ClassifierDefaults#DEFAULT_FEATURE_COLLISION_RATE} of the specified
+     * vocabulary colliding, see {@link FeatureSpaceSizer}, as long as the model, its published snapshot and a replica
+     * per each of {@link LearnerDefaults#DEFAULT_TRAINING_THREADS_NUMBER} training threads fit into
+     * {@link ClassifierDefaults#DEFAULT_MAX_MODEL_WEIGHTS_BYTES}.
+     *
+     * @param vocabularySize number of distinct terms of the corpus
+     * @param categoriesNumber number of categories of the corpus
+     * @return number of features
+     */
+    public static int sizeFeatureSpace(long vocabularySize, int categoriesNumber) {
+        int featuresNumber = FeatureSpaceSizer.numFeatures(vocabularySize,
+                ClassifierDefaults.DEFAULT_FEATURE_COLLISION_RATE, Math.max(1, categoriesNumber),
+                LearnerDefaults.DEFAULT_TRAINING_THREADS_NUMBER + 2);
+        log.info("Feature space of {} categories sized for about {} terms, expected {}", categoriesNumber,
+                vocabularySize, FeatureSpaceSizer.expectedCollisions(vocabularySize, featuresNumber));
+        return featuresNumber;
+    }
+
+    /**
+     * Creates classifier from statistics collected beforehand, e.g. while streaming a dataset.
+     *
+     * @param categoryIds ids of all categories of the corpus
+     * @param featuresNumber number of features
+     * @param corpusStatistics statistics of the corpus
+     */
+    public LogisticRegressionClassifier(Collection<String> categoryIds, int featuresNumber,
+                                        CorpusStatistics corpusStatistics) {
+        super();
+        for (String categoryId : categoryIds) {
+            getCategoryHandler().addCategory(new Category(categoryId));
+        }
+        setCorpusStatistics(corpusStatistics);
+
+        setClassifier(new OnlineLogisticRegression(getCategoryHandler().getCategoriesQuantity(), featuresNumber, new L2())
+                .learningRate(LogisticRegressionDefaults.DEFAULT_LR_LEARNING_RATE)
+                .alpha(LogisticRegressionDefaults.DEFAULT_LR_ALPHA)
+                .lambda(LogisticRegressionDefaults.DEFAULT_LR_LAMBDA)
+                .stepOffset(LogisticRegressionDefaults.DEFAULT_LR_STEP_OFFSET)
+                .decayExponent(LogisticRegressionDefaults.DEFAULT_LR_DECAY_EXPONENT)
+        );
+    }
+
     public LogisticRegressionClassifier(byte[] modelData) {
         super();
         deserializeModel(modelData);
@@ -114,43 +204,206 @@ public class LogisticRegressionClassifier extends AbstractClassifier {
         return train(document, new Category(categoryId), allDocuments);
     }
 
+    /**
+     * Trains {@code this} classifier model with the already encoded feature vector of a document and
+     * the specified {@link Category}.
+     *
+     * @param featureVector feature vector of the document, see {@link #getFeatureVector(Learner.Document, List)}
+     * @param category category to map the document
+     * @return {@code this} LogisticRegressionClassifier
+     */
+    public LogisticRegressionClassifier train(Vector featureVector, Category category) {
+        int categoryOrderNumber = resolveCategoryOrderNumber(category);
+        trainOnlineLogisticRegression(categoryOrderNumber, featureVector);
+        return this;
+    }
+
     private void trainOnlineLogisticRegression(List<String> tokens, Category category,
                                                Collection<List<String>> documentTokens) {
-        int categoryOrderNumber;
-        try {
-            categoryOrderNumber = getCategoryHandler().getCategoryOrderNumber(category);
-        } catch (CategoryNotFoundException e) {
-            getCategoryHandler().addCategory(category);
-            categoryOrderNumber = getCategoryHandler().getCategoriesQuantity() - 1;
-        }
-        ((OnlineLogisticRegression) getClassifier()).train(categoryOrderNumber, getFeatureVector(tokens, documentTokens));
-        setTrained(true);
+        int categoryOrderNumber = resolveCategoryOrderNumber(category);
+        trainOnlineLogisticRegression(categoryOrderNumber, getFeatureVector(tokens, documentTokens));
     }
 
     private void trainOnlineLogisticRegression(Learner.Document document, Category category,
                                                List<Learner.Document> allDocuments) {
-        int categoryOrderNumber;
-        try {
-            categoryOrderNumber = getCategoryHandler().getCategoryOrderNumber(category);
-        } catch (CategoryNotFoundException e) {
-            getCategoryHandler().addCategory(category);
-            categoryOrderNumber = getCategoryHandler().getCategoriesQuantity() - 1;
-        }
-        ((OnlineLogisticRegression) getClassifier()).train(categoryOrderNumber, getFeatureVector(document, allDocuments));
+        int categoryOrderNumber = resolveCategoryOrderNumber(category);
+        trainOnlineLogisticRegression(categoryOrderNumber, getFeatureVector(document, allDocuments));
+    }
+
+    private synchronized void trainOnlineLogisticRegression(int categoryOrderNumber, Vector featureVector) {
+        getTrainableModel().train(categoryOrderNumber, featureVector);
         setTrained(true);
+
+        if (snapshotPublishing) {
+            updatesSinceSnapshot++;
+            if ((snapshotUpdatesInterval > 0 && updatesSinceSnapshot >= snapshotUpdatesInterval)
+                    || (snapshotTimeIntervalMillis > 0
+                    && System.currentTimeMillis() - lastSnapshotTime >= snapshotTimeIntervalMillis)) {
+                publishSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Switches {@code this} classifier to training a private model while classifications are scored
+     * with its snapshot. The current model is published at once, then a new snapshot replaces the previous one
+     * after every {@code updatesInterval} training examples or once {@code timeIntervalMillis} have passed
+     * since the previous snapshot, whichever comes first. The time is checked when an example is trained,
+     * {@link #publishSnapshot()} publishes pending updates at any moment.
+     * <p>
+     * Readers never lock and always see a complete model: a snapshot is a sealed copy which isn't changed
+     * after it's published, and it's swapped by a single volatile write.
+     *
+     * @param updatesInterval number of training examples between snapshots, 0 not to count them
+     * @param timeIntervalMillis milliseconds between snapshots, 0 not to check the time
+     */
+    public synchronized void enableSnapshotPublishing(int updatesInterval, long timeIntervalMillis) {
+        snapshotUpdatesInterval = updatesInterval;
+        snapshotTimeIntervalMillis = timeIntervalMillis;
+        snapshotPublishing = true;
+        publishSnapshot();
+    }
+
+    /**
+     * Stops publishing snapshots, classifications are scored with the trained model again,
+     * so they mustn't run at the same time as training any more.
+     */
+    public synchronized void disableSnapshotPublishing() {
+        snapshotPublishing = false;
+        publishedModel = null;
+    }
+
+    public boolean isSnapshotPublishingEnabled() {
+        return publishedModel != null;
+    }
+
+    /**
+     * Publishes a snapshot of the trained model to classifications, if snapshot publishing is enabled.
+     */
+    public synchronized void publishSnapshot() {
+        if (!snapshotPublishing) {
+            return;
+        }
+        if (isFrozen()) {
+            // a frozen model is immutable itself, it's scored directly
+            publishedModel = null;
+            return;
+        }
+        OnlineLogisticRegression snapshot = copyOf(getTrainableModel());
+        // a sealed model doesn't apply pending regularization while classifying, so it's never modified by readers
+        snapshot.close();
+        publishedModel = snapshot;
+        updatesSinceSnapshot = 0;
+        lastSnapshotTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Copies the specified model into a new one leaving the model itself untouched, unlike
+     * {@link OnlineLogisticRegression#copy()}, which seals the copied model. The weight of the prior
+     * isn't copied by {@link OnlineLogisticRegression#copyFrom}, so the copy gets the default one.
+     *
+     * @param model model to copy
+     * @return trainable copy of the model
+     */
+    public static OnlineLogisticRegression copyOf(OnlineLogisticRegression model) {
+        OnlineLogisticRegression copy = new OnlineLogisticRegression(model.numCategories(), model.numFeatures(),
+                new L2()).lambda(LogisticRegressionDefaults.DEFAULT_LR_LAMBDA);
+        copy.copyFrom(model);
+        return copy;
+    }
+
+    /**
+     * Exports {@code this} trained classifier into a read-only one, which scores documents the same way
+     * but keeps only the coefficients of the model in a {@link FrozenLinearModel}. The frozen classifier shares
+     * categories and corpus statistics with {@code this} one, training it throws {@link IllegalStateException}.
+     *
+     * @return frozen classifier
+     */
+    public LogisticRegressionClassifier freeze() {
+        return freeze(WeightPrecision.DOUBLE);
+    }
+
+    /**
+     * Exports {@code this} trained classifier into a read-only one, see {@link #freeze()},
+     * quantizing the coefficients to the specified precision.
+     *
+     * @param precision precision to store coefficients with
+     * @return frozen classifier
+     */
+    public synchronized LogisticRegressionClassifier freeze(WeightPrecision precision) {
+        LogisticRegressionClassifier frozen = new LogisticRegressionClassifier(
+                FrozenLinearModel.of(getTrainableModel(), precision), getCategoryHandler(), getCorpusStatistics());
+        frozen.setTrained(isTrained());
+        return frozen;
+    }
+
+    /**
+     * Creates classifier from its parts, e.g. read from a model file.
+     *
+     * @param model either a trainable {@link OnlineLogisticRegression} or a {@link FrozenLinearModel}
+     * @param categoryHandler categories of the model
+     * @param corpusStatistics statistics of the corpus the model is trained on
+     */
+    public LogisticRegressionClassifier(AbstractVectorClassifier model, CategoryHandler categoryHandler,
+                                        CorpusStatistics corpusStatistics) {
+        super(model);
+        setCategoryHandler(categoryHandler);
+        setCorpusStatistics(corpusStatistics);
+    }
+
+    public boolean isFrozen() {
+        return getClassifier() instanceof FrozenLinearModel;
     }
 
+    /**
+     * Gets size of feature vectors of the model.
+     */
     @Override
-    public Vector getFeatureVector(List<String> tokens, Collection<List<String>> documentTokens) {
-        Vector outputVector = new RandomAccessSparseVector(((OnlineLogisticRegression) getClassifier()).numFeatures());
-
-        interceptEncoder.addToVector("1", outputVector); // output[0] is the intercept term
-        // Look at the regression graph on the link below to see why we need the intercept.
-        // http://statistiksoftware.blogspot.nl/2013/01/why-we-need-intercept.html
-        for (String token : tokens) {
-            featureEncoder.addToVector(token, 2, outputVector);
+    public int getNumFeatures() {
+        AbstractVectorClassifier model = getClassifier();
+        return model instanceof FrozenLinearModel
+                ? ((FrozenLinearModel) model).getNumFeatures()
+                : ((OnlineLogisticRegression) model).numFeatures();
+    }
+
+    private OnlineLogisticRegression getTrainableModel() {
+        if (isFrozen()) {
+            throw new IllegalStateException("Frozen classifier can't be trained.");
         }
-        return outputVector;
+        return (OnlineLogisticRegression) getClassifier();
+    }
+
+    @Override
+    protected AbstractVectorClassifier getScoringClassifier() {
+        OnlineLogisticRegression snapshot = publishedModel;
+        return snapshot != null ? snapshot : getClassifier();
+    }
+
+    /**
+     * Gets the published snapshot or the frozen model, which aren't modified by scoring. Otherwise every thread
+     * of the batch would apply the pending regularization of the trained model at once, so the batch is scored
+     * with a sealed copy of the trained model instead.
+     */
+    @Override
+    protected AbstractVectorClassifier getBatchScoringClassifier() {
+        AbstractVectorClassifier model = getScoringClassifier();
+        if (!(model instanceof OnlineLogisticRegression) || model == publishedModel) {
+            return model;
+        }
+        OnlineLogisticRegression copy = copyOf((OnlineLogisticRegression) model);
+        copy.close();
+        return copy;
+    }
+
+    /**
+     * Gets order number of the specified {@link Category} adding the category
+     * to {@code this} classifier's category handler if it isn't there yet.
+     *
+     * @param category category to resolve
+     * @return order number of the category
+     */
+    public int resolveCategoryOrderNumber(Category category) {
+        return getCategoryHandler().resolveCategoryOrderNumber(category);
     }
 
     @Override
@@ -164,13 +417,21 @@ public class LogisticRegressionClassifier extends AbstractClassifier {
 //        return tfIdf(tf, idf, Normalization.COSINE).get(targetToken);
 //    }
 
+    /**
+     * Serializes the model followed by corpus statistics, if there are any, and ids of the categories.
+     */
     @Override
     public byte[] serializeModel() {
         ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(byteOutput));
 
-        try {
-            PolymorphicWritable.write(dataOut, (OnlineLogisticRegression) getClassifier());
+        try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(byteOutput))) {
+            PolymorphicWritable.write(dataOut, (Writable) getClassifier());
+            CorpusStatistics corpusStatistics = getCorpusStatistics();
+            dataOut.writeBoolean(corpusStatistics != null);
+            if (corpusStatistics != null) {
+                corpusStatistics.write(dataOut);
+            }
+            getCategoryHandler().write(dataOut);
         } catch (IOException e) {
             log.error(e.getMessage());
         }
@@ -178,14 +439,64 @@ public class LogisticRegressionClassifier extends AbstractClassifier {
         return byteOutput.toByteArray();
     }
 
+    /**
+     * Serializes the model frozen at the specified precision followed by corpus statistics,
+     * so the serialized model is smaller but can't be trained further. A classifier which is frozen already
+     * is serialized as it is.
+     *
+     * @param precision precision to store coefficients with
+     * @return serialized frozen model
+     */
+    public byte[] serializeModel(WeightPrecision precision) {
+        return (isFrozen() ? this : freeze(precision)).serializeModel();
+    }
+
+    /**
+     * Creates classifier from its serialized model, see {@link #serializeModel()}. Unlike
+     * {@link #LogisticRegressionClassifier(byte[])}, which logs errors, it fails if the model can't be read,
+     * so a half-read classifier is never returned. A trainable model is sealed, so the classifier can be shared
+     * by threads classifying at once without them applying pending regularization to the model; training it
+     * unseals the model again.
+     *
+     * @param modelData serialized model
+     * @return classifier of the model
+     * @throws IOException if the model is corrupt or truncated
+     */
+    public static LogisticRegressionClassifier fromSerializedModel(byte[] modelData) throws IOException {
+        LogisticRegressionClassifier classifier =
+                new LogisticRegressionClassifier((AbstractVectorClassifier) null, new CategoryHandler(), null);
+        classifier.readModel(modelData);
+        if (classifier.getClassifier() instanceof OnlineLogisticRegression) {
+            ((OnlineLogisticRegression) classifier.getClassifier()).close();
+        }
+        return classifier;
+    }
+
     @Override
     public void deserializeModel(byte[] modelData) {
-        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(modelData)));
-
         try {
-            setClassifier(PolymorphicWritable.read(dataIn, OnlineLogisticRegression.class));
+            readModel(modelData);
         } catch (IOException e) {
             log.error(e.getMessage());
         }
     }
+
+    private void readModel(byte[] modelData) throws IOException {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(modelData)));
+
+        // the model is either a trainable OnlineLogisticRegression or a FrozenLinearModel
+        setClassifier((AbstractVectorClassifier) PolymorphicWritable.read(dataIn, Writable.class));
+        // models serialized without corpus statistics end right after the regression
+        if (dataIn.available() > 0 && dataIn.readBoolean()) {
+            CorpusStatistics corpusStatistics = new CorpusStatistics();
+            corpusStatistics.readFields(dataIn);
+            setCorpusStatistics(corpusStatistics);
+        }
+        // as well as categories, which were added to the serialized form after corpus statistics
+        if (dataIn.available() > 0) {
+            getCategoryHandler().readFields(dataIn);
+        }
+        setTrained(true);
+        publishSnapshot();
+    }
 }
@@ -0,0 +1,170 @@
+package com.genesys.knowledge.classification.classifier;
+
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Weights read in place from a buffer, usually a memory-mapped model file, without being copied onto the heap.
+ * The buffer holds weights in the layout written by {@link WeightStore#write(DataOutput, long)}, big-endian
+ * as all data written through {@link DataOutput}.
+ * <p>
+ * Thread-safe: every read uses absolute positions of buffers which aren't modified after the store is created.
+ */
+public class MappedWeightStore extends WeightStore {
+
+    private final WeightPrecision precision;
+    private final int size;
+    private final double[] scales;
+    private final DoubleBuffer doubles;
+    private final ShortBuffer halves;
+    private final ByteBuffer bytes;
+
+    private MappedWeightStore(WeightPrecision precision, int stride, int size, double[] scales, ByteBuffer weights) {
+        super(stride);
+        this.precision = precision;
+        this.size = size;
+        this.scales = scales;
+        doubles = precision == WeightPrecision.DOUBLE ? weights.asDoubleBuffer() : null;
+        halves = precision == WeightPrecision.FLOAT16 ? weights.asShortBuffer() : null;
+        bytes = precision == WeightPrecision.INT8 ? weights : null;
+    }
+
+    /**
+     * Creates store of the weights starting at the position of the specified buffer
+     * and moves the position of the buffer right after them.
+     *
+     * @param buffer buffer with weights written by {@link WeightStore#write(DataOutput, long)}
+     * @return store reading weights from the buffer
+     * @throws IOException if the buffer doesn't hold valid weights, e.g. it's cut off
+     */
+    public static MappedWeightStore map(ByteBuffer buffer) throws IOException {
+        require(buffer, 1 + 4 + 4);
+        WeightPrecision precision = readPrecision(buffer.get());
+        int stride = buffer.getInt();
+        int size = buffer.getInt();
+        checkSize(stride, size);
+        double[] scales = new double[precision == WeightPrecision.INT8 ? stride : 0];
+        require(buffer, 8L * scales.length + 1);
+        for (int i = 0; i < scales.length; i++) {
+            scales[i] = buffer.getDouble();
+        }
+        int padding = readPadding(buffer.get());
+        long bytesNumber = (long) size * bytesPerWeight(precision);
+        require(buffer, padding + bytesNumber);
+        buffer.position(buffer.position() + padding);
+
+        ByteBuffer weights = buffer.slice();
+        weights.limit((int) bytesNumber);
+        buffer.position(buffer.position() + (int) bytesNumber);
+        return new MappedWeightStore(precision, stride, size, scales, weights);
+    }
+
+    private static void require(ByteBuffer buffer, long bytesNumber) throws IOException {
+        if (buffer.remaining() < bytesNumber) {
+            throw new EOFException("Weights need " + bytesNumber + " more bytes, but only " + buffer.remaining()
+                    + " are left.");
+        }
+    }
+
+    private static int bytesPerWeight(WeightPrecision precision) {
+        switch (precision) {
+            case FLOAT16:
+                return 2;
+            case INT8:
+                return 1;
+            default:
+                return 8;
+        }
+    }
+
+    @Override
+    public WeightPrecision getPrecision() {
+        return precision;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int index) {
+        switch (precision) {
+            case FLOAT16:
+                return halfToFloat(halves.get(index));
+            case INT8:
+                return bytes.get(index) * scales[index % stride];
+            default:
+                return doubles.get(index);
+        }
+    }
+
+    @Override
+    public void addFeature(int feature, double value, double[] accumulators) {
+        int offset = feature * stride;
+        switch (precision) {
+            case FLOAT16:
+                for (int i = 0; i < stride; i++) {
+                    accumulators[i] += value * halfToFloat(halves.get(offset + i));
+                }
+                break;
+            case INT8:
+                // scales are applied once in finish
+                for (int i = 0; i < stride; i++) {
+                    accumulators[i] += value * bytes.get(offset + i);
+                }
+                break;
+            default:
+                for (int i = 0; i < stride; i++) {
+                    accumulators[i] += value * doubles.get(offset + i);
+                }
+        }
+    }
+
+    @Override
+    public void finish(double[] accumulators) {
+        for (int i = 0; i < scales.length; i++) {
+            accumulators[i] *= scales[i];
+        }
+    }
+
+    /**
+     * Estimates heap occupied by {@code this} store, the mapped weights themselves aren't on the heap.
+     */
+    @Override
+    public long estimateSizeInBytes() {
+        return 16 + 3 * 48 + 16 + 8L * scales.length;
+    }
+
+    @Override
+    protected int getParametersSize() {
+        return 8 * scales.length;
+    }
+
+    @Override
+    protected void writeParameters(DataOutput out) throws IOException {
+        for (double scale : scales) {
+            out.writeDouble(scale);
+        }
+    }
+
+    @Override
+    protected void writeWeights(DataOutput out) throws IOException {
+        for (int i = 0; i < size; i++) {
+            switch (precision) {
+                case FLOAT16:
+                    out.writeShort(halves.get(i));
+                    break;
+                case INT8:
+                    out.writeByte(bytes.get(i));
+                    break;
+                default:
+                    out.writeDouble(doubles.get(i));
+            }
+        }
+    }
+}
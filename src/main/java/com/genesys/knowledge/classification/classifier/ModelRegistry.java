@@ -0,0 +1,276 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classifiers of many knowledge bases, loaded from their serialized models on first use.
+ * <p>
+ * At most {@link #maxModels} models taking at most {@link #maxBytes} in total are kept resident, the least recently
+ * used ones are evicted beyond that. The size of a model is the size of its serialized form. A model bigger than
+ * {@link #maxBytes} by itself is returned to the threads which asked for it but isn't kept resident. A model which is
+ * being loaded is loaded only once, threads asking for it at the same time wait for the same load. A load which is
+ * in flight while its model is invalidated completes for the threads waiting for it, but its model isn't kept.
+ * <p>
+ * Thread-safe.
+ */
+@Slf4j
+public class ModelRegistry {
+
+    /**
+     * Source of serialized models, see {@link LogisticRegressionClassifier#serializeModel()}.
+     */
+    @FunctionalInterface
+    public interface ModelLoader {
+
+        /**
+         * Loads serialized model of the specified knowledge base.
+         *
+         * @param knowledgeBaseId id of the knowledge base
+         * @return serialized model
+         * @throws IOException if the model can't be loaded
+         */
+        byte[] load(String knowledgeBaseId) throws IOException;
+    }
+
+    private final ModelLoader loader;
+    @Getter
+    private final int maxModels;
+    @Getter
+    private final long maxBytes;
+
+    /**
+     * Resident models in access order, guarded by itself.
+     */
+    private final LinkedHashMap<String, Entry> residentModels = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+    private final Map<String, CompletableFuture<LogisticRegressionClassifier>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    public ModelRegistry(ModelLoader loader) {
+        this(loader, ClassifierDefaults.DEFAULT_REGISTRY_MAX_MODELS, ClassifierDefaults.DEFAULT_REGISTRY_MAX_BYTES);
+    }
+
+    /**
+     * @param loader source of serialized models
+     * @param maxModels maximum number of resident models
+     * @param maxBytes maximum total size of resident models
+     */
+    public ModelRegistry(ModelLoader loader, int maxModels, long maxBytes) {
+        this.loader = loader;
+        this.maxModels = maxModels;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Creates loader of models stored as {@code <knowledge base id>.mahout} files in the specified directory.
+     *
+     * @param directory directory with serialized models
+     * @return model loader
+     */
+    public static ModelLoader directoryLoader(Path directory) {
+        return knowledgeBaseId -> Files.readAllBytes(directory.resolve(knowledgeBaseId + ".mahout"));
+    }
+
+    /**
+     * Gets classifier of the specified knowledge base loading its model if it isn't resident.
+     *
+     * @param knowledgeBaseId id of the knowledge base
+     * @return classifier of the knowledge base
+     * @throws IOException if the model can't be loaded
+     */
+    public LogisticRegressionClassifier get(String knowledgeBaseId) throws IOException {
+        LogisticRegressionClassifier classifier = getResident(knowledgeBaseId);
+        if (classifier != null) {
+            hitCount.increment();
+            return classifier;
+        }
+        missCount.increment();
+
+        CompletableFuture<LogisticRegressionClassifier> load = new CompletableFuture<>();
+        CompletableFuture<LogisticRegressionClassifier> currentLoad = loads.putIfAbsent(knowledgeBaseId, load);
+        if (currentLoad != null) {
+            return await(currentLoad);
+        }
+
+        try {
+            // another thread might have finished loading the model right before this one started
+            classifier = getResident(knowledgeBaseId);
+            if (classifier == null) {
+                classifier = load(knowledgeBaseId, load);
+            }
+            load.complete(classifier);
+            return classifier;
+        } catch (IOException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(knowledgeBaseId, load);
+        }
+    }
+
+    /**
+     * Removes model of the specified knowledge base, e.g. after it's retrained, so the next use loads it anew.
+     *
+     * @param knowledgeBaseId id of the knowledge base
+     */
+    public void invalidate(String knowledgeBaseId) {
+        synchronized (residentModels) {
+            Entry entry = residentModels.remove(knowledgeBaseId);
+            if (entry != null) {
+                residentBytes -= entry.size;
+            }
+            // a load in flight may have read the previous model, it isn't made resident and isn't joined any more
+            loads.remove(knowledgeBaseId);
+        }
+    }
+
+    private LogisticRegressionClassifier getResident(String knowledgeBaseId) {
+        synchronized (residentModels) {
+            Entry entry = residentModels.get(knowledgeBaseId);
+            return entry != null ? entry.classifier : null;
+        }
+    }
+
+    private LogisticRegressionClassifier load(String knowledgeBaseId,
+                                              CompletableFuture<LogisticRegressionClassifier> load)
+            throws IOException {
+        long start = System.nanoTime();
+        LogisticRegressionClassifier classifier;
+        byte[] modelData;
+        try {
+            modelData = loader.load(knowledgeBaseId);
+            classifier = LogisticRegressionClassifier.fromSerializedModel(modelData);
+        } catch (IOException | RuntimeException e) {
+            loadFailureCount.increment();
+            throw e;
+        }
+        long loadNanos = System.nanoTime() - start;
+        loadCount.increment();
+        totalLoadNanos.add(loadNanos);
+        log.debug("Loaded model of knowledge base {} ({} bytes) in {} ms", knowledgeBaseId, modelData.length,
+                loadNanos / 1_000_000);
+
+        synchronized (residentModels) {
+            if (loads.get(knowledgeBaseId) != load) {
+                log.debug("Model of knowledge base {} was invalidated while it was loaded", knowledgeBaseId);
+            } else if (modelData.length > maxBytes) {
+                log.warn("Model of knowledge base {} ({} bytes) exceeds {} bytes, it isn't kept resident",
+                        knowledgeBaseId, modelData.length, maxBytes);
+            } else {
+                residentModels.put(knowledgeBaseId, new Entry(classifier, modelData.length));
+                residentBytes += modelData.length;
+                evict();
+            }
+        }
+        return classifier;
+    }
+
+    /**
+     * Evicts the least recently used models until the limits are met, but never the most recently used one,
+     * which fits into the limits by itself.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = residentModels.entrySet().iterator();
+        while ((residentModels.size() > maxModels || residentBytes > maxBytes) && residentModels.size() > 1) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            residentBytes -= eldest.getValue().size;
+            evictionCount.increment();
+            log.debug("Evicted model of knowledge base {}", eldest.getKey());
+        }
+    }
+
+    private static LogisticRegressionClassifier await(CompletableFuture<LogisticRegressionClassifier> load)
+            throws IOException {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getTotalLoadNanos() {
+        return totalLoadNanos.sum();
+    }
+
+    public double getAverageLoadNanos() {
+        long loads = loadCount.sum();
+        return loads > 0 ? (double) totalLoadNanos.sum() / loads : 0;
+    }
+
+    public int getResidentModelsNumber() {
+        synchronized (residentModels) {
+            return residentModels.size();
+        }
+    }
+
+    public long getResidentBytes() {
+        synchronized (residentModels) {
+            return residentBytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ModelRegistry{resident=%d models/%d bytes, hits=%d, misses=%d, loads=%d, "
+                        + "failures=%d, evictions=%d, avgLoad=%.2f ms}", getResidentModelsNumber(), getResidentBytes(),
+                getHitCount(), getMissCount(), getLoadCount(), getLoadFailureCount(), getEvictionCount(),
+                getAverageLoadNanos() / 1e6);
+    }
+
+    private static class Entry {
+
+        private final LogisticRegressionClassifier classifier;
+        private final long size;
+
+        private Entry(LogisticRegressionClassifier classifier, long size) {
+            this.classifier = classifier;
+            this.size = size;
+        }
+    }
+}
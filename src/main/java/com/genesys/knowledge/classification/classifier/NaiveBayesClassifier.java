@@ -1,137 +1,240 @@
 package com.genesys.knowledge.classification.classifier;
 
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.defaults.LearnerDefaults;
 import com.genesys.knowledge.classification.learner.Learner;
-import com.genesys.knowledge.classification.util.CategoryHandler;
+import com.genesys.knowledge.classification.util.CorpusPreprocessor;
+import com.genesys.knowledge.classification.util.PreprocessedCorpus;
 import com.genesys.knowledge.domain.Category;
 import com.genesys.knowledge.domain.Document;
-import lombok.Getter;
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.SequenceFile;
-import org.apache.hadoop.io.Text;
-import org.apache.mahout.classifier.naivebayes.AbstractNaiveBayesClassifier;
-import org.apache.mahout.classifier.naivebayes.NaiveBayesModel;
-import org.apache.mahout.classifier.naivebayes.StandardNaiveBayesClassifier;
-import org.apache.mahout.classifier.naivebayes.training.TrainNaiveBayesJob;
-import org.apache.mahout.math.DenseVector;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.mahout.math.RandomAccessSparseVector;
 import org.apache.mahout.math.Vector;
-import org.apache.mahout.math.VectorWritable;
-import org.apache.mahout.vectorizer.encoders.ConstantValueEncoder;
-import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
-import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
 
-import java.io.IOException;
+import java.io.*;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Created by rhorilyi on 15.05.2017.
+ * Naive Bayes classifier trained in memory in one pass over the documents.
+ * <p>
+ * Documents are split between {@link LearnerDefaults#DEFAULT_TRAINING_THREADS_NUMBER} threads, every thread
+ * counts term frequencies of its documents per category into its own {@link NaiveBayesModel.Counts}, so threads
+ * share nothing while counting. The counts are merged once all threads are done and the {@link NaiveBayesModel}
+ * is estimated from them. Counts are dense, {@code 8 * categories * features} bytes per thread, so fewer threads
+ * count when the counts of all of them would exceed {@link ClassifierDefaults#DEFAULT_NAIVE_BAYES_MAX_COUNTS_BYTES}.
+ * <p>
+ * Documents which aren't tokenized yet are tokenized up front by a {@link CorpusPreprocessor},
+ * the counting threads only hash tokens.
+ * <p>
+ * Feature vectors hold hashed term frequencies without an intercept, since Naive Bayes models need non-negative
+ * counts. A document with several categories is counted in each of them.
  */
+@Slf4j
 public class NaiveBayesClassifier extends AbstractClassifier {
 
-    String sequenceFilePath = "input/tweets-seq";
-    String tempDir = "input/tmp";
-    String modelPath = "input/model";
-    String inputDataPath = "input/tweets-vectors";
-
-    @Getter
-    private CategoryHandler categoryHandler;
-
-    @Getter
-    private NaiveBayesModel model;
-    @Getter
-    private AbstractNaiveBayesClassifier classifier;
-
-    private Configuration configuration = new Configuration();
-
-    private final ConstantValueEncoder interceptEncoder = new ConstantValueEncoder("intercept");
-    private final FeatureVectorEncoder featureEncoder = new StaticWordValueEncoder("feature");
-
-    private static final Pattern SLASH = Pattern.compile("/");
-
     public NaiveBayesClassifier(List<Document> documents) {
-        categoryHandler = new CategoryHandler();
-        categoryHandler.initHandler(documents);
-
-        configuration.set("mapred.job.tracker", "ua-rhorilyi-lt:8020");
-        System.setProperty("hadoop.home.dir", "C:\\hdp\\hadoop-2.4.0.2.1.7.0-2162");
+        this(documents, NaiveBayesModel.Variant.MULTINOMIAL, ClassifierDefaults.DEFAULT_NAIVE_BAYES_NUM_FEATURES);
+    }
 
-        prepareModel(documents);
-        model.validate();
-        classifier = new StandardNaiveBayesClassifier(model);
+    /**
+     * Creates classifier trained on the specified documents, their texts are tokenized by the default tokenizer.
+     *
+     * @param documents training documents, documents without text are skipped
+     * @param variant variant of the model
+     * @param featuresNumber number of features
+     */
+    public NaiveBayesClassifier(List<Document> documents, NaiveBayesModel.Variant variant, int featuresNumber) {
+        this(new CorpusPreprocessor().preprocess(documents), variant, featuresNumber);
     }
 
-    private void prepareModel(List<Document> documents) {
-        writeDataToFile(documents);
-        trainModel();
-        try {
-            model = NaiveBayesModel.materialize(new Path(modelPath, "part-r-00000"), configuration);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Creates classifier trained on the documents of the specified corpus with the tokens the corpus holds,
+     * so the documents aren't tokenized again.
+     *
+     * @param corpus preprocessed training corpus, documents without text are skipped
+     * @param variant variant of the model
+     * @param featuresNumber number of features
+     */
+    public NaiveBayesClassifier(PreprocessedCorpus corpus, NaiveBayesModel.Variant variant, int featuresNumber) {
+        super(corpus);
+
+        List<Integer> documentIndexes = new ArrayList<>(corpus.getDocumentsNumber());
+        for (int i = 0; i < corpus.getDocumentsNumber(); i++) {
+            if (corpus.getDocuments().get(i).getText() != null) {
+                documentIndexes.add(i);
+            }
         }
+        train(documentIndexes, variant, featuresNumber, documentIndex -> {
+            List<Category> categories = corpus.getDocuments().get(documentIndex).getCategories();
+            int[] categoryOrderNumbers = new int[categories.size()];
+            for (int i = 0; i < categoryOrderNumbers.length; i++) {
+                categoryOrderNumbers[i] = getCategoryHandler().resolveCategoryOrderNumber(categories.get(i));
+            }
+            return new TrainingExample(getFeatureVector(corpus.getTokens(documentIndex), featuresNumber),
+                    categoryOrderNumbers);
+        });
+    }
+
+    public NaiveBayesClassifier(ArrayList<Learner.Document> documents) {
+        this(documents, NaiveBayesModel.Variant.MULTINOMIAL, ClassifierDefaults.DEFAULT_NAIVE_BAYES_NUM_FEATURES);
     }
 
-    private void writeDataToFile(List<Document> documents) {
-        try (SequenceFile.Writer writer = new SequenceFile.Writer(
-                FileSystem.get(configuration), configuration, new Path(inputDataPath), Text.class, VectorWritable.class)) {
-            for (Document document : documents) {
-                for (Category category : document.getCategories()) {
-                    writer.append(new Text(category.getId()), new Text(document.getText()));
-                }
+    /**
+     * Creates classifier trained on the specified tokenized documents.
+     *
+     * @param documents training documents
+     * @param variant variant of the model
+     * @param featuresNumber number of features
+     */
+    public NaiveBayesClassifier(ArrayList<Learner.Document> documents, NaiveBayesModel.Variant variant,
+                                int featuresNumber) {
+        super(documents);
+
+        train(documents, variant, featuresNumber, document -> {
+            List<String> categoryIds = document.getCategories();
+            int[] categoryOrderNumbers = new int[categoryIds.size()];
+            for (int i = 0; i < categoryOrderNumbers.length; i++) {
+                categoryOrderNumbers[i] = getCategoryHandler().resolveCategoryOrderNumber(
+                        new Category(categoryIds.get(i)));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+            return new TrainingExample(getFeatureVector(document, featuresNumber), categoryOrderNumbers);
+        });
+    }
+
+    public NaiveBayesClassifier(byte[] modelData) {
+        super();
+        deserializeModel(modelData);
     }
 
-    private void trainModel() {
-        TrainNaiveBayesJob trainNaiveBayes = new TrainNaiveBayesJob();
-        trainNaiveBayes.setConf(configuration);
+    private <T> void train(List<T> documents, NaiveBayesModel.Variant variant, int featuresNumber,
+                           TrainingExampleFactory<T> exampleFactory) {
+        int categoriesNumber = getCategoryHandler().getCategoriesQuantity();
+        long countsBytes = 8L * NaiveBayesModel.weightsNumber(categoriesNumber, featuresNumber);
+        int threadsNumber = (int) Math.max(1, Math.min(
+                Math.min(LearnerDefaults.DEFAULT_TRAINING_THREADS_NUMBER, documents.size()),
+                ClassifierDefaults.DEFAULT_NAIVE_BAYES_MAX_COUNTS_BYTES / Math.max(1, countsBytes)));
+        if (threadsNumber < Math.min(LearnerDefaults.DEFAULT_TRAINING_THREADS_NUMBER, documents.size())) {
+            log.info("Counting with {} threads, counts of {} categories and {} features take {} MB per thread",
+                    threadsNumber, categoriesNumber, featuresNumber, countsBytes >> 20);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
         try {
-            trainNaiveBayes.run(new String[] {"-i", inputDataPath + "-o", modelPath, "--tempDir", tempDir});
-        } catch (Exception e) {
-            e.printStackTrace();
+            List<Future<NaiveBayesModel.Counts>> futures = new ArrayList<>(threadsNumber);
+            for (int thread = 0; thread < threadsNumber; thread++) {
+                List<T> part = documents.subList((int) ((long) thread * documents.size() / threadsNumber),
+                        (int) ((long) (thread + 1) * documents.size() / threadsNumber));
+                futures.add(executor.submit(() -> {
+                    NaiveBayesModel.Counts counts = new NaiveBayesModel.Counts(categoriesNumber, featuresNumber);
+                    for (T document : part) {
+                        TrainingExample example = exampleFactory.create(document);
+                        counts.add(example.featureVector, example.categoryOrderNumbers);
+                    }
+                    return counts;
+                }));
+            }
+
+            NaiveBayesModel.Counts counts = futures.get(0).get();
+            for (int thread = 1; thread < threadsNumber; thread++) {
+                counts.merge(futures.get(thread).get());
+            }
+            setClassifier(NaiveBayesModel.train(counts, variant, ClassifierDefaults.DEFAULT_NAIVE_BAYES_ALPHA));
+            setTrained(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Naive Bayes training has been interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Naive Bayes training has failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    public Vector getFeatureVector(List<String> tokens, Collection<List<String>> documentTokens) {
-        Vector outputVector = new RandomAccessSparseVector(10000);
-
-        interceptEncoder.addToVector("1", outputVector); // output[0] is the intercept term
-        // Look at the regression graph on the link below to see why we need the intercept.
-        // http://statistiksoftware.blogspot.nl/2013/01/why-we-need-intercept.html
+    public NaiveBayesModel getModel() {
+        return (NaiveBayesModel) getClassifier();
+    }
 
-        for (String token : tokens) {
-            featureEncoder.addToVector(token, 2, outputVector);
-        }
+    @Override
+    public int getNumFeatures() {
+        return getModel().getNumFeatures();
+    }
 
-        return outputVector;
+    @Override
+    public Vector getFeatureVector(List<String> tokens, Collection<List<String>> documentTokens) {
+        return getFeatureVector(tokens, getNumFeatures());
     }
 
-    // TODO temporary method
     @Override
     public Vector getFeatureVector(Learner.Document document, List<Learner.Document> allDocuments) {
-        return null;
+        return getFeatureVector(document, getNumFeatures());
     }
 
-    private static VectorWritable trainingInstance(Vector.Element... elems) {
-        DenseVector trainingInstance = new DenseVector(6);
-        for (Vector.Element elem : elems) {
-            trainingInstance.set(elem.index(), elem.get());
+    private Vector getFeatureVector(Learner.Document document, int featuresNumber) {
+        Vector outputVector = getFeatureVector(document.getTitle().getTokens(), featuresNumber);
+        for (String token : document.getBody().getTokens()) {
+            getFeatureEncoder().addToVector(token, 1, outputVector);
         }
-        return new VectorWritable(trainingInstance);
+        return outputVector;
     }
 
+    private Vector getFeatureVector(List<String> tokens, int featuresNumber) {
+        Vector outputVector = new RandomAccessSparseVector(featuresNumber);
+        for (String token : tokens) {
+            getFeatureEncoder().addToVector(token, 1, outputVector);
+        }
+        return outputVector;
+    }
+
+    /**
+     * Serializes the model followed by ids of the categories.
+     */
     @Override
     public byte[] serializeModel() {
-        return new byte[0];
+        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+
+        try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(byteOutput))) {
+            getModel().write(dataOut);
+            getCategoryHandler().write(dataOut);
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+
+        return byteOutput.toByteArray();
     }
 
     @Override
     public void deserializeModel(byte[] modelData) {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(modelData)));
+
+        try {
+            NaiveBayesModel model = new NaiveBayesModel();
+            model.readFields(dataIn);
+            getCategoryHandler().readFields(dataIn);
+            setClassifier(model);
+            setTrained(true);
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
 
+    private interface TrainingExampleFactory<T> {
+
+        TrainingExample create(T document);
+    }
+
+    private static class TrainingExample {
+
+        private final Vector featureVector;
+        private final int[] categoryOrderNumbers;
+
+        private TrainingExample(Vector featureVector, int[] categoryOrderNumbers) {
+            this.featureVector = featureVector;
+            this.categoryOrderNumbers = categoryOrderNumbers;
+        }
     }
 }
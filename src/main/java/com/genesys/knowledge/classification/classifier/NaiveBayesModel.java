@@ -0,0 +1,313 @@
+package com.genesys.knowledge.classification.classifier;
+
+import lombok.Getter;
+import org.apache.hadoop.io.Writable;
+import org.apache.mahout.classifier.AbstractVectorClassifier;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Multinomial or complement Naive Bayes model over hashed term frequency vectors.
+ * <p>
+ * Both variants score a document as {@code bias[c] + sum(x[f] * weight[f][c])}, where {@code x} is the feature
+ * vector of the document. A multinomial model has log priors of categories as biases and smoothed log likelihoods
+ * of features given a category as weights. A complement model has zero biases and negated smoothed
+ * log likelihoods of features given all the other categories as weights, which is more robust when
+ * categories have very different numbers of documents.
+ * <p>
+ * Weights are stored in a flat array in feature-major order, as in {@link FrozenLinearModel}, but unlike
+ * logistic regression every category has its own score, there is no implicit reference category.
+ * Scores are turned into probabilities by softmax. Instances are immutable and thread-safe.
+ */
+public class NaiveBayesModel extends AbstractVectorClassifier implements Writable {
+
+    public enum Variant {
+        MULTINOMIAL, COMPLEMENT
+    }
+
+    /**
+     * Maximum number of weights, which are stored in a single array.
+     */
+    public static final int MAX_WEIGHTS = Integer.MAX_VALUE - 8;
+
+    @Getter
+    private Variant variant;
+    @Getter
+    private int numCategories;
+    @Getter
+    private int numFeatures;
+    private double[] biases;
+    private double[] weights;
+
+    /**
+     * Creates empty model to read with {@link #readFields(DataInput)}.
+     */
+    public NaiveBayesModel() {
+        this(Variant.MULTINOMIAL, 0, 0, new double[0], new double[0]);
+    }
+
+    public NaiveBayesModel(Variant variant, int numCategories, int numFeatures, double[] biases, double[] weights) {
+        if (biases.length != numCategories || weights.length != (long) numCategories * numFeatures) {
+            throw new IllegalArgumentException("Expected " + numCategories + " biases and "
+                    + (long) numCategories * numFeatures + " weights but got " + biases.length + " and "
+                    + weights.length + ".");
+        }
+        this.variant = variant;
+        this.numCategories = numCategories;
+        this.numFeatures = numFeatures;
+        this.biases = biases;
+        this.weights = weights;
+    }
+
+    /**
+     * Estimates the model from the specified counts with additive smoothing.
+     *
+     * @param counts term and document counts per category
+     * @param variant variant of the model
+     * @param alpha additive smoothing parameter, 1 for Laplace smoothing
+     * @return trained model
+     */
+    public static NaiveBayesModel train(Counts counts, Variant variant, double alpha) {
+        int numCategories = counts.numCategories;
+        int numFeatures = counts.numFeatures;
+        double[] biases = new double[numCategories];
+        double[] weights = new double[weightsNumber(numCategories, numFeatures)];
+
+        if (variant == Variant.MULTINOMIAL) {
+            for (int category = 0; category < numCategories; category++) {
+                biases[category] = Math.log((counts.documentCounts[category] + 1.0)
+                        / (counts.documentsNumber + numCategories));
+                double denominator = counts.termTotals[category] + alpha * numFeatures;
+                for (int feature = 0; feature < numFeatures; feature++) {
+                    int i = feature * numCategories + category;
+                    weights[i] = Math.log((counts.termCounts[i] + alpha) / denominator);
+                }
+            }
+        } else {
+            double allTermsTotal = 0;
+            for (double total : counts.termTotals) {
+                allTermsTotal += total;
+            }
+            for (int feature = 0; feature < numFeatures; feature++) {
+                double featureTotal = 0;
+                for (int category = 0; category < numCategories; category++) {
+                    featureTotal += counts.termCounts[feature * numCategories + category];
+                }
+                for (int category = 0; category < numCategories; category++) {
+                    int i = feature * numCategories + category;
+                    double complementCount = featureTotal - counts.termCounts[i];
+                    double complementTotal = allTermsTotal - counts.termTotals[category];
+                    weights[i] = -Math.log((complementCount + alpha) / (complementTotal + alpha * numFeatures));
+                }
+            }
+        }
+        return new NaiveBayesModel(variant, numCategories, numFeatures, biases, weights);
+    }
+
+    @Override
+    public int numCategories() {
+        return numCategories;
+    }
+
+    /**
+     * Calculates scores of categories 1 to {@code numCategories - 1} before the link function.
+     */
+    @Override
+    public Vector classifyNoLink(Vector instance) {
+        double[] scores = score(instance);
+        double[] result = new double[numCategories - 1];
+        System.arraycopy(scores, 1, result, 0, result.length);
+        return new DenseVector(result, true);
+    }
+
+    /**
+     * Calculates probabilities of categories 1 to {@code numCategories - 1}.
+     */
+    @Override
+    public Vector classify(Vector instance) {
+        return new DenseVector(classifyFull(instance).viewPart(1, numCategories - 1));
+    }
+
+    @Override
+    public double classifyScalar(Vector instance) {
+        if (numCategories != 2) {
+            throw new IllegalArgumentException("Can only call classifyScalar with two categories.");
+        }
+        double[] scores = score(instance);
+        return 1 / (1 + Math.exp(scores[0] - scores[1]));
+    }
+
+    /**
+     * Calculates probabilities of all categories.
+     */
+    @Override
+    public Vector classifyFull(Vector instance) {
+        double[] scores = score(instance);
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+        double sum = 0;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = Math.exp(scores[i] - max);
+            sum += scores[i];
+        }
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] /= sum;
+        }
+        return new DenseVector(scores, true);
+    }
+
+    private double[] score(Vector instance) {
+        double[] scores = biases.clone();
+        for (Vector.Element element : instance.nonZeroes()) {
+            int offset = element.index() * numCategories;
+            double value = element.get();
+            for (int category = 0; category < numCategories; category++) {
+                scores[category] += value * weights[offset + category];
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Gets weight of the specified feature for the specified category.
+     */
+    public double getWeight(int category, int feature) {
+        return weights[feature * numCategories + category];
+    }
+
+    public double getBias(int category) {
+        return biases[category];
+    }
+
+    /**
+     * Estimates heap occupied by {@code this} model, which is mostly its weights.
+     */
+    public long estimateSizeInBytes() {
+        return 16 + 24 + 16 + 8L * biases.length + 16 + 8L * weights.length;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(variant.ordinal());
+        out.writeInt(numCategories);
+        out.writeInt(numFeatures);
+        for (double bias : biases) {
+            out.writeDouble(bias);
+        }
+        for (double weight : weights) {
+            out.writeDouble(weight);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int variantOrdinal = in.readByte();
+        int categoriesNumber = in.readInt();
+        int featuresNumber = in.readInt();
+        if (variantOrdinal < 0 || variantOrdinal >= Variant.values().length || categoriesNumber < 0
+                || featuresNumber < 0 || (long) categoriesNumber * featuresNumber > MAX_WEIGHTS) {
+            throw new IOException("Invalid Naive Bayes model of variant " + variantOrdinal + ", "
+                    + categoriesNumber + " categories and " + featuresNumber + " features.");
+        }
+        double[] modelBiases = new double[categoriesNumber];
+        for (int i = 0; i < modelBiases.length; i++) {
+            modelBiases[i] = in.readDouble();
+        }
+        double[] modelWeights = new double[categoriesNumber * featuresNumber];
+        for (int i = 0; i < modelWeights.length; i++) {
+            modelWeights[i] = in.readDouble();
+        }
+        variant = Variant.values()[variantOrdinal];
+        numCategories = categoriesNumber;
+        numFeatures = featuresNumber;
+        biases = modelBiases;
+        weights = modelWeights;
+    }
+
+    /**
+     * Gets number of weights of a model of the specified shape.
+     *
+     * @throws IllegalArgumentException if the weights don't fit into a single array
+     */
+    static int weightsNumber(int numCategories, int numFeatures) {
+        long weightsNumber = (long) numCategories * numFeatures;
+        if (numCategories < 0 || numFeatures < 0 || weightsNumber > MAX_WEIGHTS) {
+            throw new IllegalArgumentException("Model of " + numCategories + " categories and " + numFeatures
+                    + " features has " + weightsNumber + " weights, at most " + MAX_WEIGHTS + " are supported.");
+        }
+        return (int) weightsNumber;
+    }
+
+    /**
+     * Term and document counts per category a model is estimated from. Counts aren't thread-safe,
+     * threads count their own parts of a corpus and the parts are {@link #merge(Counts) merged} afterwards.
+     */
+    public static class Counts {
+
+        private final int numCategories;
+        private final int numFeatures;
+        private final double[] termCounts;
+        private final double[] termTotals;
+        private final int[] documentCounts;
+        @Getter
+        private int documentsNumber;
+
+        public Counts(int numCategories, int numFeatures) {
+            this.numCategories = numCategories;
+            this.numFeatures = numFeatures;
+            termCounts = new double[weightsNumber(numCategories, numFeatures)];
+            termTotals = new double[numCategories];
+            documentCounts = new int[numCategories];
+        }
+
+        /**
+         * Counts the specified document in each of its categories.
+         *
+         * @param featureVector term frequencies of the document
+         * @param categoryOrderNumbers order numbers of categories of the document
+         * @return {@code this} counts
+         */
+        public Counts add(Vector featureVector, int[] categoryOrderNumbers) {
+            documentsNumber++;
+            for (int category : categoryOrderNumbers) {
+                documentCounts[category]++;
+            }
+            for (Vector.Element element : featureVector.nonZeroes()) {
+                int offset = element.index() * numCategories;
+                double value = element.get();
+                for (int category : categoryOrderNumbers) {
+                    termCounts[offset + category] += value;
+                    termTotals[category] += value;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Adds the specified counts to {@code this} ones.
+         *
+         * @param other counts of the same shape
+         * @return {@code this} counts
+         */
+        public Counts merge(Counts other) {
+            if (other.numCategories != numCategories || other.numFeatures != numFeatures) {
+                throw new IllegalArgumentException("Can't merge counts of different shapes.");
+            }
+            documentsNumber += other.documentsNumber;
+            for (int i = 0; i < termCounts.length; i++) {
+                termCounts[i] += other.termCounts[i];
+            }
+            for (int i = 0; i < numCategories; i++) {
+                termTotals[i] += other.termTotals[i];
+                documentCounts[i] += other.documentCounts[i];
+            }
+            return this;
+        }
+    }
+}
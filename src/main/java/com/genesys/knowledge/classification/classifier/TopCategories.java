@@ -0,0 +1,155 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.util.CategoryHandler;
+import org.apache.mahout.math.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Top K categories of a classified document as parallel arrays of category order numbers and confidence scores,
+ * sorted by the score in descending order. Ids of the categories are resolved only when asked for.
+ * <p>
+ * Categories are selected with a bounded min-heap of K elements, so selection takes O(N log K) time for N categories
+ * and allocates only the result arrays. Of categories with equal scores the one with the lower order number goes first.
+ */
+public class TopCategories {
+
+    private final int[] indexes;
+    private final double[] scores;
+    private final CategoryHandler categoryHandler;
+
+    private TopCategories(int[] indexes, double[] scores, CategoryHandler categoryHandler) {
+        this.indexes = indexes;
+        this.scores = scores;
+        this.categoryHandler = categoryHandler;
+    }
+
+    /**
+     * Selects the specified number of categories with the highest scores.
+     *
+     * @param scores confidence scores of all categories indexed by their order numbers
+     * @param numberOfTopResults number of categories to select, all categories are selected if there are fewer of them
+     * @param categoryHandler handler to resolve category ids with
+     * @return top categories
+     */
+    public static TopCategories select(Vector scores, int numberOfTopResults, CategoryHandler categoryHandler) {
+        int size = Math.max(0, Math.min(numberOfTopResults, scores.size()));
+        int[] heapIndexes = new int[size];
+        double[] heapScores = new double[size];
+        if (size == 0) {
+            return new TopCategories(heapIndexes, heapScores, categoryHandler);
+        }
+
+        int heapSize = 0;
+        for (int index = 0; index < scores.size(); index++) {
+            double score = scores.getQuick(index);
+            if (heapSize < size) {
+                heapIndexes[heapSize] = index;
+                heapScores[heapSize] = score;
+                siftUp(heapIndexes, heapScores, heapSize++);
+            } else if (isLower(heapScores[0], heapIndexes[0], score, index)) {
+                heapIndexes[0] = index;
+                heapScores[0] = score;
+                siftDown(heapIndexes, heapScores, 0, heapSize);
+            }
+        }
+
+        // popping the minimum to the end of the heap sorts the arrays in descending order
+        while (heapSize > 1) {
+            swap(heapIndexes, heapScores, 0, --heapSize);
+            siftDown(heapIndexes, heapScores, 0, heapSize);
+        }
+        return new TopCategories(heapIndexes, heapScores, categoryHandler);
+    }
+
+    /**
+     * Whether the first category ranks lower than the second one.
+     */
+    private static boolean isLower(double score1, int index1, double score2, int index2) {
+        return score1 < score2 || (score1 == score2 && index1 > index2);
+    }
+
+    private static void siftUp(int[] indexes, double[] scores, int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isLower(scores[position], indexes[position], scores[parent], indexes[parent])) {
+                break;
+            }
+            swap(indexes, scores, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] indexes, double[] scores, int position, int heapSize) {
+        while (true) {
+            int lowest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < heapSize && isLower(scores[left], indexes[left], scores[lowest], indexes[lowest])) {
+                lowest = left;
+            }
+            if (right < heapSize && isLower(scores[right], indexes[right], scores[lowest], indexes[lowest])) {
+                lowest = right;
+            }
+            if (lowest == position) {
+                return;
+            }
+            swap(indexes, scores, position, lowest);
+            position = lowest;
+        }
+    }
+
+    private static void swap(int[] indexes, double[] scores, int i, int j) {
+        int index = indexes[i];
+        indexes[i] = indexes[j];
+        indexes[j] = index;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    public int size() {
+        return indexes.length;
+    }
+
+    /**
+     * Gets order number of the category at the specified rank.
+     *
+     * @param rank rank of the category, 0 for the most confident one
+     * @return order number of the category in the category handler
+     */
+    public int getIndex(int rank) {
+        return indexes[rank];
+    }
+
+    public double getScore(int rank) {
+        return scores[rank];
+    }
+
+    public String getCategoryId(int rank) {
+        return categoryHandler.getCategory(indexes[rank]).getId();
+    }
+
+    public List<String> getCategoryIds() {
+        List<String> categoryIds = new ArrayList<>(indexes.length);
+        for (int rank = 0; rank < indexes.length; rank++) {
+            categoryIds.add(getCategoryId(rank));
+        }
+        return categoryIds;
+    }
+
+    /**
+     * Gets copy of order numbers of the categories sorted by their scores in descending order.
+     */
+    public int[] getIndexes() {
+        return indexes.clone();
+    }
+
+    /**
+     * Gets copy of scores of the categories in descending order.
+     */
+    public double[] getScores() {
+        return scores.clone();
+    }
+}
@@ -0,0 +1,21 @@
+package com.genesys.knowledge.classification.classifier;
+
+/**
+ * Precision {@link FrozenLinearModel} weights are stored with.
+ */
+public enum WeightPrecision {
+
+    /**
+     * 64-bit floating point, weights are stored exactly.
+     */
+    DOUBLE,
+    /**
+     * 16-bit IEEE 754 half precision floating point, about 3 significant decimal digits.
+     */
+    FLOAT16,
+    /**
+     * 8-bit integers scaled per category, so the weight with the largest magnitude of each category
+     * is represented exactly and the rest are rounded to 1/127 of it.
+     */
+    INT8
+}
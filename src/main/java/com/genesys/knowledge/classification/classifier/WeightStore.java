@@ -0,0 +1,433 @@
+package com.genesys.knowledge.classification.classifier;
+
+import lombok.Getter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Weights of a {@link FrozenLinearModel} in feature-major order: the {@link #stride} weights of a feature,
+ * one per non-reference category, are adjacent. Implementations keep weights at some {@link WeightPrecision}
+ * and dequantize them while scoring, weights are never expanded back into a {@code double[]}.
+ */
+public abstract class WeightStore {
+
+    @Getter
+    protected final int stride;
+
+    protected WeightStore(int stride) {
+        this.stride = stride;
+    }
+
+    /**
+     * Stores the specified weights at the specified precision.
+     *
+     * @param weights weights in feature-major order
+     * @param stride number of weights per feature
+     * @param precision precision to store weights with
+     * @return weight store
+     */
+    public static WeightStore of(double[] weights, int stride, WeightPrecision precision) {
+        switch (precision) {
+            case FLOAT16:
+                return new Float16WeightStore(weights, stride);
+            case INT8:
+                return new Int8WeightStore(weights, stride);
+            default:
+                return new DoubleWeightStore(weights.clone(), stride);
+        }
+    }
+
+    /**
+     * Reads weights written by {@link #write(DataOutput)} or {@link #write(DataOutput, long)}.
+     */
+    public static WeightStore read(DataInput in) throws IOException {
+        WeightPrecision precision = readPrecision(in.readByte());
+        int stride = in.readInt();
+        int length = in.readInt();
+        checkSize(stride, length);
+        double[] scales = new double[precision == WeightPrecision.INT8 ? stride : 0];
+        for (int i = 0; i < scales.length; i++) {
+            scales[i] = in.readDouble();
+        }
+        in.readFully(new byte[readPadding(in.readByte())]);
+
+        switch (precision) {
+            case FLOAT16:
+                short[] halves = new short[length];
+                for (int i = 0; i < length; i++) {
+                    halves[i] = in.readShort();
+                }
+                return new Float16WeightStore(halves, stride);
+            case INT8:
+                byte[] quantized = new byte[length];
+                in.readFully(quantized);
+                return new Int8WeightStore(quantized, scales);
+            default:
+                double[] weights = new double[length];
+                for (int i = 0; i < length; i++) {
+                    weights[i] = in.readDouble();
+                }
+                return new DoubleWeightStore(weights, stride);
+        }
+    }
+
+    /**
+     * Gets precision with the specified ordinal read from a file.
+     *
+     * @throws IOException if there's no such precision
+     */
+    static WeightPrecision readPrecision(int ordinal) throws IOException {
+        WeightPrecision[] precisions = WeightPrecision.values();
+        if (ordinal < 0 || ordinal >= precisions.length) {
+            throw new IOException("Unknown weight precision " + ordinal + ".");
+        }
+        return precisions[ordinal];
+    }
+
+    /**
+     * Checks the stride and the number of weights read from a file.
+     *
+     * @throws IOException if they can't be written by {@link #write(DataOutput, long)}
+     */
+    static void checkSize(int stride, int size) throws IOException {
+        if (stride < 0 || size < 0 || (stride == 0 ? size != 0 : size % stride != 0)) {
+            throw new IOException("Invalid number of weights " + size + " of stride " + stride + ".");
+        }
+    }
+
+    /**
+     * Checks the padding before weights read from a file.
+     *
+     * @throws IOException if it can't be written by {@link #write(DataOutput, long)}
+     */
+    static int readPadding(int padding) throws IOException {
+        if (padding < 0 || padding >= 8) {
+            throw new IOException("Invalid padding " + padding + " before weights.");
+        }
+        return padding;
+    }
+
+    /**
+     * Gets float value of the specified half precision bit pattern.
+     */
+    static float halfToFloat(short half) {
+        return Float16WeightStore.HALF_TO_FLOAT[half & 0xffff];
+    }
+
+    public abstract WeightPrecision getPrecision();
+
+    /**
+     * Gets number of stored weights.
+     */
+    public abstract int size();
+
+    /**
+     * Gets dequantized weight at the specified position.
+     */
+    public abstract double get(int index);
+
+    /**
+     * Adds weights of the specified feature multiplied by the feature value to the accumulators,
+     * one accumulator per category. Accumulators may be kept in a scaled form until {@link #finish(double[])}.
+     *
+     * @param feature index of the feature
+     * @param value value of the feature
+     * @param accumulators accumulators of {@link #stride} length
+     */
+    public void addFeature(int feature, double value, double[] accumulators) {
+        int offset = feature * stride;
+        for (int i = 0; i < stride; i++) {
+            accumulators[i] += value * get(offset + i);
+        }
+    }
+
+    /**
+     * Turns accumulators into scores once all features are added.
+     */
+    public void finish(double[] accumulators) {
+    }
+
+    /**
+     * Estimates heap occupied by the weights.
+     */
+    public abstract long estimateSizeInBytes();
+
+    /**
+     * Writes the precision, the stride, the number of weights, the parameters of the precision and the weights.
+     */
+    public void write(DataOutput out) throws IOException {
+        write(out, -1);
+    }
+
+    /**
+     * Writes the same as {@link #write(DataOutput)} but pads the data so the weights start at a multiple of 8 bytes
+     * from the beginning of the file, which lets them be read in place from a memory-mapped file.
+     *
+     * @param out output to write to
+     * @param position position of {@code out} in the file, negative not to pad the weights
+     */
+    public void write(DataOutput out, long position) throws IOException {
+        out.writeByte(getPrecision().ordinal());
+        out.writeInt(stride);
+        out.writeInt(size());
+        writeParameters(out);
+
+        int padding = 0;
+        if (position >= 0) {
+            long weightsPosition = position + 1 + 4 + 4 + getParametersSize() + 1;
+            padding = (int) ((8 - weightsPosition % 8) % 8);
+        }
+        out.writeByte(padding);
+        out.write(new byte[padding]);
+        writeWeights(out);
+    }
+
+    /**
+     * Gets number of bytes written by {@link #writeParameters(DataOutput)}.
+     */
+    protected int getParametersSize() {
+        return 0;
+    }
+
+    /**
+     * Writes parameters needed to dequantize the weights.
+     */
+    protected void writeParameters(DataOutput out) throws IOException {
+    }
+
+    protected abstract void writeWeights(DataOutput out) throws IOException;
+
+    private static class DoubleWeightStore extends WeightStore {
+
+        private final double[] weights;
+
+        private DoubleWeightStore(double[] weights, int stride) {
+            super(stride);
+            this.weights = weights;
+        }
+
+        @Override
+        public WeightPrecision getPrecision() {
+            return WeightPrecision.DOUBLE;
+        }
+
+        @Override
+        public int size() {
+            return weights.length;
+        }
+
+        @Override
+        public double get(int index) {
+            return weights[index];
+        }
+
+        @Override
+        public void addFeature(int feature, double value, double[] accumulators) {
+            int offset = feature * stride;
+            for (int i = 0; i < stride; i++) {
+                accumulators[i] += value * weights[offset + i];
+            }
+        }
+
+        @Override
+        public long estimateSizeInBytes() {
+            return 16 + 8L * weights.length;
+        }
+
+        @Override
+        protected void writeWeights(DataOutput out) throws IOException {
+            for (double weight : weights) {
+                out.writeDouble(weight);
+            }
+        }
+    }
+
+    private static class Float16WeightStore extends WeightStore {
+
+        /**
+         * Float values of all 2^16 half precision bit patterns, shared by all stores.
+         */
+        private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+
+        static {
+            for (int half = 0; half < HALF_TO_FLOAT.length; half++) {
+                HALF_TO_FLOAT[half] = halfToFloat(half);
+            }
+        }
+
+        private final short[] halves;
+
+        private Float16WeightStore(double[] weights, int stride) {
+            this(new short[weights.length], stride);
+            for (int i = 0; i < weights.length; i++) {
+                halves[i] = floatToHalf((float) weights[i]);
+            }
+        }
+
+        private Float16WeightStore(short[] halves, int stride) {
+            super(stride);
+            this.halves = halves;
+        }
+
+        @Override
+        public WeightPrecision getPrecision() {
+            return WeightPrecision.FLOAT16;
+        }
+
+        @Override
+        public int size() {
+            return halves.length;
+        }
+
+        @Override
+        public double get(int index) {
+            return HALF_TO_FLOAT[halves[index] & 0xffff];
+        }
+
+        @Override
+        public void addFeature(int feature, double value, double[] accumulators) {
+            int offset = feature * stride;
+            for (int i = 0; i < stride; i++) {
+                accumulators[i] += value * HALF_TO_FLOAT[halves[offset + i] & 0xffff];
+            }
+        }
+
+        @Override
+        public long estimateSizeInBytes() {
+            return 16 + 2L * halves.length;
+        }
+
+        @Override
+        protected void writeWeights(DataOutput out) throws IOException {
+            for (short half : halves) {
+                out.writeShort(half);
+            }
+        }
+
+        /**
+         * Rounds the specified float to the nearest half precision value, overflowing to infinity.
+         */
+        static short floatToHalf(float value) {
+            int bits = Float.floatToIntBits(value);
+            int sign = (bits >>> 16) & 0x8000;
+            int magnitude = bits & 0x7fffffff;
+            if (magnitude >= 0x7f800000) {
+                // infinity or NaN, NaN keeps a non-zero mantissa
+                return (short) (sign | 0x7c00 | (magnitude > 0x7f800000 ? 0x200 : 0));
+            }
+            // rounds half up at the 13 mantissa bits which are dropped
+            int rounded = magnitude + 0x1000;
+            if (rounded >= 0x47800000) {
+                return (short) (sign | 0x7c00);
+            }
+            if (rounded >= 0x38800000) {
+                return (short) (sign | ((rounded - 0x38000000) >>> 13));
+            }
+            if (magnitude < 0x33000000) {
+                return (short) sign;
+            }
+            // subnormal half
+            int exponent = magnitude >>> 23;
+            int mantissa = (magnitude & 0x7fffff) | 0x800000;
+            return (short) (sign | ((mantissa + (0x800000 >>> (exponent - 102))) >>> (126 - exponent)));
+        }
+
+        static float halfToFloat(int half) {
+            int sign = (half & 0x8000) << 16;
+            int exponent = (half >>> 10) & 0x1f;
+            int mantissa = half & 0x3ff;
+            if (exponent == 0x1f) {
+                return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+            }
+            if (exponent == 0) {
+                // zero or subnormal, the value is mantissa * 2^-24
+                float subnormal = mantissa * 0x1p-24f;
+                return sign != 0 ? -subnormal : subnormal;
+            }
+            return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+        }
+    }
+
+    private static class Int8WeightStore extends WeightStore {
+
+        private final byte[] quantized;
+        private final double[] scales;
+
+        private Int8WeightStore(double[] weights, int stride) {
+            this(new byte[weights.length], new double[stride]);
+            for (int i = 0; i < weights.length; i++) {
+                scales[i % stride] = Math.max(scales[i % stride], Math.abs(weights[i]));
+            }
+            for (int category = 0; category < stride; category++) {
+                scales[category] /= 127;
+            }
+            for (int i = 0; i < weights.length; i++) {
+                double scale = scales[i % stride];
+                quantized[i] = scale == 0 ? 0 : (byte) Math.round(weights[i] / scale);
+            }
+        }
+
+        private Int8WeightStore(byte[] quantized, double[] scales) {
+            super(scales.length);
+            this.quantized = quantized;
+            this.scales = scales;
+        }
+
+        @Override
+        public WeightPrecision getPrecision() {
+            return WeightPrecision.INT8;
+        }
+
+        @Override
+        public int size() {
+            return quantized.length;
+        }
+
+        @Override
+        public double get(int index) {
+            return quantized[index] * scales[index % stride];
+        }
+
+        /**
+         * Accumulates unscaled products, the scale of each category is applied once in {@link #finish(double[])}.
+         */
+        @Override
+        public void addFeature(int feature, double value, double[] accumulators) {
+            int offset = feature * stride;
+            for (int i = 0; i < stride; i++) {
+                accumulators[i] += value * quantized[offset + i];
+            }
+        }
+
+        @Override
+        public void finish(double[] accumulators) {
+            for (int i = 0; i < stride; i++) {
+                accumulators[i] *= scales[i];
+            }
+        }
+
+        @Override
+        public long estimateSizeInBytes() {
+            return 16 + quantized.length + 16 + 8L * scales.length;
+        }
+
+        @Override
+        protected int getParametersSize() {
+            return 8 * scales.length;
+        }
+
+        @Override
+        protected void writeParameters(DataOutput out) throws IOException {
+            for (double scale : scales) {
+                out.writeDouble(scale);
+            }
+        }
+
+        @Override
+        protected void writeWeights(DataOutput out) throws IOException {
+            out.write(quantized);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.genesys.knowledge.classification.classifier.engine;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.mahout.math.Vector;
+
+/**
+ * Learning algorithm behind an {@link EngineClassifier}, which turns documents into feature vectors and
+ * categories into order numbers, so an engine deals only with vectors and {@code int} categories.
+ * <p>
+ * Engines are {@link Writable}, {@link #write} and {@link #readFields} serialize the trained model.
+ * Implementations need a public no-argument constructor to be read back.
+ */
+public interface ClassifierEngine extends Writable {
+
+    /**
+     * What an engine allows to run concurrently, {@link EngineClassifier} locks around the rest.
+     */
+    enum ThreadSafety {
+        /**
+         * Every call has to be exclusive, e.g. scoring updates the model lazily.
+         */
+        NONE,
+        /**
+         * Any number of scoring calls may run together, training has to be exclusive.
+         */
+        CONCURRENT_SCORING,
+        /**
+         * Training and scoring may all run concurrently.
+         */
+        FULL
+    }
+
+    /**
+     * Creates engines of one kind for the specified model dimensions.
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        ClassifierEngine create(int numCategories, int numFeatures);
+    }
+
+    String getName();
+
+    int getNumCategories();
+
+    int getNumFeatures();
+
+    /**
+     * Updates the model with one training example.
+     *
+     * @param categoryOrderNumber order number of the category of the example
+     * @param featureVector feature vector of the example
+     */
+    void train(int categoryOrderNumber, Vector featureVector);
+
+    /**
+     * Scores the specified feature vector.
+     *
+     * @param featureVector feature vector of a document
+     * @return confidence scores of all categories, which are non-negative and sum to 1
+     */
+    Vector score(Vector featureVector);
+
+    /**
+     * Estimates heap occupied by the model.
+     */
+    long estimateSizeInBytes();
+
+    ThreadSafety getThreadSafety();
+}
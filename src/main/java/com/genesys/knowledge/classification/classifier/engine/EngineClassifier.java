@@ -0,0 +1,202 @@
+package com.genesys.knowledge.classification.classifier.engine;
+
+import com.genesys.knowledge.classification.classifier.AbstractClassifier;
+import com.genesys.knowledge.classification.classifier.feature.CorpusStatistics;
+import com.genesys.knowledge.classification.classifier.feature.FeatureSpaceSizer;
+import com.genesys.knowledge.classification.classifier.feature.FeatureVectorHandlerImpl;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.learner.Learner;
+import com.genesys.knowledge.domain.Category;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.io.Writable;
+import org.apache.mahout.classifier.AbstractVectorClassifier;
+import org.apache.mahout.classifier.sgd.PolymorphicWritable;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Classifier which learns with a pluggable {@link ClassifierEngine}. Documents are turned into feature vectors
+ * the same way as by {@link com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier},
+ * so engines are compared on equal features.
+ * <p>
+ * Calls to the engine are locked according to its {@link ClassifierEngine#getThreadSafety()}, so the classifier
+ * may be trained and used for classification from any threads.
+ */
+@Slf4j
+public class EngineClassifier extends AbstractClassifier {
+
+    @Getter
+    private ClassifierEngine engine;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates untrained classifier for the categories and the corpus statistics of the specified documents.
+     * The feature space is sized by the vocabulary of the documents and the number of categories, see
+     * {@link FeatureSpaceSizer}.
+     *
+     * @param documents training documents
+     * @param engineFactory factory of the engine to learn with
+     */
+    public EngineClassifier(ArrayList<Learner.Document> documents, ClassifierEngine.Factory engineFactory) {
+        super(documents);
+        setCorpusStatistics(CorpusStatistics.build(documents));
+        FeatureSpaceSizer sizer = new FeatureSpaceSizer();
+        for (Learner.Document document : documents) {
+            sizer.addDocument(document);
+        }
+        int categoriesNumber = getCategoryHandler().getCategoriesQuantity();
+        setEngine(engineFactory.create(categoriesNumber, sizer.numFeatures(
+                ClassifierDefaults.DEFAULT_FEATURE_COLLISION_RATE, Math.max(1, categoriesNumber), 1)));
+    }
+
+    public EngineClassifier(byte[] modelData) {
+        super();
+        deserializeModel(modelData);
+    }
+
+    private void setEngine(ClassifierEngine engine) {
+        this.engine = engine;
+        setClassifier(new EngineVectorClassifier());
+    }
+
+    public EngineClassifier train(Learner.Document document, String categoryId) {
+        return train(getFeatureVector(document, Collections.emptyList()), new Category(categoryId));
+    }
+
+    /**
+     * Trains {@code this} classifier with the already encoded feature vector of a document.
+     *
+     * @param featureVector feature vector of the document, see {@link #getFeatureVector(Learner.Document, List)}
+     * @param category category of the document
+     * @return {@code this} classifier
+     */
+    public EngineClassifier train(Vector featureVector, Category category) {
+        int categoryOrderNumber = getCategoryHandler().resolveCategoryOrderNumber(category);
+        Lock trainingLock = engine.getThreadSafety() == ClassifierEngine.ThreadSafety.FULL ? null : lock.writeLock();
+        if (trainingLock != null) {
+            trainingLock.lock();
+        }
+        try {
+            engine.train(categoryOrderNumber, featureVector);
+        } finally {
+            if (trainingLock != null) {
+                trainingLock.unlock();
+            }
+        }
+        setTrained(true);
+        return this;
+    }
+
+    private Vector score(Vector featureVector) {
+        Lock scoringLock;
+        switch (engine.getThreadSafety()) {
+            case NONE:
+                scoringLock = lock.writeLock();
+                break;
+            case CONCURRENT_SCORING:
+                scoringLock = lock.readLock();
+                break;
+            default:
+                return engine.score(featureVector);
+        }
+        scoringLock.lock();
+        try {
+            return engine.score(featureVector);
+        } finally {
+            scoringLock.unlock();
+        }
+    }
+
+    @Override
+    public int getNumFeatures() {
+        return engine.getNumFeatures();
+    }
+
+    @Override
+    public Vector getFeatureVector(Learner.Document document, List<Learner.Document> allDocuments) {
+        return new FeatureVectorHandlerImpl().getFeatureVector(this, document, allDocuments);
+    }
+
+    /**
+     * Serializes the engine followed by corpus statistics, if there are any, and ids of the categories.
+     */
+    @Override
+    public byte[] serializeModel() {
+        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+
+        Lock serializationLock = lock.writeLock();
+        serializationLock.lock();
+        try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(byteOutput))) {
+            PolymorphicWritable.write(dataOut, engine);
+            CorpusStatistics corpusStatistics = getCorpusStatistics();
+            dataOut.writeBoolean(corpusStatistics != null);
+            if (corpusStatistics != null) {
+                corpusStatistics.write(dataOut);
+            }
+            getCategoryHandler().write(dataOut);
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        } finally {
+            serializationLock.unlock();
+        }
+
+        return byteOutput.toByteArray();
+    }
+
+    @Override
+    public void deserializeModel(byte[] modelData) {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(modelData)));
+
+        try {
+            setEngine((ClassifierEngine) PolymorphicWritable.read(dataIn, Writable.class));
+            if (dataIn.readBoolean()) {
+                CorpusStatistics corpusStatistics = new CorpusStatistics();
+                corpusStatistics.readFields(dataIn);
+                setCorpusStatistics(corpusStatistics);
+            }
+            getCategoryHandler().readFields(dataIn);
+            setTrained(true);
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Adapts {@link #engine} to the Mahout classifier {@link AbstractClassifier} scores documents with.
+     */
+    private class EngineVectorClassifier extends AbstractVectorClassifier {
+
+        @Override
+        public int numCategories() {
+            return engine.getNumCategories();
+        }
+
+        @Override
+        public Vector classify(Vector instance) {
+            Vector scores = score(instance);
+            return new DenseVector(scores.viewPart(1, scores.size() - 1));
+        }
+
+        @Override
+        public double classifyScalar(Vector instance) {
+            if (numCategories() != 2) {
+                throw new IllegalArgumentException("Can only call classifyScalar with two categories.");
+            }
+            return score(instance).get(1);
+        }
+
+        @Override
+        public Vector classifyFull(Vector instance) {
+            return score(instance);
+        }
+    }
+}
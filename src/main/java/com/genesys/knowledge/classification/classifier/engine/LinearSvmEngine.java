@@ -0,0 +1,192 @@
+package com.genesys.knowledge.classification.classifier.engine;
+
+import com.genesys.knowledge.classification.defaults.EngineDefaults;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One-vs-rest linear support vector machines trained by stochastic gradient descent on the L2 regularized
+ * hinge loss. Every example updates the machine of its category towards a margin of at least 1
+ * and the machines of the other categories away from it.
+ * <p>
+ * Weights are stored in a flat array in feature-major order, so an update touches only the blocks of the
+ * non-zero features of the example. Regularization shrinks all weights at every step, which is kept as one
+ * common {@link #scale} factor of the stored weights instead of updating them all.
+ * <p>
+ * Scores are margins turned into probabilities by softmax, they rank categories but aren't calibrated.
+ */
+public class LinearSvmEngine implements ClassifierEngine {
+
+    /**
+     * Maximum number of weights, the largest array most JVMs can allocate.
+     */
+    public static final int MAX_WEIGHTS = Integer.MAX_VALUE - 8;
+
+    private static final double MIN_SCALE = 1e-9;
+
+    private int numCategories;
+    private int numFeatures;
+    private double learningRate;
+    private double lambda;
+    private long steps;
+    private double scale = 1;
+    private double[] weights;
+
+    /**
+     * Creates empty engine to read with {@link #readFields(DataInput)}.
+     */
+    public LinearSvmEngine() {
+        this(0, 0);
+    }
+
+    public LinearSvmEngine(int numCategories, int numFeatures) {
+        this(numCategories, numFeatures, EngineDefaults.DEFAULT_SVM_LEARNING_RATE, EngineDefaults.DEFAULT_SVM_LAMBDA);
+    }
+
+    /**
+     * @param numCategories number of categories
+     * @param numFeatures number of features
+     * @param learningRate initial learning rate
+     * @param lambda L2 regularization strength
+     * @throws IllegalArgumentException if there would be more than {@link #MAX_WEIGHTS} weights
+     */
+    public LinearSvmEngine(int numCategories, int numFeatures, double learningRate, double lambda) {
+        if (numCategories < 0 || numFeatures < 0 || (long) numCategories * numFeatures > MAX_WEIGHTS) {
+            throw new IllegalArgumentException("Engine of " + numCategories + " categories and " + numFeatures
+                    + " features would have more than " + MAX_WEIGHTS + " weights.");
+        }
+        this.numCategories = numCategories;
+        this.numFeatures = numFeatures;
+        this.learningRate = learningRate;
+        this.lambda = lambda;
+        weights = new double[numCategories * numFeatures];
+    }
+
+    @Override
+    public String getName() {
+        return "linear-svm";
+    }
+
+    @Override
+    public int getNumCategories() {
+        return numCategories;
+    }
+
+    @Override
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    @Override
+    public void train(int categoryOrderNumber, Vector featureVector) {
+        steps++;
+        double rate = learningRate / (1 + learningRate * lambda * steps);
+        double[] margins = margins(featureVector);
+
+        scale *= 1 - rate * lambda;
+        for (int category = 0; category < numCategories; category++) {
+            double label = category == categoryOrderNumber ? 1 : -1;
+            if (label * margins[category] >= 1) {
+                continue;
+            }
+            double step = rate * label / scale;
+            for (Vector.Element element : featureVector.nonZeroes()) {
+                weights[element.index() * numCategories + category] += step * element.get();
+            }
+        }
+
+        if (scale < MIN_SCALE) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] *= scale;
+            }
+            scale = 1;
+        }
+    }
+
+    @Override
+    public Vector score(Vector featureVector) {
+        double[] scores = margins(featureVector);
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+        double sum = 0;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = Math.exp(scores[i] - max);
+            sum += scores[i];
+        }
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] /= sum;
+        }
+        return new DenseVector(scores, true);
+    }
+
+    private double[] margins(Vector featureVector) {
+        double[] margins = new double[numCategories];
+        for (Vector.Element element : featureVector.nonZeroes()) {
+            int offset = element.index() * numCategories;
+            double value = element.get();
+            for (int category = 0; category < numCategories; category++) {
+                margins[category] += value * weights[offset + category];
+            }
+        }
+        for (int category = 0; category < numCategories; category++) {
+            margins[category] *= scale;
+        }
+        return margins;
+    }
+
+    /**
+     * Gets weight of the specified feature for the specified category.
+     */
+    public double getWeight(int category, int feature) {
+        return scale * weights[feature * numCategories + category];
+    }
+
+    @Override
+    public long estimateSizeInBytes() {
+        return 16 + 8L * weights.length;
+    }
+
+    @Override
+    public ThreadSafety getThreadSafety() {
+        return ThreadSafety.CONCURRENT_SCORING;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(numCategories);
+        out.writeInt(numFeatures);
+        out.writeDouble(learningRate);
+        out.writeDouble(lambda);
+        out.writeLong(steps);
+        for (int i = 0; i < weights.length; i++) {
+            out.writeDouble(scale * weights[i]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int categoriesNumber = in.readInt();
+        int featuresNumber = in.readInt();
+        if (categoriesNumber < 0 || featuresNumber < 0 || (long) categoriesNumber * featuresNumber > MAX_WEIGHTS) {
+            throw new IOException("Invalid linear SVM engine of " + categoriesNumber + " categories and "
+                    + featuresNumber + " features.");
+        }
+        learningRate = in.readDouble();
+        lambda = in.readDouble();
+        steps = in.readLong();
+        double[] readWeights = new double[categoriesNumber * featuresNumber];
+        for (int i = 0; i < readWeights.length; i++) {
+            readWeights[i] = in.readDouble();
+        }
+        numCategories = categoriesNumber;
+        numFeatures = featuresNumber;
+        scale = 1;
+        weights = readWeights;
+    }
+}
@@ -0,0 +1,89 @@
+package com.genesys.knowledge.classification.classifier.engine;
+
+import com.genesys.knowledge.classification.defaults.LogisticRegressionDefaults;
+import lombok.Getter;
+import org.apache.mahout.classifier.sgd.L2;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+import org.apache.mahout.math.Vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Multinomial logistic regression trained by Mahout's {@link OnlineLogisticRegression}
+ * with the same settings as {@link com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier}.
+ * <p>
+ * An unsealed regression applies pending regularization to the coefficients it reads while scoring,
+ * so scoring isn't thread-safe either.
+ */
+public class LogisticRegressionEngine implements ClassifierEngine {
+
+    @Getter
+    private OnlineLogisticRegression model;
+
+    /**
+     * Creates empty engine to read with {@link #readFields(DataInput)}.
+     */
+    public LogisticRegressionEngine() {
+        model = new OnlineLogisticRegression();
+    }
+
+    public LogisticRegressionEngine(int numCategories, int numFeatures) {
+        model = new OnlineLogisticRegression(numCategories, numFeatures, new L2())
+                .learningRate(LogisticRegressionDefaults.DEFAULT_LR_LEARNING_RATE)
+                .alpha(LogisticRegressionDefaults.DEFAULT_LR_ALPHA)
+                .lambda(LogisticRegressionDefaults.DEFAULT_LR_LAMBDA)
+                .stepOffset(LogisticRegressionDefaults.DEFAULT_LR_STEP_OFFSET)
+                .decayExponent(LogisticRegressionDefaults.DEFAULT_LR_DECAY_EXPONENT);
+    }
+
+    @Override
+    public String getName() {
+        return "logistic-regression";
+    }
+
+    @Override
+    public int getNumCategories() {
+        return model.numCategories();
+    }
+
+    @Override
+    public int getNumFeatures() {
+        return model.numFeatures();
+    }
+
+    @Override
+    public void train(int categoryOrderNumber, Vector featureVector) {
+        model.train(categoryOrderNumber, featureVector);
+    }
+
+    @Override
+    public Vector score(Vector featureVector) {
+        return model.classifyFull(featureVector);
+    }
+
+    /**
+     * Estimates heap of the coefficients and of the per-feature update steps and counts.
+     */
+    @Override
+    public long estimateSizeInBytes() {
+        return 8L * (model.numCategories() - 1) * model.numFeatures() + 2 * 8L * model.numFeatures();
+    }
+
+    @Override
+    public ThreadSafety getThreadSafety() {
+        return ThreadSafety.NONE;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        model.write(out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        model = new OnlineLogisticRegression();
+        model.readFields(in);
+    }
+}
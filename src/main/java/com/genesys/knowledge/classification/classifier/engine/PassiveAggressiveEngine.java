@@ -0,0 +1,86 @@
+package com.genesys.knowledge.classification.classifier.engine;
+
+import com.genesys.knowledge.classification.defaults.EngineDefaults;
+import lombok.Getter;
+import org.apache.mahout.classifier.sgd.PassiveAggressive;
+import org.apache.mahout.math.Vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Multi-class passive-aggressive classifier trained by Mahout's {@link PassiveAggressive}.
+ * Scoring only reads the weights, so it may run concurrently.
+ */
+public class PassiveAggressiveEngine implements ClassifierEngine {
+
+    @Getter
+    private PassiveAggressive model;
+    private int numFeatures;
+
+    /**
+     * Creates empty engine to read with {@link #readFields(DataInput)}.
+     */
+    public PassiveAggressiveEngine() {
+        this(2, 1);
+    }
+
+    public PassiveAggressiveEngine(int numCategories, int numFeatures) {
+        model = new PassiveAggressive(numCategories, numFeatures)
+                .learningRate(EngineDefaults.DEFAULT_PA_LEARNING_RATE);
+        this.numFeatures = numFeatures;
+    }
+
+    @Override
+    public String getName() {
+        return "passive-aggressive";
+    }
+
+    @Override
+    public int getNumCategories() {
+        return model.numCategories();
+    }
+
+    @Override
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    @Override
+    public void train(int categoryOrderNumber, Vector featureVector) {
+        model.train(categoryOrderNumber, featureVector);
+    }
+
+    @Override
+    public Vector score(Vector featureVector) {
+        return model.classifyFull(featureVector);
+    }
+
+    /**
+     * Estimates heap of the dense weights, one row per category.
+     */
+    @Override
+    public long estimateSizeInBytes() {
+        return 8L * model.numCategories() * numFeatures;
+    }
+
+    @Override
+    public ThreadSafety getThreadSafety() {
+        return ThreadSafety.CONCURRENT_SCORING;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(numFeatures);
+        model.write(out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        numFeatures = in.readInt();
+        // the weights are replaced by the ones read, so the dimensions of the placeholder don't matter
+        model = new PassiveAggressive(2, 1);
+        model.readFields(in);
+    }
+}
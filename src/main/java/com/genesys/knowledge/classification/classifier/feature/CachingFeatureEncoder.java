@@ -0,0 +1,211 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import lombok.Getter;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link FeatureVectorEncoder} which remembers where the underlying encoder puts every term, so a term is hashed
+ * only the first time it's encoded and later encodings are plain array lookups.
+ * <p>
+ * The first time a term is added to a vector of some size, the updates the underlying encoder makes are recorded
+ * as {@link FeatureProbes} and later they are replayed scaled by the weight, see there when vectors are the same
+ * as if the underlying encoder added the terms.
+ * <p>
+ * At most {@link #maxSize} terms are cached in segments. Cached terms are looked up without locking, a hit only
+ * marks the term as used. A miss locks its segment to add the term and evicts terms by the CLOCK algorithm, which
+ * gives used terms a second chance, so terms used often stay cached however many others are seen. Terms are encoded
+ * by the underlying encoder while a trace dictionary is set, so the dictionary gets every term. Thread-safe
+ * as long as the probes aren't changed while terms are encoded.
+ */
+public class CachingFeatureEncoder extends FeatureVectorEncoder {
+
+    private static final int MAX_SEGMENTS_NUMBER = 16;
+
+    /**
+     * Encoder which hashes terms.
+     */
+    @Getter
+    private final FeatureVectorEncoder delegate;
+    @Getter
+    private final int maxSize;
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean tracing;
+
+    /**
+     * @param delegate encoder which hashes terms
+     * @param maxSize maximum number of cached terms
+     */
+    public CachingFeatureEncoder(FeatureVectorEncoder delegate, int maxSize) {
+        super(delegate.getName(), delegate.getProbes());
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        segments = new Segment[Math.max(1, Math.min(MAX_SEGMENTS_NUMBER, maxSize))];
+        for (int i = 0; i < segments.length; i++) {
+            // sizes of the segments sum up to the maximum size
+            segments[i] = new Segment(maxSize / segments.length + (i < maxSize % segments.length ? 1 : 0));
+        }
+    }
+
+    @Override
+    public void addToVector(String originalForm, double weight, Vector data) {
+        if (tracing) {
+            delegate.addToVector(originalForm, weight, data);
+            return;
+        }
+        getProbes(originalForm, data.size()).addTo(weight, data);
+    }
+
+    /**
+     * Adds the specified bytes to the vector with the underlying encoder, bytes aren't cached.
+     */
+    @Override
+    public void addToVector(byte[] originalForm, double weight, Vector data) {
+        delegate.addToVector(originalForm, weight, data);
+    }
+
+    private FeatureProbes getProbes(String term, int dataSize) {
+        Segment segment = segments[(term.hashCode() & Integer.MAX_VALUE) % segments.length];
+        Entry entry = segment.entries.get(term);
+        if (entry != null && entry.probes.getDataSize() == dataSize) {
+            if (!entry.used) {
+                // written only when it changes, so threads hitting the same term don't contend for its cache line
+                entry.used = true;
+            }
+            hits.increment();
+            return entry.probes;
+        }
+
+        misses.increment();
+        FeatureProbes probes = FeatureProbes.record(delegate, term, dataSize);
+        segment.put(term, probes);
+        return probes;
+    }
+
+    /**
+     * Gets the index the underlying encoder hashes the specified probe of the term to from the updates recorded
+     * for the term, so {@link #hashesForProbe} works like with the underlying encoder. The name is that of
+     * the underlying encoder.
+     */
+    @Override
+    protected int hashForProbe(byte[] originalForm, int dataSize, String name, int probe) {
+        return getProbes(new String(originalForm, StandardCharsets.UTF_8), dataSize).getIndex(probe);
+    }
+
+    @Override
+    public String asString(String originalForm) {
+        return delegate.asString(originalForm);
+    }
+
+    @Override
+    public int getProbes() {
+        return delegate != null ? delegate.getProbes() : super.getProbes();
+    }
+
+    /**
+     * Sets number of probes of the underlying encoder, which clears the cache.
+     */
+    @Override
+    public void setProbes(int probes) {
+        super.setProbes(probes);
+        // the superclass constructor sets probes before the fields of this class are assigned
+        if (delegate != null) {
+            delegate.setProbes(probes);
+            clear();
+        }
+    }
+
+    @Override
+    public void setTraceDictionary(Map<String, Set<Integer>> traceDictionary) {
+        super.setTraceDictionary(traceDictionary);
+        if (delegate != null) {
+            delegate.setTraceDictionary(traceDictionary);
+            tracing = traceDictionary != null;
+        }
+    }
+
+    /**
+     * Gets number of cached terms.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.entries.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Cached probes of a term and whether the term was used since the clock hand last passed it.
+     */
+    private static class Entry {
+
+        private final FeatureProbes probes;
+        private volatile boolean used;
+
+        private Entry(FeatureProbes probes) {
+            this.probes = probes;
+        }
+    }
+
+    /**
+     * Terms of a segment, read without locking, and the clock of the terms in the order they were added, which
+     * is guarded by the lock of the segment. When the segment is full, the clock hand passes used terms clearing
+     * their marks and moving them to the end, and evicts the first term which wasn't used.
+     */
+    private static class Segment {
+
+        private final int maxSize;
+        private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+        private final ArrayDeque<String> clock = new ArrayDeque<>();
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private synchronized void put(String term, FeatureProbes probes) {
+            if (entries.put(term, new Entry(probes)) == null) {
+                clock.addLast(term);
+            }
+            while (entries.size() > maxSize && !clock.isEmpty()) {
+                String candidate = clock.pollFirst();
+                Entry entry = entries.get(candidate);
+                if (entry.used) {
+                    entry.used = false;
+                    clock.addLast(candidate);
+                } else {
+                    entries.remove(candidate);
+                }
+            }
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+            clock.clear();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import com.genesys.knowledge.classification.learner.Learner;
+import com.genesys.knowledge.classification.util.Vocabulary;
+import lombok.Getter;
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Document frequencies and inverse document frequencies of all terms of a corpus, computed once per corpus.
+ * <p>
+ * Terms are identified by their ids in the {@link #vocabulary} of the corpus, frequencies are stored in primitive
+ * arrays indexed by the id. Inverse document frequencies are smoothed and add-one, the same as
+ * {@link com.genesys.knowledge.classification.util.TfIdf#idf(Iterable)}, so a term which doesn't occur in the corpus
+ * gets the highest idf value instead of an error.
+ * <p>
+ * Statistics are {@link Writable}, so they can be stored with the model and the corpus isn't needed to classify documents.
+ */
+public class CorpusStatistics implements Writable {
+
+    @Getter
+    private Vocabulary vocabulary;
+    private int[] documentFrequencies = new int[16];
+    private double[] idfs = new double[0];
+
+    @Getter
+    private int documentsNumber;
+
+    public CorpusStatistics() {
+        this(new Vocabulary());
+    }
+
+    public CorpusStatistics(Vocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    /**
+     * Builds statistics of the specified documents, each document's title and body are treated as one bag of terms.
+     * The statistics share the vocabulary of the first document, or get a new one if its tokens aren't interned.
+     *
+     * @param documents corpus to build statistics of
+     * @return corpus statistics
+     */
+    public static CorpusStatistics build(Iterable<Learner.Document> documents) {
+        Iterator<Learner.Document> iterator = documents.iterator();
+        if (!iterator.hasNext()) {
+            return builder(new Vocabulary()).build();
+        }
+        Learner.Document first = iterator.next();
+        Builder builder = builder(first.getVocabulary() != null ? first.getVocabulary() : new Vocabulary());
+        builder.addDocument(first);
+        while (iterator.hasNext()) {
+            builder.addDocument(iterator.next());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a builder which collects statistics document by document, e.g. while a dataset is streamed.
+     *
+     * @param vocabulary vocabulary of the corpus
+     * @return builder of statistics
+     */
+    public static Builder builder(Vocabulary vocabulary) {
+        return new Builder(vocabulary);
+    }
+
+    public static class Builder {
+
+        private final CorpusStatistics statistics;
+        private int[] lastDocument = new int[0];
+
+        private Builder(Vocabulary vocabulary) {
+            statistics = new CorpusStatistics(vocabulary);
+        }
+
+        /**
+         * Counts terms of the specified document. Tokens of a document which isn't interned into
+         * the vocabulary of the statistics are interned there.
+         *
+         * @param document document to add
+         * @return {@code this} builder
+         */
+        public Builder addDocument(Learner.Document document) {
+            int documentNumber = statistics.documentsNumber++;
+            for (Learner.Document.Field field : Arrays.asList(document.getTitle(), document.getBody())) {
+                int[] termIds = document.getVocabulary() == statistics.vocabulary
+                        ? field.getTokenIds()
+                        : statistics.vocabulary.intern(field.getTokens());
+                for (int termId : termIds) {
+                    if (termId >= lastDocument.length) {
+                        int length = Math.max(2 * lastDocument.length, termId + 1);
+                        int previousLength = lastDocument.length;
+                        lastDocument = Arrays.copyOf(lastDocument, length);
+                        Arrays.fill(lastDocument, previousLength, length, -1);
+                        statistics.ensureCapacity(length);
+                    }
+                    if (lastDocument[termId] != documentNumber) {
+                        lastDocument[termId] = documentNumber;
+                        statistics.documentFrequencies[termId]++;
+                    }
+                }
+            }
+            return this;
+        }
+
+        public CorpusStatistics build() {
+            statistics.computeIdfs(lastDocument.length);
+            return statistics;
+        }
+    }
+
+    private void ensureCapacity(int termsNumber) {
+        if (documentFrequencies.length < termsNumber) {
+            documentFrequencies = Arrays.copyOf(documentFrequencies, termsNumber);
+        }
+    }
+
+    private void computeIdfs(int termsNumber) {
+        ensureCapacity(termsNumber);
+        idfs = new double[termsNumber];
+        for (int termId = 0; termId < termsNumber; termId++) {
+            idfs[termId] = idf(documentFrequencies[termId]);
+        }
+    }
+
+    private double idf(int documentFrequency) {
+        // smoothed as if the corpus contained an additional document with every term, plus one
+        return Math.log((documentsNumber + 1.0) / (documentFrequency + 1.0)) + 1;
+    }
+
+    /**
+     * Gets inverse document frequency of the term with the specified id in {@link #vocabulary}.
+     *
+     * @param termId id of the term
+     * @return idf of the term, or idf of a term with zero document frequency if the corpus doesn't contain it
+     */
+    public double getIdf(int termId) {
+        return termId >= 0 && termId < idfs.length ? idfs[termId] : idf(0);
+    }
+
+    /**
+     * Gets inverse document frequency of the specified term.
+     *
+     * @param term term to get its idf
+     * @return idf of the term, or idf of a term with zero document frequency if the corpus doesn't contain it
+     */
+    public double getIdf(String term) {
+        return getIdf(vocabulary.getId(term));
+    }
+
+    public int getDocumentFrequency(String term) {
+        int termId = vocabulary.getId(term);
+        return termId >= 0 && termId < idfs.length ? documentFrequencies[termId] : 0;
+    }
+
+    public int getTermsNumber() {
+        return idfs.length;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(documentsNumber);
+        out.writeInt(idfs.length);
+        for (int termId = 0; termId < idfs.length; termId++) {
+            out.writeUTF(vocabulary.getTerm(termId));
+            out.writeInt(documentFrequencies[termId]);
+        }
+    }
+
+    /**
+     * Reads statistics into a new vocabulary, term ids are the same as in the vocabulary they were written from.
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        documentsNumber = in.readInt();
+        int termsNumber = in.readInt();
+        if (documentsNumber < 0 || termsNumber < 0) {
+            throw new IOException("Invalid statistics of " + documentsNumber + " documents and "
+                    + termsNumber + " terms.");
+        }
+        vocabulary = new Vocabulary();
+        documentFrequencies = new int[termsNumber];
+        for (int termId = 0; termId < termsNumber; termId++) {
+            vocabulary.intern(in.readUTF());
+            documentFrequencies[termId] = in.readInt();
+        }
+        computeIdfs(termsNumber);
+    }
+}
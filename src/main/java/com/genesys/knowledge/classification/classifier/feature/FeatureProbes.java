@@ -0,0 +1,92 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
+
+import java.util.Arrays;
+
+/**
+ * Updates a {@link FeatureVectorEncoder} makes to a vector of {@link #dataSize} size when it adds a term with unit
+ * weight, in the order it makes them, so the term can be added again by replaying them instead of hashing it.
+ * <p>
+ * Replayed updates scaled by a weight give vectors which are the same to the bit as if the encoder added the term,
+ * as long as the values it adds are proportional to the weight and don't change over time, which holds for
+ * {@link org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder} and
+ * {@link org.apache.mahout.vectorizer.encoders.ConstantValueEncoder}, but not for adaptive encoders.
+ * Fields are final, so instances are safely visible to other threads.
+ */
+final class FeatureProbes {
+
+    private final int dataSize;
+    private final int[] indexes;
+    private final double[] values;
+
+    private FeatureProbes(int dataSize, int[] indexes, double[] values) {
+        this.dataSize = dataSize;
+        this.indexes = indexes;
+        this.values = values;
+    }
+
+    /**
+     * Records the updates the specified encoder makes when it adds the term to a vector of the specified size.
+     */
+    static FeatureProbes record(FeatureVectorEncoder encoder, String term, int dataSize) {
+        RecordingVector recorder = new RecordingVector(dataSize, encoder.getProbes());
+        encoder.addToVector(term, 1, recorder);
+        return new FeatureProbes(dataSize, Arrays.copyOf(recorder.indexes, recorder.updatesNumber),
+                Arrays.copyOf(recorder.values, recorder.updatesNumber));
+    }
+
+    int getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * Gets index of the element the specified update is made to, i.e. where the encoder hashes the probe to.
+     */
+    int getIndex(int update) {
+        if (update < 0 || update >= indexes.length) {
+            throw new IllegalArgumentException("Term is added by " + indexes.length + " updates, not " + update + ".");
+        }
+        return indexes[update];
+    }
+
+    /**
+     * Adds the term with the specified weight to the specified vector.
+     */
+    void addTo(double weight, Vector data) {
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            data.setQuick(index, data.getQuick(index) + weight * values[i]);
+        }
+    }
+
+    /**
+     * Vector recording every change of an element as the index and the value added to the element.
+     */
+    private static class RecordingVector extends RandomAccessSparseVector {
+
+        private int[] indexes;
+        private double[] values;
+        private int updatesNumber;
+
+        private RecordingVector(int size, int probes) {
+            super(size, Math.max(probes, 1));
+            indexes = new int[Math.max(probes, 1)];
+            values = new double[indexes.length];
+        }
+
+        @Override
+        public void setQuick(int index, double value) {
+            if (updatesNumber == indexes.length) {
+                indexes = Arrays.copyOf(indexes, 2 * indexes.length);
+                values = Arrays.copyOf(values, indexes.length);
+            }
+            indexes[updatesNumber] = index;
+            values[updatesNumber] = value - getQuick(index);
+            updatesNumber++;
+            super.setQuick(index, value);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.learner.Learner;
+import lombok.Getter;
+import org.apache.mahout.math.MurmurHash;
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sizes the hashed feature space of a corpus by the number of distinct terms in it rather than by the length
+ * of its longest document, so terms don't crowd into a few hash slots.
+ * <p>
+ * Distinct terms are counted approximately by a HyperLogLog sketch in a single pass over the corpus, in memory
+ * independent of the size of the vocabulary: {@code 2^precision} one-byte registers with a standard error of
+ * {@code 1.04 / sqrt(2^precision)}, i.e. about 0.8% for the default precision. Sketches of parts of a corpus
+ * counted by separate threads can be merged.
+ * <p>
+ * With {@code n} terms hashed into {@code m} slots a term shares its slot with another term with probability
+ * {@code 1 - (1 - 1/m)^(n-1) ~ 1 - e^(-n/m)}, so the number of features for a target collision rate {@code r}
+ * is {@code m = n / -ln(1 - r)}.
+ * <p>
+ * Models over the feature space are dense, {@code 8 * (categories + 1)} bytes per feature: the {@code categories - 1}
+ * rows of coefficients and two per-feature vectors of the learning rate schedule. Training may hold several copies
+ * of a model, e.g. a replica per training thread, so the number of features is also capped to keep all the copies
+ * within {@link ClassifierDefaults#DEFAULT_MAX_MODEL_WEIGHTS_BYTES}.
+ */
+public class FeatureSpaceSizer {
+
+    private static final int HASH_SEED = 0x1F0E;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public FeatureSpaceSizer() {
+        this(ClassifierDefaults.DEFAULT_HYPERLOGLOG_PRECISION);
+    }
+
+    /**
+     * @param precision number of bits of a hash selecting a register, from 4 to 18
+     */
+    public FeatureSpaceSizer(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be from 4 to 18: " + precision);
+        }
+        this.precision = precision;
+        registers = new byte[1 << precision];
+    }
+
+    public FeatureSpaceSizer addTerm(String term) {
+        long hash = MurmurHash.hash64A(term.getBytes(StandardCharsets.UTF_8), HASH_SEED);
+        int register = (int) (hash >>> (64 - precision));
+        // rank of the first set bit of the rest of the hash, a sentinel bit caps it when the rest is all zeros
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+        return this;
+    }
+
+    public FeatureSpaceSizer addTerms(Iterable<String> terms) {
+        for (String term : terms) {
+            addTerm(term);
+        }
+        return this;
+    }
+
+    /**
+     * Adds tokens of the title and the body of the specified document.
+     */
+    public FeatureSpaceSizer addDocument(Learner.Document document) {
+        addTerms(document.getTitle().getTokens());
+        return addTerms(document.getBody().getTokens());
+    }
+
+    /**
+     * Merges the specified sketch into {@code this} one, the result counts terms added to either of them.
+     *
+     * @param other sketch of the same precision
+     * @return {@code this} sizer
+     */
+    public FeatureSpaceSizer merge(FeatureSpaceSizer other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can't merge sketches of precision " + other.precision
+                    + " and " + precision + ".");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Estimates the number of distinct terms added so far.
+     */
+    public long estimateVocabularySize() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Gets number of features which keeps the collision rate of the terms added so far at the specified rate.
+     *
+     * @param collisionRate target fraction of terms sharing a feature with another term
+     * @return number of features
+     */
+    public int numFeatures(double collisionRate) {
+        return numFeatures(estimateVocabularySize(), collisionRate);
+    }
+
+    /**
+     * Gets number of features which keeps the collision rate of the terms added so far at the specified rate,
+     * as long as the specified number of copies of a model fit into the memory budget.
+     *
+     * @param collisionRate target fraction of terms sharing a feature with another term
+     * @param numCategories number of categories of the model
+     * @param modelCopies number of copies of the model held at once
+     * @return number of features
+     */
+    public int numFeatures(double collisionRate, int numCategories, int modelCopies) {
+        return numFeatures(estimateVocabularySize(), collisionRate, numCategories, modelCopies);
+    }
+
+    /**
+     * Gets number of features which keeps the collision rate of the specified number of terms at the specified rate,
+     * bounded by {@link ClassifierDefaults#DEFAULT_NUM_FEATURES} and {@link ClassifierDefaults#DEFAULT_MAX_NUM_FEATURES}.
+     *
+     * @param vocabularySize number of distinct terms
+     * @param collisionRate target fraction of terms sharing a feature with another term
+     * @return number of features
+     */
+    public static int numFeatures(long vocabularySize, double collisionRate) {
+        if (collisionRate <= 0 || collisionRate >= 1) {
+            throw new IllegalArgumentException("Collision rate must be between 0 and 1: " + collisionRate);
+        }
+        double numFeatures = Math.ceil(vocabularySize / -Math.log1p(-collisionRate));
+        return (int) Math.max(ClassifierDefaults.DEFAULT_NUM_FEATURES,
+                Math.min(ClassifierDefaults.DEFAULT_MAX_NUM_FEATURES, numFeatures));
+    }
+
+    /**
+     * Gets number of features which keeps the collision rate of the specified number of terms at the specified rate,
+     * bounded as by {@link #numFeatures(long, double)} and by the number of features the specified number of copies
+     * of a model fit into {@link ClassifierDefaults#DEFAULT_MAX_MODEL_WEIGHTS_BYTES} with.
+     *
+     * @param vocabularySize number of distinct terms
+     * @param collisionRate target fraction of terms sharing a feature with another term
+     * @param numCategories number of categories of the model
+     * @param modelCopies number of copies of the model held at once
+     * @return number of features
+     */
+    public static int numFeatures(long vocabularySize, double collisionRate, int numCategories, int modelCopies) {
+        if (numCategories < 1 || modelCopies < 1) {
+            throw new IllegalArgumentException("Numbers of categories and model copies must be positive: "
+                    + numCategories + ", " + modelCopies);
+        }
+        long maxNumFeatures = ClassifierDefaults.DEFAULT_MAX_MODEL_WEIGHTS_BYTES
+                / (8L * (numCategories + 1) * modelCopies);
+        return (int) Math.max(ClassifierDefaults.DEFAULT_NUM_FEATURES,
+                Math.min(maxNumFeatures, numFeatures(vocabularySize, collisionRate)));
+    }
+
+    /**
+     * Gets statistics expected when the specified number of terms is hashed into the specified number of features.
+     */
+    public static CollisionStatistics expectedCollisions(long vocabularySize, int numFeatures) {
+        double emptyProbability = Math.pow(1 - 1.0 / numFeatures, vocabularySize);
+        double aloneProbability = Math.pow(1 - 1.0 / numFeatures, Math.max(0, vocabularySize - 1));
+        return new CollisionStatistics(vocabularySize, numFeatures,
+                Math.round(numFeatures * (1 - emptyProbability)),
+                Math.round(vocabularySize * (1 - aloneProbability)));
+    }
+
+    /**
+     * Hashes the specified terms into the specified number of features with the specified encoder
+     * and counts the actual collisions.
+     *
+     * @param terms terms to hash, repeated terms are counted once
+     * @param encoder encoder the terms are hashed with
+     * @param numFeatures number of features
+     * @return collision statistics of the terms
+     */
+    public static CollisionStatistics measureCollisions(Iterable<String> terms, FeatureVectorEncoder encoder,
+                                                        int numFeatures) {
+        Set<String> distinctTerms = new HashSet<>();
+        for (String term : terms) {
+            distinctTerms.add(term);
+        }
+
+        Map<Integer, Integer> termsPerFeature = new HashMap<>();
+        for (String term : distinctTerms) {
+            Vector probeVector = new RandomAccessSparseVector(numFeatures, encoder.getProbes());
+            encoder.addToVector(term, 1, probeVector);
+            for (Vector.Element element : probeVector.nonZeroes()) {
+                termsPerFeature.merge(element.index(), 1, Integer::sum);
+            }
+        }
+
+        long collidingTerms = 0;
+        for (int termsNumber : termsPerFeature.values()) {
+            if (termsNumber > 1) {
+                collidingTerms += termsNumber;
+            }
+        }
+        return new CollisionStatistics(distinctTerms.size(), numFeatures, termsPerFeature.size(), collidingTerms);
+    }
+
+    /**
+     * Number of terms hashed into a feature space and how many of them share a feature with another term.
+     */
+    public static class CollisionStatistics {
+
+        @Getter
+        private final long vocabularySize;
+        @Getter
+        private final int numFeatures;
+        /**
+         * Number of features at least one term is hashed into.
+         */
+        @Getter
+        private final long occupiedFeatures;
+        /**
+         * Number of terms sharing a feature with at least one other term.
+         */
+        @Getter
+        private final long collidingTerms;
+
+        public CollisionStatistics(long vocabularySize, int numFeatures, long occupiedFeatures, long collidingTerms) {
+            this.vocabularySize = vocabularySize;
+            this.numFeatures = numFeatures;
+            this.occupiedFeatures = occupiedFeatures;
+            this.collidingTerms = collidingTerms;
+        }
+
+        /**
+         * Gets fraction of terms sharing a feature with another term.
+         */
+        public double getCollisionRate() {
+            return vocabularySize > 0 ? (double) collidingTerms / vocabularySize : 0;
+        }
+
+        /**
+         * Gets average number of terms per occupied feature.
+         */
+        public double getTermsPerFeature() {
+            return occupiedFeatures > 0 ? (double) vocabularySize / occupiedFeatures : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d terms in %d features: %d features occupied, %.2f terms per feature, "
+                            + "%d terms (%.1f%%) collide", vocabularySize, numFeatures, occupiedFeatures,
+                    getTermsPerFeature(), collidingTerms, 100 * getCollisionRate());
+        }
+    }
+}
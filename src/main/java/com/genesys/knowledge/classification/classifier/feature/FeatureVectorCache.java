@@ -0,0 +1,83 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.learner.Learner;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.mahout.math.SequentialAccessSparseVector;
+import org.apache.mahout.math.Vector;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feature vectors of a set of training documents encoded once before training,
+ * so that every epoch reuses them instead of hashing all the tokens again.
+ * <p>
+ * Vectors are kept as {@link SequentialAccessSparseVector}s which store only non-zero elements
+ * in two sorted arrays. The cache is filled in the constructor and never changes afterwards,
+ * so it can be read from several training threads; the cached vectors are shared and must not be modified.
+ * <p>
+ * Documents that don't fit into the {@link #maxCachedNonZeros} budget are encoded on every request,
+ * which keeps memory bounded for corpora that are too big to be held vectorized.
+ */
+@Slf4j
+public class FeatureVectorCache {
+
+    private final LogisticRegressionClassifier classifier;
+    private final List<Learner.Document> allDocuments;
+    private final Map<Learner.Document, Vector> featureVectors = new IdentityHashMap<>();
+
+    @Getter
+    private final long maxCachedNonZeros;
+    @Getter
+    private long cachedNonZeros;
+
+    /**
+     * Encodes the specified documents until {@code maxCachedNonZeros} non-zero elements are stored.
+     *
+     * @param classifier classifier which encodes documents
+     * @param allDocuments documents to encode
+     * @param maxCachedNonZeros maximum number of non-zero elements stored in all cached vectors
+     */
+    public FeatureVectorCache(LogisticRegressionClassifier classifier, List<Learner.Document> allDocuments,
+                              long maxCachedNonZeros) {
+        this.classifier = classifier;
+        this.allDocuments = allDocuments;
+        this.maxCachedNonZeros = maxCachedNonZeros;
+
+        for (Learner.Document document : allDocuments) {
+            if (featureVectors.containsKey(document)) {
+                continue;
+            }
+            Vector featureVector = classifier.getFeatureVector(document, allDocuments);
+            int nonZeros = featureVector.getNumNonZeroElements();
+            if (cachedNonZeros + nonZeros > maxCachedNonZeros) {
+                log.info("Feature vector cache is full, {} of {} documents are encoded on the fly.",
+                        allDocuments.size() - featureVectors.size(), allDocuments.size());
+                break;
+            }
+            featureVectors.put(document, new SequentialAccessSparseVector(featureVector));
+            cachedNonZeros += nonZeros;
+        }
+    }
+
+    /**
+     * Gets feature vector of the specified document, encoding it if the document isn't cached.
+     *
+     * @param document document to get its feature vector
+     * @return feature vector of the document
+     */
+    public Vector getFeatureVector(Learner.Document document) {
+        Vector featureVector = featureVectors.get(document);
+        if (featureVector == null) {
+            featureVector = classifier.getFeatureVector(document, allDocuments);
+        }
+        return featureVector;
+    }
+
+    public int getCachedDocumentsNumber() {
+        return featureVectors.size();
+    }
+}
@@ -1,8 +1,7 @@
 package com.genesys.knowledge.classification.classifier.feature;
 
-import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.AbstractClassifier;
 import com.genesys.knowledge.classification.learner.Learner;
-import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
 import org.apache.mahout.math.RandomAccessSparseVector;
 import org.apache.mahout.math.Vector;
 
@@ -13,10 +12,10 @@ import java.util.List;
  */
 public interface FeatureVectorHandler {
 
-    default Vector getFeatureVector(LogisticRegressionClassifier classifier,
+    default Vector getFeatureVector(AbstractClassifier classifier,
                                     Learner.Document document,
                                     List<Learner.Document> allDocuments) {
-        Vector outputVector = new RandomAccessSparseVector(((OnlineLogisticRegression) classifier.getClassifier()).numFeatures());
+        Vector outputVector = new RandomAccessSparseVector(classifier.getNumFeatures());
 
         classifier.getInterceptEncoder().addToVector("1", outputVector); // output[0] is the intercept term
         // Look at the regression graph on the link below to see why we need the intercept.
@@ -27,5 +26,5 @@ public interface FeatureVectorHandler {
     }
 
     void addDocumentToVector(Learner.Document document, Vector outputVector,
-                             LogisticRegressionClassifier classifier, List<Learner.Document> allDocuments);
+                             AbstractClassifier classifier, List<Learner.Document> allDocuments);
 }
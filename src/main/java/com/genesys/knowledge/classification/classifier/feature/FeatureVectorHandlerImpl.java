@@ -1,16 +1,14 @@
 package com.genesys.knowledge.classification.classifier.feature;
 
-import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.AbstractClassifier;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
 import com.genesys.knowledge.classification.learner.Learner;
-import com.genesys.knowledge.classification.util.TfIdf;
+import com.genesys.knowledge.classification.util.PrimitiveTfIdf;
 import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.map.OpenObjectIntHashMap;
+import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
 
 import java.util.List;
-import java.util.Map;
-
-import static com.genesys.knowledge.classification.util.TfIdf.idf;
-import static com.genesys.knowledge.classification.util.TfIdf.tf;
-import static com.genesys.knowledge.classification.util.TfIdf.tfIdf;
 
 /**
  * Created by rhorilyi on 24.07.2017.
@@ -19,21 +17,87 @@ public class FeatureVectorHandlerImpl implements FeatureVectorHandler {
 
     @Override
     public void addDocumentToVector(Learner.Document document, Vector outputVector,
-                                    LogisticRegressionClassifier classifier, List<Learner.Document> allDocuments) {
-        List<String> titleTokens = document.getTitle().getTokens();
-        for (String titleToken : titleTokens) {
-            classifier.getFeatureEncoder().addToVector(titleToken, calcTokenWeight(titleToken, titleTokens, allDocuments), outputVector);
+                                    AbstractClassifier classifier, List<Learner.Document> allDocuments) {
+        // statistics are built once when the classifier is created, so concurrent encodings only read them
+        CorpusStatistics statistics = classifier.getCorpusStatistics();
+        if (statistics == null) {
+            throw new IllegalStateException("Classifier has no corpus statistics to weight tokens by.");
         }
-        List<String> bodyTokens = document.getBody().getTokens();
-        for (String bodyToken : bodyTokens) {
-            classifier.getFeatureEncoder().addToVector(bodyToken, calcTokenWeight(bodyToken, bodyTokens, allDocuments), outputVector);
+
+        if (document.getVocabulary() != null && document.getVocabulary() == statistics.getVocabulary()) {
+            TermIdFeatureEncoder termIdEncoder = classifier.getTermIdEncoder();
+            addFieldToVector(document.getTitle().getTokenIds(), outputVector, termIdEncoder, statistics);
+            addFieldToVector(document.getBody().getTokenIds(), outputVector, termIdEncoder, statistics);
+        } else {
+            FeatureVectorEncoder featureEncoder = classifier.getFeatureEncoder();
+            addFieldToVector(document.getTitle().getTokens(), outputVector, featureEncoder, statistics);
+            addFieldToVector(document.getBody().getTokens(), outputVector, featureEncoder, statistics);
         }
     }
 
-    private double calcTokenWeight(String token, List<String> documentTokens, List<Learner.Document> allDocuments) {
-//        Map<String, Double> tf = tf(documentTokens, TfIdf.TfType.BOOLEAN);
-//        Map<String, Double> idf = idf(allDocumentTokens);
-//        return tfIdf(tf, idf, TfIdf.Normalization.COSINE).get(token);
-        return 2;
+    /**
+     * Adds interned tokens of a document field to the vector weighting them by cosine normalized tf-idf.
+     */
+    private void addFieldToVector(int[] tokenIds, Vector outputVector,
+                                  TermIdFeatureEncoder termIdEncoder, CorpusStatistics statistics) {
+        PrimitiveTfIdf.TermWeights frequencies = PrimitiveTfIdf.tf(tokenIds, ClassifierDefaults.DEFAULT_TF_TYPE);
+        int[] termIds = frequencies.getTermIds();
+        double[] weights = frequencies.getWeights();
+        double norm = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] *= statistics.getIdf(termIds[i]);
+            norm += weights[i] * weights[i];
+        }
+        if (norm == 0) {
+            return;
+        }
+
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < weights.length; i++) {
+            termIdEncoder.addToVector(termIds[i], weights[i] / norm, outputVector);
+        }
+    }
+
+    /**
+     * Adds tokens of a document field to the vector weighting them by cosine normalized tf-idf.
+     */
+    private void addFieldToVector(List<String> tokens, Vector outputVector,
+                                  FeatureVectorEncoder featureEncoder, CorpusStatistics statistics) {
+        OpenObjectIntHashMap<String> frequencies = new OpenObjectIntHashMap<>(tokens.size());
+        for (String token : tokens) {
+            frequencies.put(token, frequencies.get(token) + 1);
+        }
+
+        List<String> terms = frequencies.keys();
+        double[] weights = new double[terms.size()];
+        double norm = 0;
+        for (int i = 0; i < weights.length; i++) {
+            String term = terms.get(i);
+            weights[i] = calcTokenWeight(frequencies.get(term), statistics.getIdf(term));
+            norm += weights[i] * weights[i];
+        }
+        if (norm == 0) {
+            return;
+        }
+
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < weights.length; i++) {
+            featureEncoder.addToVector(terms.get(i), weights[i] / norm, outputVector);
+        }
+    }
+
+    private double calcTokenWeight(int frequency, double idf) {
+        double tf;
+        switch (ClassifierDefaults.DEFAULT_TF_TYPE) {
+            case LOGARITHM:
+                tf = 1 + Math.log(frequency);
+                break;
+            case BOOLEAN:
+                tf = 1;
+                break;
+            default:
+                tf = frequency;
+        }
+        return tf * idf;
     }
 }
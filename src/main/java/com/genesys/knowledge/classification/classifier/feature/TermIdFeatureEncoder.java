@@ -0,0 +1,69 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import com.genesys.knowledge.classification.util.Vocabulary;
+import lombok.Getter;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
+
+import java.util.Arrays;
+
+/**
+ * Adds terms to feature vectors by their ids in a {@link Vocabulary}.
+ * <p>
+ * The underlying {@link FeatureVectorEncoder} hashes every term only the first time the term is encoded,
+ * the updates it makes are remembered as {@link FeatureProbes} per term id, so later encodings are plain array
+ * lookups. A {@link CachingFeatureEncoder} is bypassed for its underlying encoder, so terms aren't remembered
+ * by both. Thread-safe.
+ */
+public class TermIdFeatureEncoder {
+
+    private final FeatureVectorEncoder featureEncoder;
+    @Getter
+    private final Vocabulary vocabulary;
+    @Getter
+    private final int numFeatures;
+
+    private volatile FeatureProbes[] probes = new FeatureProbes[0];
+
+    /**
+     * @param featureEncoder encoder which hashes terms
+     * @param vocabulary vocabulary the term ids refer to
+     * @param numFeatures size of the feature vectors
+     */
+    public TermIdFeatureEncoder(FeatureVectorEncoder featureEncoder, Vocabulary vocabulary, int numFeatures) {
+        this.featureEncoder = featureEncoder instanceof CachingFeatureEncoder
+                ? ((CachingFeatureEncoder) featureEncoder).getDelegate()
+                : featureEncoder;
+        this.vocabulary = vocabulary;
+        this.numFeatures = numFeatures;
+    }
+
+    /**
+     * Adds the term with the specified id to the specified vector.
+     *
+     * @param termId id of the term in {@link #vocabulary}
+     * @param weight weight of the term
+     * @param data vector of {@link #numFeatures} size
+     */
+    public void addToVector(int termId, double weight, Vector data) {
+        getProbes(termId).addTo(weight, data);
+    }
+
+    private FeatureProbes getProbes(int termId) {
+        FeatureProbes[] current = probes;
+        if (termId < current.length && current[termId] != null) {
+            return current[termId];
+        }
+        synchronized (this) {
+            current = probes;
+            if (termId >= current.length) {
+                current = Arrays.copyOf(current, Math.max(2 * current.length, Math.max(termId + 1, vocabulary.size())));
+            }
+            if (current[termId] == null) {
+                current[termId] = FeatureProbes.record(featureEncoder, vocabulary.getTerm(termId), numFeatures);
+            }
+            probes = current;
+            return current[termId];
+        }
+    }
+}
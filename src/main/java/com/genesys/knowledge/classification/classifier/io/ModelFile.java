@@ -0,0 +1,318 @@
+package com.genesys.knowledge.classification.classifier.io;
+
+import com.genesys.knowledge.classification.classifier.FrozenLinearModel;
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.MappedWeightStore;
+import com.genesys.knowledge.classification.classifier.WeightStore;
+import com.genesys.knowledge.classification.classifier.feature.CorpusStatistics;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.util.CategoryHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.mahout.classifier.AbstractVectorClassifier;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file holding everything needed to classify documents with a {@link LogisticRegressionClassifier}:
+ * encoder settings, categories, corpus statistics and the model. Files are read and written as streams
+ * through a {@link FileChannel}, so a model is never held in a single {@code byte[]}.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <pre>
+ * int     magic number {@link #MAGIC}
+ * short   format version {@link #VERSION}
+ * UTF     name of the feature encoder
+ * int     number of probes of the feature encoder
+ * UTF     name of the intercept encoder
+ * UTF     tf type tokens are weighted with
+ * ...     category ids, see {@link CategoryHandler#write}
+ * boolean whether corpus statistics follow
+ * ...     corpus statistics, see {@link CorpusStatistics#write}
+ * byte    model kind, {@link #ONLINE_LOGISTIC_REGRESSION} or {@link #FROZEN_LINEAR_MODEL}
+ * ...     the model, weights of a frozen model start at a multiple of 8 bytes from the beginning of the file
+ * </pre>
+ * A model is saved into a temporary file which replaces the target file by an atomic move once it's fully written
+ * and synced, so readers never see a partially written model.
+ */
+@Slf4j
+public class ModelFile {
+
+    public static final int MAGIC = 0x4B434D46; // "KCMF"
+    public static final short VERSION = 1;
+
+    public static final byte ONLINE_LOGISTIC_REGRESSION = 0;
+    public static final byte FROZEN_LINEAR_MODEL = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ModelFile() {
+    }
+
+    /**
+     * Saves the specified classifier into the specified file atomically.
+     *
+     * @param classifier classifier to save
+     * @param file file to save to, replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public static void save(LogisticRegressionClassifier classifier, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+                // training holds the classifier's monitor, so the model doesn't change while it's written
+                synchronized (classifier) {
+                    write(classifier, out, channel);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            move(tempFile, file);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void write(LogisticRegressionClassifier classifier, DataOutputStream out, FileChannel channel)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        out.writeUTF(classifier.getFeatureEncoder().getName());
+        out.writeInt(classifier.getFeatureEncoder().getProbes());
+        out.writeUTF(classifier.getInterceptEncoder().getName());
+        out.writeUTF(ClassifierDefaults.DEFAULT_TF_TYPE.name());
+
+        classifier.getCategoryHandler().write(out);
+
+        CorpusStatistics corpusStatistics = classifier.getCorpusStatistics();
+        out.writeBoolean(corpusStatistics != null);
+        if (corpusStatistics != null) {
+            corpusStatistics.write(out);
+        }
+
+        AbstractVectorClassifier model = classifier.getClassifier();
+        if (model instanceof FrozenLinearModel) {
+            out.writeByte(FROZEN_LINEAR_MODEL);
+            out.flush();
+            ((FrozenLinearModel) model).write(out, channel.position());
+        } else {
+            out.writeByte(ONLINE_LOGISTIC_REGRESSION);
+            ((OnlineLogisticRegression) model).write(out);
+        }
+    }
+
+    /**
+     * Moves the specified file replacing the target file atomically, or non-atomically
+     * if the file system doesn't support atomic moves.
+     *
+     * @param source file to move
+     * @param target file to replace
+     * @throws IOException if the file can't be moved
+     */
+    public static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("File system doesn't support atomic moves, replacing {} non-atomically", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Loads classifier from the specified file.
+     *
+     * @param file file written by {@link #save(LogisticRegressionClassifier, Path)}
+     * @return trained classifier
+     * @throws IOException if the file can't be read or isn't a model file of a supported version
+     */
+    public static LogisticRegressionClassifier load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+            Header header = Header.read(in, file);
+
+            AbstractVectorClassifier model;
+            byte kind = in.readByte();
+            if (kind == FROZEN_LINEAR_MODEL) {
+                model = new FrozenLinearModel();
+                ((FrozenLinearModel) model).readFields(in);
+            } else if (kind == ONLINE_LOGISTIC_REGRESSION) {
+                model = readOnlineLogisticRegression(in, file);
+            } else {
+                throw new IOException("Unknown model kind " + kind + " in " + file + ".");
+            }
+
+            return header.createClassifier(model);
+        }
+    }
+
+    /**
+     * Reads Mahout's model, which doesn't validate what it reads, so a corrupt file fails with a runtime exception
+     * thrown from the middle of it.
+     */
+    private static OnlineLogisticRegression readOnlineLogisticRegression(DataInputStream in, Path file)
+            throws IOException {
+        OnlineLogisticRegression model = new OnlineLogisticRegression();
+        try {
+            model.readFields(in);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt model in " + file + ".", e);
+        }
+        return model;
+    }
+
+    /**
+     * Opens classifier from the specified file mapping it into memory. Weights of a frozen model are scored
+     * in place from the mapped file through a {@link MappedWeightStore}, only categories and corpus statistics
+     * are read onto the heap, so opening takes time independent of the size of the model. A trainable model
+     * can't be scored in place and is read onto the heap as by {@link #load(Path)}.
+     * <p>
+     * The file is mapped read-only and must not be modified while the classifier is used,
+     * a new model has to be saved by {@link #save(LogisticRegressionClassifier, Path)}, which replaces the file.
+     * Files up to 2 GB can be mapped.
+     *
+     * @param file file written by {@link #save(LogisticRegressionClassifier, Path)}
+     * @return read-only trained classifier
+     * @throws IOException if the file can't be read or isn't a model file of a supported version
+     */
+    public static LogisticRegressionClassifier map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+        Header header = Header.read(in, file);
+
+        // the stream reads the buffer without buffering, so it fails with EOFException where the file is cut off
+        byte kind = in.readByte();
+        if (kind == FROZEN_LINEAR_MODEL) {
+            int numCategories = in.readInt();
+            int numFeatures = in.readInt();
+            WeightStore weights = MappedWeightStore.map(buffer);
+            FrozenLinearModel model;
+            try {
+                model = new FrozenLinearModel(numCategories, numFeatures, weights);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt model in " + file + ".", e);
+            }
+            return header.createClassifier(model);
+        } else if (kind == ONLINE_LOGISTIC_REGRESSION) {
+            log.info("Model in {} isn't frozen, it's read onto the heap", file);
+            return header.createClassifier(readOnlineLogisticRegression(in, file));
+        } else {
+            throw new IOException("Unknown model kind " + kind + " in " + file + ".");
+        }
+    }
+
+    /**
+     * Stream reading a buffer from its position and advancing it, without buffering anything itself.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+
+    /**
+     * Everything in a model file but the model itself.
+     */
+    static class Header {
+
+        private final int featureEncoderProbes;
+        private final CategoryHandler categoryHandler;
+        private final CorpusStatistics corpusStatistics;
+
+        private Header(int featureEncoderProbes, CategoryHandler categoryHandler, CorpusStatistics corpusStatistics) {
+            this.featureEncoderProbes = featureEncoderProbes;
+            this.categoryHandler = categoryHandler;
+            this.corpusStatistics = corpusStatistics;
+        }
+
+        static Header read(DataInputStream in, Path file) throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " isn't a model file.");
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of model file " + file + ".");
+            }
+
+            String featureEncoderName = in.readUTF();
+            int featureEncoderProbes = in.readInt();
+            if (featureEncoderProbes < 1) {
+                throw new IOException("Invalid number of probes " + featureEncoderProbes + " in " + file + ".");
+            }
+            String interceptEncoderName = in.readUTF();
+            String tfType = in.readUTF();
+            if (!featureEncoderName.equals(ClassifierDefaults.DEFAULT_FEATURE_ENCODER_NAME)
+                    || !interceptEncoderName.equals(ClassifierDefaults.DEFAULT_INTERCEPT_ENCODER_NAME)) {
+                throw new IOException("Model file " + file + " is encoded with unsupported encoders "
+                        + featureEncoderName + " and " + interceptEncoderName + ".");
+            }
+            if (!tfType.equals(ClassifierDefaults.DEFAULT_TF_TYPE.name())) {
+                log.warn("Model file {} is weighted with {} tf, but documents are weighted with {} tf", file, tfType,
+                        ClassifierDefaults.DEFAULT_TF_TYPE);
+            }
+
+            CategoryHandler categoryHandler = new CategoryHandler();
+            categoryHandler.readFields(in);
+
+            CorpusStatistics corpusStatistics = null;
+            if (in.readBoolean()) {
+                corpusStatistics = new CorpusStatistics();
+                corpusStatistics.readFields(in);
+            }
+            return new Header(featureEncoderProbes, categoryHandler, corpusStatistics);
+        }
+
+        LogisticRegressionClassifier createClassifier(AbstractVectorClassifier model) {
+            LogisticRegressionClassifier classifier =
+                    new LogisticRegressionClassifier(model, categoryHandler, corpusStatistics);
+            classifier.getFeatureEncoder().setProbes(featureEncoderProbes);
+            classifier.setTrained(true);
+            return classifier;
+        }
+    }
+}
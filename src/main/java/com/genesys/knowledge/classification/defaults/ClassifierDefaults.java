@@ -1,5 +1,7 @@
 package com.genesys.knowledge.classification.defaults;
 
+import com.genesys.knowledge.classification.util.TfIdf;
+
 /**
  * Created by rhorilyi on 25.04.2017.
  */
@@ -7,4 +9,18 @@ public class ClassifierDefaults {
 
 	public static final int DEFAULT_NUM_FEATURES = 100;
 	public static final int DEFAULT_NUM_CATEGORIES = 15;
+	public static final String DEFAULT_FEATURE_ENCODER_NAME = "feature";
+	public static final String DEFAULT_INTERCEPT_ENCODER_NAME = "intercept";
+	public static final TfIdf.TfType DEFAULT_TF_TYPE = TfIdf.TfType.BOOLEAN;
+	public static final int DEFAULT_REGISTRY_MAX_MODELS = 100;
+	public static final long DEFAULT_REGISTRY_MAX_BYTES = 1L << 30;
+	public static final int DEFAULT_NAIVE_BAYES_NUM_FEATURES = 1 << 14;
+	public static final double DEFAULT_NAIVE_BAYES_ALPHA = 1.0;
+	public static final long DEFAULT_NAIVE_BAYES_MAX_COUNTS_BYTES = 256L << 20;
+	public static final double DEFAULT_FEATURE_COLLISION_RATE = 0.1;
+	public static final int DEFAULT_MAX_NUM_FEATURES = 1 << 20;
+	public static final long DEFAULT_MAX_MODEL_WEIGHTS_BYTES = 512L << 20;
+	public static final int DEFAULT_HYPERLOGLOG_PRECISION = 14;
+	public static final int DEFAULT_FEATURE_ENCODER_CACHE_SIZE = 1 << 16;
+	public static final long DEFAULT_TOKEN_CACHE_MAX_BYTES = 512L << 20;
 }
@@ -0,0 +1,12 @@
+package com.genesys.knowledge.classification.defaults;
+
+/**
+ * Default settings of the {@link com.genesys.knowledge.classification.classifier.engine.ClassifierEngine}s
+ * other than logistic regression, which uses {@link LogisticRegressionDefaults}.
+ */
+public class EngineDefaults {
+
+    public static final double DEFAULT_PA_LEARNING_RATE = 0.1;
+    public static final double DEFAULT_SVM_LEARNING_RATE = 0.1; // initial one, it decays as 1 / (1 + rate * lambda * t)
+    public static final double DEFAULT_SVM_LAMBDA = 0.0001;
+}
@@ -0,0 +1,14 @@
+package com.genesys.knowledge.classification.defaults;
+
+/**
+ * Default settings of the {@link com.genesys.knowledge.classification.learner.Learner} training loop.
+ */
+public class LearnerDefaults {
+
+    public static final int DEFAULT_EPOCHS_NUMBER = 30;
+    public static final int DEFAULT_TRAINING_THREADS_NUMBER = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_AVERAGING_INTERVAL = 0; // 0 means replicas are averaged once per epoch
+    public static final long DEFAULT_FEATURE_CACHE_SIZE = 20_000_000; // non-zero elements, about 240 MB
+    public static final int DEFAULT_SHUFFLE_BUFFER_SIZE = 10_000; // documents
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 10_000; // documents
+}
@@ -0,0 +1,158 @@
+package com.genesys.knowledge.classification.learner;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genesys.knowledge.classification.util.Vocabulary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads {@link Learner.Document}s from a JSON dataset file one by one, so only the current document
+ * is held in memory, not the whole dataset.
+ * <p>
+ * The file has to contain an array of documents, the same as for {@link Learner#convertJsonToDocuments(String)}.
+ * If {@link #skipUnusedFields} is set, the original text and the part-of-speech tokens of the title and the body,
+ * which the classifier never reads, are skipped without being materialized.
+ */
+public class DocumentReader implements Iterator<Learner.Document>, Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper(JSON_FACTORY);
+
+    private final JsonParser parser;
+    private final Vocabulary vocabulary;
+    private final boolean skipUnusedFields;
+
+    /**
+     * @param datasetFile JSON file with an array of documents
+     * @param vocabulary vocabulary to intern tokens into, {@code null} to keep tokens as strings
+     * @param skipUnusedFields whether to skip fields the classifier doesn't use
+     * @throws IOException if the file can't be opened or doesn't start with an array
+     */
+    public DocumentReader(File datasetFile, Vocabulary vocabulary, boolean skipUnusedFields) throws IOException {
+        this.vocabulary = vocabulary;
+        this.skipUnusedFields = skipUnusedFields;
+
+        parser = JSON_FACTORY.createParser(datasetFile);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("Dataset " + datasetFile + " doesn't contain an array of documents.");
+        }
+        parser.nextToken();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return parser.getCurrentToken() == JsonToken.START_OBJECT;
+    }
+
+    @Override
+    public Learner.Document next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            Learner.Document document = skipUnusedFields
+                    ? readDocument()
+                    : MAPPER.readValue(parser, Learner.Document.class);
+            parser.nextToken();
+
+            if (vocabulary != null) {
+                document.internTokens(vocabulary);
+            }
+            return document;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the remaining documents as a sequential stream which closes {@code this} reader when it's closed.
+     */
+    public Stream<Learner.Document> stream() {
+        Spliterator<Learner.Document> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private Learner.Document readDocument() throws IOException {
+        Learner.Document document = new Learner.Document();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    document.setId(parser.getValueAsString());
+                    break;
+                case "title":
+                    document.setTitle(readField());
+                    break;
+                case "body":
+                    document.setBody(readField());
+                    break;
+                case "categories":
+                    document.setCategories(readStrings());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return document;
+    }
+
+    private Learner.Document.Field readField() throws IOException {
+        Learner.Document.Field field = new Learner.Document.Field();
+        field.setTokens(Collections.emptyList());
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            return field;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("tokens".equals(fieldName)) {
+                field.setTokens(readStrings());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return field;
+    }
+
+    private List<String> readStrings() throws IOException {
+        List<String> strings = new ArrayList<>();
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            return strings;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            strings.add(parser.getValueAsString());
+        }
+        return strings;
+    }
+}
@@ -1,20 +1,34 @@
 package com.genesys.knowledge.classification.learner;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genesys.knowledge.classification.classifier.BatchClassificationResult;
 import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.feature.CorpusStatistics;
+import com.genesys.knowledge.classification.classifier.feature.FeatureSpaceSizer;
+import com.genesys.knowledge.classification.classifier.feature.FeatureVectorCache;
+import com.genesys.knowledge.classification.defaults.LearnerDefaults;
 import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.util.Vocabulary;
+import com.genesys.knowledge.domain.Category;
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
 import org.apache.mahout.math.Vector;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Created by rhorilyi on 24.07.2017.
@@ -25,39 +39,295 @@ public class Learner {
     private LogisticRegressionClassifier classifier;
     @Getter @Setter
     private List<Document> dataset;
+    /**
+     * Maximum number of non-zero feature vector elements kept encoded during training,
+     * documents beyond it are encoded anew on every epoch.
+     */
+    @Getter @Setter
+    private long featureCacheSize = LearnerDefaults.DEFAULT_FEATURE_CACHE_SIZE;
+    /**
+     * Number of documents shuffled together while training with a streamed dataset.
+     */
+    @Getter @Setter
+    private int shuffleBufferSize = LearnerDefaults.DEFAULT_SHUFFLE_BUFFER_SIZE;
 
     public Learner(ArrayList<Document> documents) {
         classifier = new LogisticRegressionClassifier(documents);
         dataset = documents;
     }
 
+    /**
+     * Creates learner for the specified dataset with a hashed feature space of the specified size
+     * instead of the one sized by the vocabulary of the dataset.
+     *
+     * @param documents dataset
+     * @param featuresNumber number of features
+     */
+    public Learner(ArrayList<Document> documents, int featuresNumber) {
+        classifier = new LogisticRegressionClassifier(documents, featuresNumber);
+        dataset = documents;
+    }
+
+    private Learner(LogisticRegressionClassifier classifier) {
+        this.classifier = classifier;
+        dataset = new ArrayList<>();
+    }
+
+    /**
+     * Creates learner for the specified dataset streaming it once to collect categories, corpus statistics
+     * and the size of its vocabulary the feature space is sized by, documents themselves aren't kept in memory.
+     * Use {@link #trainClassifier(File)} to train the classifier.
+     *
+     * @param datasetFile JSON file with an array of documents
+     * @return learner with an untrained classifier
+     */
+    public static Learner fromDataset(File datasetFile) throws IOException {
+        Vocabulary vocabulary = new Vocabulary();
+        CorpusStatistics.Builder statistics = CorpusStatistics.builder(vocabulary);
+        Set<String> categoryIds = new LinkedHashSet<>();
+        FeatureSpaceSizer sizer = new FeatureSpaceSizer();
+
+        try (DocumentReader reader = new DocumentReader(datasetFile, vocabulary, true)) {
+            while (reader.hasNext()) {
+                Document document = reader.next();
+                statistics.addDocument(document);
+                categoryIds.addAll(document.getCategories());
+                sizer.addDocument(document);
+            }
+        }
+
+        int featuresNumber = LogisticRegressionClassifier.sizeFeatureSpace(sizer.estimateVocabularySize(),
+                categoryIds.size());
+        return new Learner(new LogisticRegressionClassifier(categoryIds, featuresNumber, statistics.build()));
+    }
+
     public void trainClassifier(List<Document> trainingDocuments) {
-        for (int i = 0; i < 30; i++) {
+        FeatureVectorCache featureVectors = new FeatureVectorCache(classifier, trainingDocuments, featureCacheSize);
+        for (int i = 0; i < LearnerDefaults.DEFAULT_EPOCHS_NUMBER; i++) {
             Collections.shuffle(trainingDocuments, new SecureRandom());
             for (Document trainingDoc : trainingDocuments) {
+                Vector featureVector = featureVectors.getFeatureVector(trainingDoc);
                 for (String categoryId : trainingDoc.getCategories()) {
-                    classifier.train(trainingDoc, categoryId, trainingDocuments);
+                    classifier.train(featureVector, new Category(categoryId));
                 }
             }
         }
     }
 
+    /**
+     * Trains the classifier saving checkpoints, so the training can be resumed by
+     * {@link #resumeTraining(List, TrainingCheckpointer)} if it's interrupted.
+     *
+     * @param trainingDocuments documents to train the classifier with
+     * @param checkpointer checkpointer to save checkpoints with
+     * @throws InterruptedIOException if the training thread is interrupted, once a checkpoint is saved
+     */
+    public void trainClassifier(List<Document> trainingDocuments, TrainingCheckpointer checkpointer)
+            throws IOException {
+        trainClassifier(trainingDocuments, checkpointer, new SecureRandom().nextLong());
+    }
+
+    /**
+     * Trains the classifier saving checkpoints, see {@link #trainClassifier(List, TrainingCheckpointer)}.
+     * Documents are shuffled on every epoch by a generator seeded with the specified seed and the epoch,
+     * so training with the same seed always sees documents in the same order.
+     *
+     * @param trainingDocuments documents to train the classifier with
+     * @param checkpointer checkpointer to save checkpoints with
+     * @param seed seed of the training run
+     * @throws InterruptedIOException if the training thread is interrupted, once a checkpoint is saved
+     */
+    public void trainClassifier(List<Document> trainingDocuments, TrainingCheckpointer checkpointer, long seed)
+            throws IOException {
+        trainClassifier(trainingDocuments, checkpointer, seed, 0, 0);
+    }
+
+    /**
+     * Resumes training from the latest checkpoint saved by the specified checkpointer, or starts it anew
+     * if there are no checkpoints. The documents have to be the same as the interrupted run was trained with,
+     * in the same order, so {@code this} learner's classifier has the same categories and documents
+     * are shuffled the same way.
+     *
+     * @param trainingDocuments documents to train the classifier with
+     * @param checkpointer checkpointer the interrupted run saved checkpoints with
+     * @throws InterruptedIOException if the training thread is interrupted, once a checkpoint is saved
+     */
+    public void resumeTraining(List<Document> trainingDocuments, TrainingCheckpointer checkpointer)
+            throws IOException {
+        TrainingCheckpointer.Checkpoint checkpoint = checkpointer.readLatestCheckpoint();
+        if (checkpoint == null) {
+            trainClassifier(trainingDocuments, checkpointer);
+            return;
+        }
+
+        LogisticRegressionClassifier savedClassifier = checkpoint.getClassifier();
+        if (!savedClassifier.getCategoryHandler().getCategoryIds()
+                .equals(classifier.getCategoryHandler().getCategoryIds())) {
+            throw new IllegalStateException("Checkpoint in " + checkpointer.getDirectory()
+                    + " is trained with other categories than the classifier.");
+        }
+        synchronized (classifier) {
+            ((OnlineLogisticRegression) classifier.getClassifier())
+                    .copyFrom((OnlineLogisticRegression) savedClassifier.getClassifier());
+            classifier.setTrained(true);
+        }
+        trainClassifier(trainingDocuments, checkpointer, checkpoint.getSeed(), checkpoint.getEpoch(),
+                checkpoint.getPosition());
+    }
+
+    private void trainClassifier(List<Document> trainingDocuments, TrainingCheckpointer checkpointer, long seed,
+                                 int startEpoch, int startPosition) throws IOException {
+        FeatureVectorCache featureVectors = new FeatureVectorCache(classifier, trainingDocuments, featureCacheSize);
+        List<Document> epochDocuments = new ArrayList<>(trainingDocuments.size());
+        int documentsSinceCheckpoint = 0;
+
+        for (int epoch = startEpoch; epoch < LearnerDefaults.DEFAULT_EPOCHS_NUMBER; epoch++) {
+            // the original order is shuffled on every epoch, so the order depends only on the seed and the epoch
+            epochDocuments.clear();
+            epochDocuments.addAll(trainingDocuments);
+            Collections.shuffle(epochDocuments, new Random(seed + epoch));
+
+            for (int position = epoch == startEpoch ? startPosition : 0; position < epochDocuments.size(); position++) {
+                if (Thread.interrupted()) {
+                    saveCheckpoint(checkpointer, epoch, position, seed);
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Training interrupted at epoch " + epoch
+                            + ", position " + position + ".");
+                }
+
+                Document trainingDoc = epochDocuments.get(position);
+                Vector featureVector = featureVectors.getFeatureVector(trainingDoc);
+                for (String categoryId : trainingDoc.getCategories()) {
+                    classifier.train(featureVector, new Category(categoryId));
+                }
+
+                if (++documentsSinceCheckpoint >= checkpointer.getInterval()
+                        && checkpointer.checkpoint(classifier, epoch, position + 1, seed)) {
+                    documentsSinceCheckpoint = 0;
+                }
+            }
+        }
+        saveCheckpoint(checkpointer, LearnerDefaults.DEFAULT_EPOCHS_NUMBER, 0, seed);
+    }
+
+    /**
+     * Saves checkpoint waiting until it's written.
+     */
+    private void saveCheckpoint(TrainingCheckpointer checkpointer, int epoch, int position, long seed)
+            throws IOException {
+        checkpointer.awaitPendingCheckpoint();
+        checkpointer.checkpoint(classifier, epoch, position, seed);
+        checkpointer.awaitPendingCheckpoint();
+    }
+
+    /**
+     * Trains the classifier with documents streamed from the specified dataset on every epoch.
+     * Documents are shuffled within a window of {@link #shuffleBufferSize} documents,
+     * so memory doesn't depend on the size of the dataset.
+     *
+     * @param datasetFile JSON file with an array of documents
+     */
+    public void trainClassifier(File datasetFile) throws IOException {
+        Vocabulary vocabulary = classifier.getCorpusStatistics().getVocabulary();
+        Random random = new SecureRandom();
+        List<Document> buffer = new ArrayList<>(shuffleBufferSize);
+
+        for (int i = 0; i < LearnerDefaults.DEFAULT_EPOCHS_NUMBER; i++) {
+            try (DocumentReader reader = new DocumentReader(datasetFile, vocabulary, true)) {
+                while (reader.hasNext()) {
+                    buffer.add(reader.next());
+                    if (buffer.size() == shuffleBufferSize) {
+                        trainClassifier(removeRandomDocument(buffer, random));
+                    }
+                }
+            }
+            while (!buffer.isEmpty()) {
+                trainClassifier(removeRandomDocument(buffer, random));
+            }
+        }
+    }
+
+    private void trainClassifier(Document trainingDoc) {
+        Vector featureVector = classifier.getFeatureVector(trainingDoc, dataset);
+        for (String categoryId : trainingDoc.getCategories()) {
+            classifier.train(featureVector, new Category(categoryId));
+        }
+    }
+
+    private static Document removeRandomDocument(List<Document> buffer, Random random) {
+        int index = random.nextInt(buffer.size());
+        Document document = buffer.get(index);
+        buffer.set(index, buffer.get(buffer.size() - 1));
+        buffer.remove(buffer.size() - 1);
+        return document;
+    }
+
+    /**
+     * Trains the classifier on several threads, each of which trains its own replica of the model
+     * on a partition of the shuffled documents. Replicas are merged by averaging after every epoch.
+     *
+     * @param trainingDocuments documents to train the classifier with
+     * @param threadsNumber number of training threads
+     */
+    public void trainClassifier(List<Document> trainingDocuments, int threadsNumber) {
+        trainClassifier(trainingDocuments, threadsNumber, LearnerDefaults.DEFAULT_AVERAGING_INTERVAL);
+    }
+
+    /**
+     * Trains the classifier on several threads, merging the replicas of the model
+     * every {@code averagingInterval} examples trained by each of them.
+     *
+     * @param trainingDocuments documents to train the classifier with
+     * @param threadsNumber number of training threads
+     * @param averagingInterval number of examples between two merges, {@code 0} to merge once per epoch
+     */
+    public void trainClassifier(List<Document> trainingDocuments, int threadsNumber, int averagingInterval) {
+        new ParallelTrainer(classifier, threadsNumber, averagingInterval, LearnerDefaults.DEFAULT_EPOCHS_NUMBER)
+                .train(trainingDocuments, new FeatureVectorCache(classifier, trainingDocuments, featureCacheSize));
+    }
+
+    /**
+     * Adds the specified documents to the corpus and replaces the corpus statistics the classifier
+     * weights tokens with by statistics of the extended corpus. Classifications running at the same time
+     * keep using the previous statistics.
+     *
+     * @param documents documents to add
+     */
+    public synchronized void addDocuments(Collection<Document> documents) {
+        List<Document> extendedDataset = new ArrayList<>(dataset.size() + documents.size());
+        extendedDataset.addAll(dataset);
+        extendedDataset.addAll(documents);
+        classifier.setCorpusStatistics(CorpusStatistics.build(extendedDataset));
+        dataset = extendedDataset;
+    }
+
+    /**
+     * Classifies the specified document against the current corpus statistics,
+     * neither the dataset nor the classifier is changed.
+     */
     public Vector classifyDocument(Document document)
             throws ClassifierNotTrainedException {
-        dataset.add(document);
-        return classifier.classifyDocument(document, dataset);
+        return classifier.classifyDocument(document);
     }
 
     public List<Vector.Element> classifyDocument(Document document, int numberOfTopResults)
             throws ClassifierNotTrainedException {
-        dataset.add(document);
-        return classifier.classifyDocument(document, numberOfTopResults, dataset);
+        return classifier.classifyDocument(document, numberOfTopResults);
     }
 
     public String classifyDocumentWithMostConfidentCategory(Document document)
             throws ClassifierNotTrainedException {
-        dataset.add(document);
-        return classifier.classifyDocumentWithMostConfidentCategory(document, dataset);
+        return classifier.classifyDocumentWithMostConfidentCategory(document);
+    }
+
+    public BatchClassificationResult<Vector> classifyBatch(List<Document> documents)
+            throws ClassifierNotTrainedException {
+        return classifier.classifyBatch(documents);
+    }
+
+    public BatchClassificationResult<List<Vector.Element>> classifyBatch(List<Document> documents, int numberOfTopResults)
+            throws ClassifierNotTrainedException {
+        return classifier.classifyBatch(documents, numberOfTopResults);
     }
 
     public static class Document {
@@ -70,15 +340,61 @@ public class Learner {
         private Field body;
         @Getter @Setter
         private List<String> categories;
+        /**
+         * Vocabulary the token ids of the title and the body refer to, {@code null} if tokens aren't interned.
+         */
+        @Getter
+        @JsonIgnore
+        private Vocabulary vocabulary;
+
+        /**
+         * Replaces tokens of the title and the body with their ids in the specified vocabulary,
+         * adding new tokens to it.
+         *
+         * @param vocabulary vocabulary to intern tokens into
+         */
+        public void internTokens(Vocabulary vocabulary) {
+            title.internTokens(vocabulary);
+            body.internTokens(vocabulary);
+            this.vocabulary = vocabulary;
+        }
 
         public static class Field {
             @Getter @Setter
             private String original;
-            @Getter @Setter
+            @Setter
             private List<String> tokens;
+            @Getter
+            @JsonIgnore
+            private int[] tokenIds;
+            @JsonIgnore
+            private Vocabulary vocabulary;
+            /**
+             * Tokens resolved from {@link #tokenIds}, a view which is created once and holds no copy of the terms.
+             */
+            @JsonIgnore
+            private List<String> internedTokens;
             @Getter @Setter
             @JsonProperty("pos_tokens")
             private List<PosToken> posTokens;
+
+            /**
+             * Gets tokens of {@code this} field, resolving them from the vocabulary if they are interned.
+             */
+            public List<String> getTokens() {
+                return tokens == null && tokenIds != null ? internedTokens : tokens;
+            }
+
+            public int getTokensNumber() {
+                return tokenIds != null ? tokenIds.length : tokens.size();
+            }
+
+            private void internTokens(Vocabulary vocabulary) {
+                tokenIds = vocabulary.intern(getTokens());
+                this.vocabulary = vocabulary;
+                internedTokens = vocabulary.viewTerms(tokenIds);
+                tokens = null;
+            }
         }
 
         private static class PosToken {
@@ -89,8 +405,26 @@ public class Learner {
         }
     }
 
+    /**
+     * Reads documents from the specified JSON file interning their tokens into a new {@link Vocabulary}.
+     */
     public static List<Document> convertJsonToDocuments(String fileName) throws IOException {
+        return convertJsonToDocuments(fileName, new Vocabulary());
+    }
+
+    /**
+     * Reads documents from the specified JSON file interning their tokens into the specified vocabulary.
+     *
+     * @param fileName path to the dataset file
+     * @param vocabulary vocabulary shared by the documents
+     * @return documents which hold their tokens as ids in the vocabulary
+     */
+    public static List<Document> convertJsonToDocuments(String fileName, Vocabulary vocabulary) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(new File(fileName), new TypeReference<List<Document>>(){});
+        List<Document> documents = mapper.readValue(new File(fileName), new TypeReference<List<Document>>(){});
+        for (Document document : documents) {
+            document.internTokens(vocabulary);
+        }
+        return documents;
     }
 }
@@ -0,0 +1,185 @@
+package com.genesys.knowledge.classification.learner;
+
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.feature.FeatureVectorCache;
+import com.genesys.knowledge.classification.defaults.LearnerDefaults;
+import com.genesys.knowledge.domain.Category;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+import org.apache.mahout.math.Matrix;
+import org.apache.mahout.math.function.Functions;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains a {@link LogisticRegressionClassifier} on several cores at once.
+ * <p>
+ * Every epoch the shuffled training examples are split into one partition per thread. Each thread trains
+ * its own replica of the classifier's {@link OnlineLogisticRegression} on its partition, and the replicas
+ * are merged by averaging their coefficients either after the whole partition has been processed
+ * or every {@link #averagingInterval} examples. The averaged coefficients end up in the classifier's model,
+ * so the result is still a single {@link LogisticRegressionClassifier}.
+ */
+@Slf4j
+public class ParallelTrainer {
+
+    private final LogisticRegressionClassifier classifier;
+    @Getter
+    private final int threadsNumber;
+    @Getter
+    private final int averagingInterval;
+    @Getter
+    private final int epochsNumber;
+
+    /**
+     * @param classifier classifier whose model is trained
+     * @param threadsNumber number of threads and, respectively, of model replicas
+     * @param averagingInterval number of examples each replica is trained on between two merges,
+     *                          {@code 0} to merge once per epoch
+     * @param epochsNumber number of passes over the training documents
+     */
+    public ParallelTrainer(LogisticRegressionClassifier classifier, int threadsNumber,
+                           int averagingInterval, int epochsNumber) {
+        if (threadsNumber < 1) {
+            throw new IllegalArgumentException("Number of training threads must be positive: " + threadsNumber);
+        }
+        if (averagingInterval < 0) {
+            throw new IllegalArgumentException("Averaging interval must not be negative: " + averagingInterval);
+        }
+        this.classifier = classifier;
+        this.threadsNumber = threadsNumber;
+        this.averagingInterval = averagingInterval;
+        this.epochsNumber = epochsNumber;
+    }
+
+    /**
+     * Trains the classifier with the specified documents, each document is used once per each of its categories.
+     *
+     * @param trainingDocuments documents to train the classifier with
+     */
+    public void train(List<Learner.Document> trainingDocuments) {
+        train(trainingDocuments,
+                new FeatureVectorCache(classifier, trainingDocuments, LearnerDefaults.DEFAULT_FEATURE_CACHE_SIZE));
+    }
+
+    /**
+     * Trains the classifier with the specified documents taking their feature vectors from the specified cache.
+     *
+     * @param trainingDocuments documents to train the classifier with
+     * @param featureVectors feature vectors of the training documents
+     */
+    public void train(List<Learner.Document> trainingDocuments, FeatureVectorCache featureVectors) {
+        List<Example> examples = new ArrayList<>();
+        // categories are resolved upfront, so the worker threads never modify the category handler
+        for (Learner.Document trainingDoc : trainingDocuments) {
+            for (String categoryId : trainingDoc.getCategories()) {
+                int categoryOrderNumber = classifier.resolveCategoryOrderNumber(new Category(categoryId));
+                examples.add(new Example(trainingDoc, categoryOrderNumber));
+            }
+        }
+        if (examples.isEmpty()) {
+            return;
+        }
+
+        // the classifier's monitor guards its model against concurrent training, classifications don't take it
+        synchronized (classifier) {
+            OnlineLogisticRegression model = (OnlineLogisticRegression) classifier.getClassifier();
+            OnlineLogisticRegression[] replicas = new OnlineLogisticRegression[threadsNumber];
+            for (int i = 0; i < threadsNumber; i++) {
+                replicas[i] = LogisticRegressionClassifier.copyOf(model);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+            try {
+                for (int epoch = 0; epoch < epochsNumber; epoch++) {
+                    Collections.shuffle(examples, new SecureRandom());
+                    trainEpoch(examples, model, replicas, featureVectors, executor);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // take over learning rate state of a replica, its coefficients are equal to the averaged ones
+            model.copyFrom(replicas[0]);
+            classifier.setTrained(true);
+            classifier.publishSnapshot();
+        }
+    }
+
+    private void trainEpoch(List<Example> examples, OnlineLogisticRegression model,
+                            OnlineLogisticRegression[] replicas, FeatureVectorCache featureVectors,
+                            ExecutorService executor) {
+        int partitionSize = (examples.size() + threadsNumber - 1) / threadsNumber;
+        int roundSize = averagingInterval > 0 ? averagingInterval : partitionSize;
+
+        for (int offset = 0; offset < partitionSize; offset += roundSize) {
+            List<Future<?>> futures = new ArrayList<>(threadsNumber);
+            List<OnlineLogisticRegression> trainedReplicas = new ArrayList<>(threadsNumber);
+
+            for (int i = 0; i < threadsNumber; i++) {
+                int partitionEnd = Math.min((i + 1) * partitionSize, examples.size());
+                int from = i * partitionSize + offset;
+                int to = Math.min(from + roundSize, partitionEnd);
+                if (from >= to) {
+                    continue;
+                }
+
+                OnlineLogisticRegression replica = replicas[i];
+                List<Example> round = examples.subList(from, to);
+                trainedReplicas.add(replica);
+                futures.add(executor.submit(() -> {
+                    for (Example example : round) {
+                        replica.train(example.categoryOrderNumber, featureVectors.getFeatureVector(example.document));
+                    }
+                }));
+            }
+
+            awaitAll(futures);
+            average(model, trainedReplicas);
+            for (OnlineLogisticRegression replica : replicas) {
+                replica.getBeta().assign(model.getBeta());
+            }
+        }
+    }
+
+    private static void average(OnlineLogisticRegression model, List<OnlineLogisticRegression> replicas) {
+        Matrix sum = replicas.get(0).getBeta().clone();
+        for (int i = 1; i < replicas.size(); i++) {
+            sum.assign(replicas.get(i).getBeta(), Functions.PLUS);
+        }
+        model.getBeta().assign(sum.divide(replicas.size()));
+    }
+
+    private static void awaitAll(List<Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Parallel training has been interrupted.", e);
+        } catch (ExecutionException e) {
+            log.error(e.getMessage());
+            throw new IllegalStateException("Parallel training has failed.", e.getCause());
+        }
+    }
+
+    private static class Example {
+
+        private final Learner.Document document;
+        private final int categoryOrderNumber;
+
+        private Example(Learner.Document document, int categoryOrderNumber) {
+            this.document = document;
+            this.categoryOrderNumber = categoryOrderNumber;
+        }
+    }
+}
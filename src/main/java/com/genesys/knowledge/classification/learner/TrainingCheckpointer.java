@@ -0,0 +1,226 @@
+package com.genesys.knowledge.classification.learner;
+
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.io.ModelFile;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Saves checkpoints of a training run into a directory, so an interrupted run can be resumed
+ * from the latest checkpoint, see {@link Learner#resumeTraining(java.util.List, TrainingCheckpointer)}.
+ * <p>
+ * A checkpoint is a model file with a copy of the model, see {@link ModelFile}, and a cursor file with the epoch,
+ * the number of documents of the epoch trained so far and the seed the documents are shuffled with.
+ * The copy of the model is taken on the training thread, the files are written on a background thread.
+ * If the previous checkpoint is still being written, a new one is skipped rather than queued, so the training loop
+ * never waits for the disk and at most one copy of the model is pending. The cursor file is replaced atomically
+ * after its model file is written, so the latest checkpoint is always complete.
+ */
+@Slf4j
+public class TrainingCheckpointer implements Closeable {
+
+    private static final String CURSOR_FILE = "checkpoint.cursor";
+    private static final String MODEL_FILE_PREFIX = "checkpoint-";
+    private static final String MODEL_FILE_SUFFIX = ".model";
+
+    @Getter
+    private final Path directory;
+    /**
+     * Number of documents trained between two checkpoints.
+     */
+    @Getter
+    private final int interval;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "training-checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingWrite;
+
+    /**
+     * @param directory directory to save checkpoints into, created if it doesn't exist
+     * @param interval number of documents trained between two checkpoints
+     */
+    public TrainingCheckpointer(Path directory, int interval) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.interval = interval;
+    }
+
+    /**
+     * Saves checkpoint of the specified classifier in the background unless the previous one is still being saved.
+     *
+     * @param classifier classifier being trained
+     * @param epoch current epoch
+     * @param position number of documents of the current epoch already trained
+     * @param seed seed of the training run
+     * @return whether the checkpoint is going to be saved
+     */
+    public synchronized boolean checkpoint(LogisticRegressionClassifier classifier, int epoch, int position, long seed) {
+        if (pendingWrite != null && !pendingWrite.isDone()) {
+            log.debug("Skipping checkpoint at epoch {}, position {}: the previous one is still being written",
+                    epoch, position);
+            return false;
+        }
+
+        LogisticRegressionClassifier snapshot = copy(classifier);
+        // a failure is carried by the future, so it's thrown by awaitPendingCheckpoint
+        pendingWrite = writer.submit(() -> {
+            try {
+                write(snapshot, new Cursor(epoch, position, seed));
+            } catch (IOException e) {
+                log.error("Failed to write checkpoint at epoch {}, position {}: {}", epoch, position, e.getMessage());
+                throw e;
+            }
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * Copies the model without sealing it, see {@link LogisticRegressionClassifier#copyOf(OnlineLogisticRegression)},
+     * so checkpointing doesn't change the course of training.
+     */
+    private static LogisticRegressionClassifier copy(LogisticRegressionClassifier classifier) {
+        synchronized (classifier) {
+            OnlineLogisticRegression copy =
+                    LogisticRegressionClassifier.copyOf((OnlineLogisticRegression) classifier.getClassifier());
+            return new LogisticRegressionClassifier(copy, classifier.getCategoryHandler(),
+                    classifier.getCorpusStatistics());
+        }
+    }
+
+    private void write(LogisticRegressionClassifier snapshot, Cursor cursor) throws IOException {
+        String modelFileName = MODEL_FILE_PREFIX + cursor.epoch + "-" + cursor.position + MODEL_FILE_SUFFIX;
+        ModelFile.save(snapshot, directory.resolve(modelFileName));
+
+        Path tempFile = Files.createTempFile(directory, CURSOR_FILE + ".", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempFile))) {
+                out.writeUTF(modelFileName);
+                out.writeInt(cursor.epoch);
+                out.writeInt(cursor.position);
+                out.writeLong(cursor.seed);
+            }
+            ModelFile.move(tempFile, directory.resolve(CURSOR_FILE));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        try (DirectoryStream<Path> modelFiles =
+                     Files.newDirectoryStream(directory, MODEL_FILE_PREFIX + "*" + MODEL_FILE_SUFFIX)) {
+            for (Path modelFile : modelFiles) {
+                if (!modelFile.getFileName().toString().equals(modelFileName)) {
+                    Files.deleteIfExists(modelFile);
+                }
+            }
+        }
+        log.debug("Saved checkpoint at epoch {}, position {}", cursor.epoch, cursor.position);
+    }
+
+    /**
+     * Waits until the pending checkpoint, if any, is written.
+     *
+     * @throws IOException if the checkpoint couldn't be written
+     */
+    public void awaitPendingCheckpoint() throws IOException {
+        Future<?> write;
+        synchronized (this) {
+            write = pendingWrite;
+        }
+        if (write == null) {
+            return;
+        }
+        try {
+            write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a checkpoint to be written.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Reads the latest checkpoint saved into {@link #directory}.
+     *
+     * @return the latest checkpoint, or {@code null} if there are no checkpoints
+     * @throws IOException if the checkpoint can't be read
+     */
+    public Checkpoint readLatestCheckpoint() throws IOException {
+        Path cursorFile = directory.resolve(CURSOR_FILE);
+        if (!Files.exists(cursorFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(cursorFile))) {
+            String modelFileName = in.readUTF();
+            Cursor cursor = new Cursor(in.readInt(), in.readInt(), in.readLong());
+            return new Checkpoint(ModelFile.load(directory.resolve(modelFileName)), cursor);
+        }
+    }
+
+    /**
+     * Waits for the pending checkpoint and stops the background writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            awaitPendingCheckpoint();
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    private static class Cursor {
+
+        private final int epoch;
+        private final int position;
+        private final long seed;
+
+        private Cursor(int epoch, int position, long seed) {
+            this.epoch = epoch;
+            this.position = position;
+            this.seed = seed;
+        }
+    }
+
+    /**
+     * Saved state of a training run.
+     */
+    @Getter
+    public static class Checkpoint {
+
+        private final LogisticRegressionClassifier classifier;
+        private final int epoch;
+        /**
+         * Number of documents of {@link #epoch} already trained.
+         */
+        private final int position;
+        private final long seed;
+
+        private Checkpoint(LogisticRegressionClassifier classifier, Cursor cursor) {
+            this.classifier = classifier;
+            this.epoch = cursor.epoch;
+            this.position = cursor.position;
+            this.seed = cursor.seed;
+        }
+    }
+}
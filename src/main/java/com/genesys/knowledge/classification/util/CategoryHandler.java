@@ -4,25 +4,25 @@ import com.genesys.knowledge.classification.exception.CategoryNotFoundException;
 import com.genesys.knowledge.classification.learner.Learner;
 import com.genesys.knowledge.domain.Category;
 import com.genesys.knowledge.domain.Document;
-import com.google.common.collect.Maps;
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.io.Writable;
 
 import java.io.*;
 import java.util.*;
 
 /**
  * Created by rhorilyi on 25.04.2017.
+ * <p>
+ * Dictionary of categories of a single classifier, which numbers categories in the order they are added.
+ * Lookups by id and by order number are constant time and lock-free: they read an immutable {@link Index}
+ * published through a volatile field. Adding a category copies the index, so readers never see it half-built.
  */
 @Slf4j
-public class CategoryHandler {
+public class CategoryHandler implements Writable {
 
-    /**
-     * CategoriesOrderNumbers is a {@link Map} collection that contains {@link String} category id as a key
-     * and {@link Integer} order number of a category in a map as a value.
-     */
-    @Getter
-    private static Map<String, Integer> categoryOrderNumbers = new HashMap<>();
+    private static final String CATEGORY_ORDER_NUMBERS_PATH = "src/main/resources/category/category-order-numbers.mahout";
+
+    private volatile Index index = Index.EMPTY;
 
     /**
      * Initializes {@code this} CategoriesHandler with categories retrieved from the specified documents.
@@ -39,6 +39,16 @@ public class CategoryHandler {
         }
     }
 
+    /**
+     * Initializes {@code this} CategoriesHandler with categories counted while the specified corpus was preprocessed,
+     * in the order they first occur in its documents, so the documents aren't walked again.
+     */
+    public void initHandler(PreprocessedCorpus corpus) {
+        for (String categoryId : corpus.getCategoryCounts().keySet()) {
+            this.addCategory(new Category(categoryId));
+        }
+    }
+
     /**
      * Initializes {@code this} CategoriesHandler with categories retrieved from the specified document.
      */
@@ -63,26 +73,44 @@ public class CategoryHandler {
      * @param category {@code Category} instance to add to the map
      * @return {@code true} if there's no such a category in the map, otherwise - {@code false}
      */
-    public boolean addCategory(Category category) {
-        String categoryId = category.getId();
-        if (categoryOrderNumbers.containsKey(categoryId)) {
+    public synchronized boolean addCategory(Category category) {
+        if (index.orderNumbers.containsKey(category.getId())) {
             return false;
         } else {
-            categoryOrderNumbers.put(categoryId, categoryOrderNumbers.size());
+            index = index.with(category.getId());
             return true;
         }
     }
 
+    /**
+     * Gets order number of the specified category adding the category if it isn't there yet.
+     * Unlike a separate lookup and addition, concurrent callers always get the same order number for the same category.
+     *
+     * @param category category to resolve
+     * @return order number of the category
+     */
+    public int resolveCategoryOrderNumber(Category category) {
+        Integer orderNumber = index.orderNumbers.get(category.getId());
+        if (orderNumber != null) {
+            return orderNumber;
+        }
+        synchronized (this) {
+            addCategory(category);
+            return index.orderNumbers.get(category.getId());
+        }
+    }
+
     public int getCategoryOrderNumber(Category category) throws CategoryNotFoundException {
-        if (categoryOrderNumbers.containsKey(category.getId())) {
-            return categoryOrderNumbers.get(category.getId());
+        Integer orderNumber = index.orderNumbers.get(category.getId());
+        if (orderNumber != null) {
+            return orderNumber;
         } else {
             throw new CategoryNotFoundException(category); // TODO ask if architecturally right decision
         }
     }
 
     public int getCategoriesQuantity() {
-        return categoryOrderNumbers.size();
+        return index.categoryIds.length;
     }
 
     /**
@@ -92,34 +120,61 @@ public class CategoryHandler {
      * @return {@code String} id of the category
      */
     public Category getCategory(int categoryOrderNumber) {
-        String categoryId = null;
+        String[] categoryIds = index.categoryIds;
+        return new Category(categoryOrderNumber >= 0 && categoryOrderNumber < categoryIds.length
+                ? categoryIds[categoryOrderNumber]
+                : null);
+    }
 
-        Set<Map.Entry<String, Integer>> entrySet = categoryOrderNumbers.entrySet();
-        for (Map.Entry<String, Integer> entry : entrySet) {
-            if (categoryOrderNumber == entry.getValue()) {
-                categoryId = entry.getKey();
-                break;
-            }
-        }
+    /**
+     * Gets ids of all categories ordered by their order numbers.
+     *
+     * @return unmodifiable snapshot of category ids
+     */
+    public List<String> getCategoryIds() {
+        return Collections.unmodifiableList(Arrays.asList(index.categoryIds));
+    }
 
-        return new Category(categoryId);
+    /**
+     * Gets map of category ids to their order numbers.
+     *
+     * @return unmodifiable snapshot of the map
+     */
+    public Map<String, Integer> getCategoryOrderNumbers() {
+        return Collections.unmodifiableMap(index.orderNumbers);
     }
 
-    public static void serializeCategoryOrderNumbers() {
-        String filePath = "src/main/resources/category/category-order-numbers.mahout";
-        try (ObjectOutputStream outputStream =
-                     new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
-            outputStream.writeObject(categoryOrderNumbers);
+    /**
+     * @deprecated categories are stored with the model, see
+     * {@link com.genesys.knowledge.classification.classifier.io.ModelFile}
+     */
+    @Deprecated
+    public void serializeCategoryOrderNumbers() {
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(CATEGORY_ORDER_NUMBERS_PATH)))) {
+            outputStream.writeObject(new HashMap<>(index.orderNumbers));
         } catch (IOException e) {
             log.error(e.getMessage());
         }
     }
 
-    public static void deserializeCategoryOrderNumbers() {
-        String filePath = "src/main/resources/category/category-order-numbers.mahout";
-        try (ObjectInputStream inputStream =
-                     new ObjectInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
-            categoryOrderNumbers = (HashMap) inputStream.readObject();
+    /**
+     * @deprecated categories are stored with the model, see
+     * {@link com.genesys.knowledge.classification.classifier.io.ModelFile}
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public void deserializeCategoryOrderNumbers() {
+        try (ObjectInputStream inputStream = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(CATEGORY_ORDER_NUMBERS_PATH)))) {
+            Map<String, Integer> orderNumbers = (Map<String, Integer>) inputStream.readObject();
+            String[] categoryIds = new String[orderNumbers.size()];
+            for (Map.Entry<String, Integer> entry : orderNumbers.entrySet()) {
+                categoryIds[entry.getValue()] = entry.getKey();
+            }
+            synchronized (this) {
+                index = new Index(categoryIds);
+            }
         } catch (IOException e) {
             log.error(e.getMessage());
         } catch (ClassNotFoundException e) {
@@ -127,11 +182,65 @@ public class CategoryHandler {
         }
     }
 
-    // TODO make static
+    /**
+     * Writes ids of all categories in the order of their order numbers.
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        String[] categoryIds = index.categoryIds;
+        out.writeInt(categoryIds.length);
+        for (String categoryId : categoryIds) {
+            out.writeUTF(categoryId);
+        }
+    }
+
+    /**
+     * Replaces all categories with the ones written by {@link #write(DataOutput)}, keeping their order numbers.
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int categoriesNumber = in.readInt();
+        if (categoriesNumber < 0) {
+            throw new IOException("Invalid number of categories " + categoriesNumber + ".");
+        }
+        String[] categoryIds = new String[categoriesNumber];
+        for (int i = 0; i < categoryIds.length; i++) {
+            categoryIds[i] = in.readUTF();
+        }
+        synchronized (this) {
+            index = new Index(categoryIds);
+        }
+    }
+
     /**
      * Clears handler replacing all categories with a new empty container.
      */
-    public void clear() {
-        categoryOrderNumbers = Maps.newHashMap();
+    public synchronized void clear() {
+        index = Index.EMPTY;
+    }
+
+    /**
+     * Immutable pair of the order number to id array and the id to order number map.
+     */
+    private static final class Index {
+
+        private static final Index EMPTY = new Index(new String[0]);
+
+        private final String[] categoryIds;
+        private final Map<String, Integer> orderNumbers;
+
+        private Index(String[] categoryIds) {
+            this.categoryIds = categoryIds;
+            orderNumbers = new HashMap<>(2 * categoryIds.length);
+            for (int i = 0; i < categoryIds.length; i++) {
+                orderNumbers.put(categoryIds[i], i);
+            }
+        }
+
+        private Index with(String categoryId) {
+            String[] extendedCategoryIds = Arrays.copyOf(categoryIds, categoryIds.length + 1);
+            extendedCategoryIds[categoryIds.length] = categoryId;
+            return new Index(extendedCategoryIds);
+        }
     }
 }
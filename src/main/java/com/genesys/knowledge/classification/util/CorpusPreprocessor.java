@@ -0,0 +1,164 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.knowledge.classification.classifier.feature.FeatureSpaceSizer;
+import com.genesys.knowledge.classification.defaults.LearnerDefaults;
+import com.genesys.knowledge.domain.Category;
+import com.genesys.knowledge.domain.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tokenizes a corpus of {@link Document}s exactly once, so the tokens and everything derived from them
+ * are computed in one pass instead of every consumer tokenizing the corpus again.
+ * <p>
+ * Documents are split into contiguous parts tokenized by separate threads, every thread collects statistics
+ * of its part on its own, and the parts are merged in the order of the documents. Distinct tokens are counted
+ * approximately by a {@link FeatureSpaceSizer} sketch per part, so the corpus isn't held in a set to size
+ * the feature space.
+ */
+public class CorpusPreprocessor {
+
+    private final TokenizationService tokenizationService;
+    private final TokenCache tokenCache;
+    private final DocumentHandler.TokenizerType tokenizerType;
+    private final int threadsNumber;
+
+    /**
+     * Creates preprocessor which tokenizes with the default tokenizer on all cores, looking documents up
+     * in the cache of {@link DocumentHandler} if it's set.
+     */
+    public CorpusPreprocessor() {
+        this(TokenizationService.getDefault(), DocumentHandler.getTokenCache(), null,
+                LearnerDefaults.DEFAULT_TRAINING_THREADS_NUMBER);
+    }
+
+    /**
+     * @param tokenizationService service to tokenize texts with
+     * @param tokenizerType type of a tokenizer, {@code null} for the default type
+     * @param threadsNumber number of threads to tokenize with
+     */
+    public CorpusPreprocessor(TokenizationService tokenizationService, DocumentHandler.TokenizerType tokenizerType,
+                              int threadsNumber) {
+        this(tokenizationService, null, tokenizerType, threadsNumber);
+    }
+
+    /**
+     * @param tokenCache cache to look documents up in, documents missing in it are tokenized
+     *                   by its {@link TokenizationService}
+     * @param tokenizerType type of a tokenizer, {@code null} for the default type
+     * @param threadsNumber number of threads to tokenize with
+     */
+    public CorpusPreprocessor(TokenCache tokenCache, DocumentHandler.TokenizerType tokenizerType, int threadsNumber) {
+        this(tokenCache.getTokenizationService(), tokenCache, tokenizerType, threadsNumber);
+    }
+
+    private CorpusPreprocessor(TokenizationService tokenizationService, TokenCache tokenCache,
+                               DocumentHandler.TokenizerType tokenizerType, int threadsNumber) {
+        if (threadsNumber <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threadsNumber);
+        }
+        this.tokenizationService = tokenCache != null ? tokenCache.getTokenizationService() : tokenizationService;
+        this.tokenCache = tokenCache;
+        this.tokenizerType = tokenizerType;
+        this.threadsNumber = threadsNumber;
+    }
+
+    /**
+     * Tokenizes the specified documents and collects their statistics.
+     *
+     * @param documents documents to preprocess, documents without text get no tokens
+     * @return the documents with their tokens and statistics
+     */
+    public PreprocessedCorpus preprocess(List<Document> documents) {
+        int partsNumber = Math.max(1, Math.min(threadsNumber, documents.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(partsNumber);
+        try {
+            List<Future<Part>> futures = new ArrayList<>(partsNumber);
+            for (int part = 0; part < partsNumber; part++) {
+                List<Document> partDocuments = documents.subList(
+                        (int) ((long) part * documents.size() / partsNumber),
+                        (int) ((long) (part + 1) * documents.size() / partsNumber));
+                futures.add(executor.submit(() -> preprocessPart(partDocuments)));
+            }
+
+            List<List<String>> tokens = new ArrayList<>(documents.size());
+            int maxNumberOfTokens = 0;
+            long totalNumberOfTokens = 0;
+            FeatureSpaceSizer vocabularySketch = new FeatureSpaceSizer();
+            Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+            for (Future<Part> future : futures) {
+                Part part = future.get();
+                tokens.addAll(part.tokens);
+                maxNumberOfTokens = Math.max(maxNumberOfTokens, part.maxNumberOfTokens);
+                totalNumberOfTokens += part.totalNumberOfTokens;
+                vocabularySketch.merge(part.vocabularySketch);
+                for (Map.Entry<String, Integer> entry : part.categoryCounts.entrySet()) {
+                    categoryCounts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+            }
+            return new PreprocessedCorpus(new ArrayList<>(documents), tokens, maxNumberOfTokens, totalNumberOfTokens,
+                    vocabularySketch.estimateVocabularySize(), categoryCounts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Corpus preprocessing has been interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Corpus preprocessing has failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Part preprocessPart(List<Document> documents) {
+        Part part = new Part(documents.size());
+        for (Document document : documents) {
+            String text = document.getText();
+            List<String> tokens;
+            if (text == null) {
+                tokens = Collections.emptyList();
+            } else if (tokenCache != null) {
+                tokens = tokenCache.tokenize(document.getId(), text, tokenizerType);
+            } else {
+                tokens = tokenizationService.tokenize(text, tokenizerType);
+            }
+            part.tokens.add(tokens);
+            part.maxNumberOfTokens = Math.max(part.maxNumberOfTokens, tokens.size());
+            part.totalNumberOfTokens += tokens.size();
+            part.vocabularySketch.addTerms(tokens);
+
+            // a document is counted once per category even if the category is repeated
+            Set<String> categoryIds = new HashSet<>();
+            for (Category category : document.getCategories()) {
+                if (categoryIds.add(category.getId())) {
+                    part.categoryCounts.merge(category.getId(), 1, Integer::sum);
+                }
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Tokens and statistics of a contiguous part of the corpus.
+     */
+    private static class Part {
+
+        private final List<List<String>> tokens;
+        private int maxNumberOfTokens;
+        private long totalNumberOfTokens;
+        private final FeatureSpaceSizer vocabularySketch = new FeatureSpaceSizer();
+        private final Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+
+        private Part(int documentsNumber) {
+            tokens = new ArrayList<>(documentsNumber);
+        }
+    }
+}
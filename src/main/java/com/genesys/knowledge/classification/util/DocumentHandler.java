@@ -1,18 +1,9 @@
 package com.genesys.knowledge.classification.util;
 
-import com.genesys.elasticsearch.index.analysis.tokenizers.FreeLingTokenizer;
 import com.genesys.knowledge.classification.learner.Learner;
 import com.genesys.knowledge.domain.Category;
 import com.genesys.knowledge.domain.ResponseMessage;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.lucene.analysis.*;
-import org.apache.lucene.analysis.core.LowerCaseFilter;
-import org.apache.lucene.analysis.core.StopFilter;
-import org.apache.lucene.analysis.icu.ICUFoldingFilter;
-import org.apache.lucene.analysis.snowball.SnowballFilter;
-import org.apache.lucene.analysis.standard.StandardTokenizer;
-import org.apache.lucene.analysis.tokenattributes.*;
-import org.apache.lucene.analysis.util.CharArraySet;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -27,6 +18,11 @@ import java.util.*;
 @Slf4j
 public class DocumentHandler {
 
+    /**
+     * Cache documents are looked up in before they are tokenized, {@code null} if there's none.
+     */
+    private static volatile TokenCache tokenCache;
+
     public static List<com.genesys.knowledge.domain.Document> retrieveDocuments(String url, String knowledgeBase) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -49,53 +45,37 @@ public class DocumentHandler {
      * @return
      */
     public static List<String> convertTextToTokens(String text, TokenizerType tokenizerType) {
-        List<String> resultTokens = new ArrayList<>();
-
-        TokenStream tokenStream;
-        if ((tokenizerType == null) || (tokenizerType == TokenizerType.FreeLingTokenizer)) {
-            tokenStream = new FreeLingTokenizer(new StringReader(text),
-                    "C:/freeling4-win64/data/",
-                    "en", null, null, false);
-        } else {
-            tokenStream = new StandardTokenizer(new BufferedReader(new StringReader(text)));
-        }
-
-        tokenStream = new LowerCaseFilter(tokenStream);
-
-        ArrayList<String> stopWordsList = new ArrayList<>();
-        try (Scanner scanner = new Scanner(new File("src/main/resources/rules/knowledge/stopwords.txt"))) {
-            while (scanner.hasNext()) {
-                stopWordsList.add(scanner.next());
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-        CharArraySet stopWordsSet = new CharArraySet(stopWordsList, true);
-        tokenStream = new StopFilter(tokenStream, stopWordsSet);
-
-        tokenStream = new ICUFoldingFilter(tokenStream);
+        return TokenizationService.getDefault().tokenize(text, tokenizerType);
+    }
 
-        if (tokenizerType == TokenizerType.StandardTokenizer) {
-            tokenStream = new SnowballFilter(tokenStream, "English"); // stemming
+    /**
+     * Converts text of the specified document into {@link List} of tokens using the specified type of a tokenizer.
+     * If a {@link TokenCache} is set, tokens are taken from the cache as long as the text hasn't changed since
+     * they were cached, otherwise the text is tokenized and its tokens are cached.
+     *
+     * @param document document to convert
+     * @param tokenizerType option that declare which type of tokenizer to use
+     * @return tokens of the text of the document
+     */
+    public static List<String> convertDocumentToTokens(com.genesys.knowledge.domain.Document document,
+                                                       TokenizerType tokenizerType) {
+        TokenCache cache = tokenCache;
+        if (cache == null) {
+            return convertTextToTokens(document.getText(), tokenizerType);
         }
+        return cache.tokenize(document.getId(), document.getText(), tokenizerType);
+    }
 
-        try {
-            tokenStream.reset();
-            while (tokenStream.incrementToken()) {
-                resultTokens.add(tokenStream.getAttribute(CharTermAttribute.class).toString());
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                tokenStream.end();
-                tokenStream.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    /**
+     * Sets cache documents are looked up in before they are tokenized, {@code null} not to cache tokens.
+     * Documents missing in the cache are tokenized by the {@link TokenizationService} of the cache.
+     */
+    public static void setTokenCache(TokenCache cache) {
+        tokenCache = cache;
+    }
 
-        return resultTokens;
+    public static TokenCache getTokenCache() {
+        return tokenCache;
     }
 
     public static int findMaxNumberOfTokens(List<com.genesys.knowledge.domain.Document> documents) {
@@ -104,7 +84,7 @@ public class DocumentHandler {
         for (com.genesys.knowledge.domain.Document document : documents) {
             String text = document.getText();
             if (text != null) {
-                List<String> tokens = convertTextToTokens(text, null);
+                List<String> tokens = convertDocumentToTokens(document, null);
                 int tokensNumber = tokens.size();
                 if (tokensNumber > maxNumberOfTokens) {
                     maxNumberOfTokens = tokensNumber;
@@ -119,11 +99,11 @@ public class DocumentHandler {
         int maxNumberOfTokens = 0;
 
         for (Learner.Document document : documents) {
-            int titleLength = document.getTitle().getTokens().size();
+            int titleLength = document.getTitle().getTokensNumber();
             if (titleLength > maxNumberOfTokens) {
                 maxNumberOfTokens = titleLength;
             }
-            int bodyLength = document.getBody().getTokens().size();
+            int bodyLength = document.getBody().getTokensNumber();
             if (bodyLength > maxNumberOfTokens) {
                 maxNumberOfTokens = bodyLength;
             }
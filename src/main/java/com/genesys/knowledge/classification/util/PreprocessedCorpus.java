@@ -0,0 +1,67 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.knowledge.classification.classifier.feature.FeatureSpaceSizer;
+import com.genesys.knowledge.domain.Document;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Documents of a corpus together with their tokens and the statistics derived from them,
+ * produced by {@link CorpusPreprocessor} in one pass over the corpus.
+ * <p>
+ * Tokens are held in the order of the documents, a document without text has no tokens.
+ */
+public class PreprocessedCorpus {
+
+    @Getter
+    private final List<Document> documents;
+    private final List<List<String>> tokens;
+    /**
+     * Number of tokens of the longest document.
+     */
+    @Getter
+    private final int maxNumberOfTokens;
+    @Getter
+    private final long totalNumberOfTokens;
+    /**
+     * Estimated number of distinct tokens of all documents, see {@link FeatureSpaceSizer}.
+     */
+    @Getter
+    private final long estimatedVocabularySize;
+    /**
+     * Numbers of documents per category id, in the order categories first occur in the documents.
+     */
+    @Getter
+    private final Map<String, Integer> categoryCounts;
+
+    PreprocessedCorpus(List<Document> documents, List<List<String>> tokens, int maxNumberOfTokens,
+                       long totalNumberOfTokens, long estimatedVocabularySize, Map<String, Integer> categoryCounts) {
+        this.documents = Collections.unmodifiableList(documents);
+        this.tokens = Collections.unmodifiableList(tokens);
+        this.maxNumberOfTokens = maxNumberOfTokens;
+        this.totalNumberOfTokens = totalNumberOfTokens;
+        this.estimatedVocabularySize = estimatedVocabularySize;
+        this.categoryCounts = Collections.unmodifiableMap(categoryCounts);
+    }
+
+    /**
+     * Gets tokens of the document at the specified position.
+     */
+    public List<String> getTokens(int documentIndex) {
+        return tokens.get(documentIndex);
+    }
+
+    /**
+     * Gets tokens of all documents in the order of the documents.
+     */
+    public List<List<String>> getTokens() {
+        return tokens;
+    }
+
+    public int getDocumentsNumber() {
+        return documents.size();
+    }
+}
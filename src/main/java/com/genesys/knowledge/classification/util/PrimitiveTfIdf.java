@@ -0,0 +1,185 @@
+package com.genesys.knowledge.classification.util;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Term frequency-Inverse document frequency over {@code int} term ids.
+ * <p>
+ * The same computations as {@link TfIdf}, but terms are dense ids (e.g. assigned by a vocabulary)
+ * and all values are kept in primitive arrays, so no count or weight is boxed.
+ */
+public class PrimitiveTfIdf {
+
+    /**
+     * Sparse weights of the terms of a single document, term ids are sorted in ascending order.
+     */
+    public static class TermWeights {
+
+        @Getter
+        private final int[] termIds;
+        @Getter
+        private final double[] weights;
+
+        public TermWeights(int[] termIds, double[] weights) {
+            if (termIds.length != weights.length) {
+                throw new IllegalArgumentException("Numbers of term ids and weights differ: "
+                        + termIds.length + " != " + weights.length);
+            }
+            this.termIds = termIds;
+            this.weights = weights;
+        }
+
+        public int size() {
+            return termIds.length;
+        }
+
+        /**
+         * Gets weight of the specified term.
+         *
+         * @param termId id of the term
+         * @return weight of the term, 0 if the document doesn't contain it
+         */
+        public double get(int termId) {
+            int position = Arrays.binarySearch(termIds, termId);
+            return position >= 0 ? weights[position] : 0;
+        }
+    }
+
+    /**
+     * Term frequency for a single document
+     *
+     * @param document term ids of the document in any order, repeated terms are counted
+     * @param type     natural, logarithmic or boolean
+     * @return weights of the document's terms
+     */
+    public static TermWeights tf(int[] document, TfIdf.TfType type) {
+        int[] sortedDocument = Arrays.copyOf(document, document.length);
+        Arrays.sort(sortedDocument);
+
+        int[] termIds = new int[sortedDocument.length];
+        double[] frequencies = new double[sortedDocument.length];
+        int size = 0;
+        for (int i = 0; i < sortedDocument.length; ) {
+            int termId = sortedDocument[i];
+            int count = 0;
+            while (i < sortedDocument.length && sortedDocument[i] == termId) {
+                count++;
+                i++;
+            }
+            termIds[size] = termId;
+            switch (type) {
+                case LOGARITHM:
+                    frequencies[size] = 1 + Math.log(count);
+                    break;
+                case BOOLEAN:
+                    frequencies[size] = 1.0;
+                    break;
+                default:
+                    frequencies[size] = count;
+            }
+            size++;
+        }
+
+        return new TermWeights(Arrays.copyOf(termIds, size), Arrays.copyOf(frequencies, size));
+    }
+
+    /**
+     * Natural term frequency for a single document
+     *
+     * @param document term ids of the document
+     * @return weights of the document's terms
+     */
+    public static TermWeights tf(int[] document) {
+        return tf(document, TfIdf.TfType.NATURAL);
+    }
+
+    /**
+     * Inverse document frequency for a set of documents. Every term is counted once per document
+     * no matter how many times it's repeated there.
+     *
+     * @param documents   term ids of the documents
+     * @param termsNumber number of terms, all the ids must be less than it
+     * @param smooth      smooth the counts by treating the document set as if it contained an additional
+     *                    document with every term in the vocabulary
+     * @param addOne      add one to idf values to prevent divide by zero errors in tf-idf
+     * @return inverse document frequencies indexed by term id; without smoothing a term which
+     * doesn't appear in any document gets infinity
+     */
+    public static double[] idf(Iterable<int[]> documents, int termsNumber, boolean smooth, boolean addOne) {
+        int d = smooth ? 1 : 0;
+        int a = addOne ? 1 : 0;
+
+        int[] df = new int[termsNumber];
+        int[] lastDocument = new int[termsNumber];
+        Arrays.fill(lastDocument, -1);
+        int n = 0;
+        for (int[] document : documents) {
+            for (int termId : document) {
+                if (lastDocument[termId] != n) {
+                    lastDocument[termId] = n;
+                    df[termId]++;
+                }
+            }
+            n++;
+        }
+
+        double[] idf = new double[termsNumber];
+        for (int termId = 0; termId < termsNumber; termId++) {
+            idf[termId] = Math.log((double) (n + d) / (df[termId] + d)) + a;
+        }
+        return idf;
+    }
+
+    /**
+     * Smoothed, add-one inverse document frequency for a set of documents
+     *
+     * @param documents   term ids of the documents
+     * @param termsNumber number of terms, all the ids must be less than it
+     * @return inverse document frequencies indexed by term id
+     */
+    public static double[] idf(Iterable<int[]> documents, int termsNumber) {
+        return idf(documents, termsNumber, true, true);
+    }
+
+    /**
+     * tf-idf for a document
+     *
+     * @param tf            term frequencies of the document
+     * @param idf           inverse document frequencies indexed by term id
+     * @param normalization none or cosine
+     * @return weights of the document's terms
+     */
+    public static TermWeights tfIdf(TermWeights tf, double[] idf, TfIdf.Normalization normalization) {
+        int[] termIds = tf.getTermIds();
+        double[] frequencies = tf.getWeights();
+        double[] tfIdf = new double[termIds.length];
+
+        double n = 0.0;
+        for (int i = 0; i < termIds.length; i++) {
+            double x = frequencies[i] * idf[termIds[i]];
+            tfIdf[i] = x;
+            n += x * x;
+        }
+        if (normalization == TfIdf.Normalization.COSINE) {
+            n = Math.sqrt(n);
+            for (int i = 0; i < tfIdf.length; i++) {
+                tfIdf[i] /= n;
+            }
+        }
+
+        return new TermWeights(termIds, tfIdf);
+    }
+
+    /**
+     * Unnormalized tf-idf for a document
+     *
+     * @param tf  term frequencies of the document
+     * @param idf inverse document frequencies indexed by term id
+     * @return weights of the document's terms
+     */
+    public static TermWeights tfIdf(TermWeights tf, double[] idf) {
+        return tfIdf(tf, idf, TfIdf.Normalization.NONE);
+    }
+}
@@ -0,0 +1,465 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.knowledge.classification.classifier.io.ModelFile;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.mahout.math.MurmurHash;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of tokens of documents, so a corpus tokenized once isn't tokenized again after a restart.
+ * <p>
+ * An entry is keyed by the id of a document and a hash of the tokenizer configuration, i.e. the type of
+ * the tokenizer and the stop words of the {@link TokenizationService}, and it holds a hash of the text
+ * the tokens were produced from. An entry is a hit only if the hash of the text is the same, so entries
+ * become stale as soon as the text or the stop words change, and the document is tokenized and cached again.
+ * Documents without an id are keyed by their text only.
+ * <p>
+ * Entries are appended to a single file, an entry of the same key written later replaces the earlier one.
+ * The file is memory-mapped read-only and entries are decoded in place, the heap holds only offsets of
+ * the latest entries. Layout, all numbers big-endian:
+ * <pre>
+ * int     magic number {@link #MAGIC}
+ * short   format version {@link #VERSION}
+ * records, each of them:
+ *   int     number of bytes of the record after this number
+ *   int     CRC32 of the bytes of the record after the checksum
+ *   long    hash of the tokenizer configuration
+ *   long    hash of the text
+ *   string  document id, a hash of the text if the document has none
+ *   int     number of tokens
+ *   string  each token
+ * </pre>
+ * A string is an unsigned short number of bytes followed by its UTF-8 bytes. When the file is opened,
+ * records are read up to the first one which is cut short or whose checksum doesn't match, e.g. a record
+ * partially written when the process stopped or a tail of zeros left by a crash, and the rest of the file
+ * is cut off.
+ * <p>
+ * The file is mapped as a whole, so it is never written beyond a maximum size of at most 2 GB. Once it is
+ * full, new tokens aren't cached any more. Records replaced by later ones stay in the file until it is
+ * opened again, then the file is compacted to the latest records if stale ones take more than half of it.
+ * Instances are thread-safe.
+ */
+@Slf4j
+public class TokenCache implements Closeable {
+
+    public static final int MAGIC = 0x4B435443; // "KCTC"
+    public static final short VERSION = 2;
+
+    private static final int HEADER_SIZE = 6;
+    /**
+     * Number of bytes of a record of an empty document id and no tokens after its length.
+     */
+    private static final int MIN_RECORD_LENGTH = 4 + 8 + 8 + 2 + 4;
+    private static final int HASH_SEED = 0x5EED;
+
+    @Getter
+    private final Path file;
+    @Getter
+    private final TokenizationService tokenizationService;
+    private final long stopWordsHash;
+    /**
+     * Size the file isn't written beyond.
+     */
+    @Getter
+    private final long maxSizeInBytes;
+
+    private FileChannel channel;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private volatile MappedByteBuffer mapped;
+    private long size;
+    private boolean full;
+
+    /**
+     * Opens the specified cache file of at most {@link ClassifierDefaults#DEFAULT_TOKEN_CACHE_MAX_BYTES} bytes,
+     * creating it if it doesn't exist.
+     *
+     * @param file file of the cache
+     * @param tokenizationService service to tokenize documents missing in the cache with
+     * @throws IOException if the file can't be read or isn't a token cache file of a supported version
+     */
+    public TokenCache(Path file, TokenizationService tokenizationService) throws IOException {
+        this(file, tokenizationService, ClassifierDefaults.DEFAULT_TOKEN_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * Opens the specified cache file, creating it if it doesn't exist.
+     *
+     * @param file file of the cache
+     * @param tokenizationService service to tokenize documents missing in the cache with
+     * @param maxSizeInBytes size the file isn't written beyond, at most {@link Integer#MAX_VALUE}
+     * @throws IOException if the file can't be read or isn't a token cache file of a supported version
+     */
+    public TokenCache(Path file, TokenizationService tokenizationService, long maxSizeInBytes) throws IOException {
+        if (maxSizeInBytes < HEADER_SIZE || maxSizeInBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maximum size of a token cache file must be between " + HEADER_SIZE
+                    + " and " + Integer.MAX_VALUE + " bytes: " + maxSizeInBytes);
+        }
+        this.file = file;
+        this.tokenizationService = tokenizationService;
+        this.maxSizeInBytes = maxSizeInBytes;
+        stopWordsHash = hash(String.join("\n", tokenizationService.getStopWords()));
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel);
+            }
+            size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Token cache file " + file + " of " + size + " bytes is too big to be mapped.");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            load();
+            if (size > maxSizeInBytes || 2 * liveSize() < size - HEADER_SIZE) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        log.info("Opened token cache {} of {} bytes with {} entries", file, size, entries.size());
+    }
+
+    private void load() throws IOException {
+        if (size < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+            throw new IOException(file + " isn't a token cache file.");
+        }
+        short version = mapped.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of token cache file " + file + ".");
+        }
+
+        int position = HEADER_SIZE;
+        while (position + 4 <= size) {
+            int length = mapped.getInt(position);
+            if (length < MIN_RECORD_LENGTH || length > size - position - 4 || !checksumMatches(position, length)) {
+                break;
+            }
+            ByteBuffer record = record(position);
+            record.position(record.position() + 4);
+            long configHash = record.getLong();
+            long textHash = record.getLong();
+            String documentId = readString(record);
+            entries.put(new Key(documentId, configHash), new Entry(textHash, position));
+            position += 4 + length;
+        }
+
+        if (position < size) {
+            log.warn("Cutting off {} bytes of a partially written or corrupt record at the end of {}",
+                    size - position, file);
+            channel.truncate(position);
+            size = position;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private boolean checksumMatches(int position, int length) {
+        ByteBuffer checked = mapped.duplicate();
+        checked.limit(position + 4 + length).position(position + 8);
+        CRC32 crc = new CRC32();
+        crc.update(checked);
+        return (int) crc.getValue() == mapped.getInt(position + 4);
+    }
+
+    /**
+     * Gets number of bytes of the latest records.
+     */
+    private long liveSize() {
+        long liveSize = 0;
+        for (Entry entry : entries.values()) {
+            liveSize += 4 + mapped.getInt((int) entry.position);
+        }
+        return liveSize;
+    }
+
+    /**
+     * Rewrites the latest records into a new file, in the order they were written, as long as they fit into
+     * the maximum size, and replaces the file with it. Called by the constructor only.
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<Key, Entry>> latest = new ArrayList<>(entries.entrySet());
+        latest.sort(Comparator.comparingLong(latestEntry -> latestEntry.getValue().position));
+
+        Path compacted = file.resolveSibling(file.getFileName() + ".compacted");
+        Map<Key, Entry> compactedEntries = new HashMap<>();
+        long compactedSize;
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out);
+            compactedSize = HEADER_SIZE;
+            for (Map.Entry<Key, Entry> latestEntry : latest) {
+                int position = (int) latestEntry.getValue().position;
+                int recordSize = 4 + mapped.getInt(position);
+                if (compactedSize + recordSize > maxSizeInBytes) {
+                    break;
+                }
+                ByteBuffer record = mapped.duplicate();
+                record.limit(position + recordSize).position(position);
+                while (record.hasRemaining()) {
+                    out.write(record, compactedSize + record.position() - position);
+                }
+                compactedEntries.put(latestEntry.getKey(), new Entry(latestEntry.getValue().textHash, compactedSize));
+                compactedSize += recordSize;
+            }
+            out.force(false);
+        }
+
+        log.info("Compacting token cache {} from {} to {} bytes, {} of {} entries are kept", file, size,
+                compactedSize, compactedEntries.size(), entries.size());
+        channel.close();
+        ModelFile.move(compacted, file);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = compactedSize;
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        entries.clear();
+        entries.putAll(compactedEntries);
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Gets tokens of the specified document from the cache or tokenizes its text and caches them.
+     * The document is tokenized even if the tokens can't be written into the cache or it is full.
+     *
+     * @param documentId id of the document, {@code null} if it has none
+     * @param text text of the document
+     * @param tokenizerType type of a tokenizer, {@code null} for the default type
+     * @return tokens of the text
+     */
+    public List<String> tokenize(String documentId, String text, DocumentHandler.TokenizerType tokenizerType) {
+        List<String> tokens = get(documentId, text, tokenizerType);
+        if (tokens == null) {
+            tokens = tokenizationService.tokenize(text, tokenizerType);
+            try {
+                put(documentId, text, tokenizerType, tokens);
+            } catch (IOException e) {
+                log.error("Failed to cache tokens of document {}: {}", documentId, e.getMessage());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Gets cached tokens of the specified document.
+     *
+     * @param documentId id of the document, {@code null} if it has none
+     * @param text text of the document
+     * @param tokenizerType type of a tokenizer, {@code null} for the default type
+     * @return tokens of the text or {@code null} if they aren't cached or were cached for another text
+     */
+    public List<String> get(String documentId, String text, DocumentHandler.TokenizerType tokenizerType) {
+        Entry entry = entries.get(new Key(normalize(documentId, text), configHash(tokenizerType)));
+        if (entry == null || entry.textHash != hash(text)) {
+            return null;
+        }
+
+        ByteBuffer record = record(entry.position);
+        record.position(record.position() + 4 + 16);
+        readString(record);
+        int tokensNumber = record.getInt();
+        List<String> tokens = new ArrayList<>(tokensNumber);
+        for (int i = 0; i < tokensNumber; i++) {
+            tokens.add(readString(record));
+        }
+        return tokens;
+    }
+
+    /**
+     * Appends tokens of the specified document to the cache replacing tokens cached for it before,
+     * unless the file would grow beyond its maximum size.
+     *
+     * @param documentId id of the document, {@code null} if it has none
+     * @param text text of the document the tokens were produced from
+     * @param tokenizerType type of a tokenizer, {@code null} for the default type
+     * @param tokens tokens of the text
+     * @return {@code true} if the tokens were cached, {@code false} if the cache is full
+     * @throws IOException if the record can't be written
+     */
+    public boolean put(String documentId, String text, DocumentHandler.TokenizerType tokenizerType, List<String> tokens)
+            throws IOException {
+        Key key = new Key(normalize(documentId, text), configHash(tokenizerType));
+        long textHash = hash(text);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length, set below
+        out.writeInt(0); // checksum, set below
+        out.writeLong(key.configHash);
+        out.writeLong(textHash);
+        writeString(out, key.documentId);
+        out.writeInt(tokens.size());
+        for (String token : tokens) {
+            writeString(out, token);
+        }
+        byte[] recordBytes = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(recordBytes, 8, recordBytes.length - 8);
+        ByteBuffer record = ByteBuffer.wrap(recordBytes);
+        record.putInt(0, recordBytes.length - 4);
+        record.putInt(4, (int) crc.getValue());
+
+        synchronized (this) {
+            if (size + recordBytes.length > maxSizeInBytes) {
+                if (!full) {
+                    full = true;
+                    log.warn("Token cache {} reached its maximum size of {} bytes, new tokens aren't cached",
+                            file, maxSizeInBytes);
+                }
+                return false;
+            }
+            long position = size;
+            while (record.hasRemaining()) {
+                channel.write(record, position + record.position());
+            }
+            size += recordBytes.length;
+            entries.put(key, new Entry(textHash, position));
+        }
+        return true;
+    }
+
+    /**
+     * Gets number of the latest entries, stale ones aren't counted.
+     */
+    public int getEntriesNumber() {
+        return entries.size();
+    }
+
+    /**
+     * Gets size of the cache file in bytes, including stale entries.
+     */
+    public synchronized long getSizeInBytes() {
+        return size;
+    }
+
+    /**
+     * Forces records written so far onto the disk.
+     */
+    public void flush() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Gets the record at the specified position, positioned after its length, remapping the file
+     * if the record was appended after it was mapped.
+     */
+    private ByteBuffer record(long position) {
+        MappedByteBuffer buffer = mapped;
+        if (position + 4 > buffer.capacity() || position + 4 + buffer.getInt((int) position) > buffer.capacity()) {
+            buffer = remap();
+        }
+        ByteBuffer record = buffer.duplicate();
+        record.position((int) position + 4);
+        return record;
+    }
+
+    private synchronized MappedByteBuffer remap() {
+        if (mapped.capacity() < size) {
+            try {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to map token cache file " + file + ".", e);
+            }
+        }
+        return mapped;
+    }
+
+    private long configHash(DocumentHandler.TokenizerType tokenizerType) {
+        DocumentHandler.TokenizerType type = tokenizerType != null
+                ? tokenizerType
+                : DocumentHandler.TokenizerType.FreeLingTokenizer;
+        return hash(type.name()) * 31 + stopWordsHash;
+    }
+
+    private static String normalize(String documentId, String text) {
+        // a document without an id is told apart from others by its text only,
+        // the leading character keeps such keys apart from real ids
+        return documentId != null ? documentId : "\0" + Long.toHexString(hash(text));
+    }
+
+    private static long hash(String text) {
+        return MurmurHash.hash64A(text.getBytes(StandardCharsets.UTF_8), HASH_SEED);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String of " + bytes.length + " bytes is too long to be cached.");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Key {
+
+        private final String documentId;
+        private final long configHash;
+
+        private Key(String documentId, long configHash) {
+            this.documentId = documentId;
+            this.configHash = configHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return configHash == key.configHash && documentId.equals(key.documentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentId, configHash);
+        }
+    }
+
+    private static class Entry {
+
+        private final long textHash;
+        private final long position;
+
+        private Entry(long textHash, long position) {
+            this.textHash = textHash;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.elasticsearch.index.analysis.tokenizers.FreeLingTokenizer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.core.StopFilter;
+import org.apache.lucene.analysis.icu.ICUFoldingFilter;
+import org.apache.lucene.analysis.snowball.SnowballFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Converts texts into tokens with the same analysis chains as {@link DocumentHandler#convertTextToTokens},
+ * but loads the stop words once and builds every chain once per thread.
+ * <p>
+ * Each {@link DocumentHandler.TokenizerType} has its own Lucene {@link Analyzer}, which keeps the tokenizer
+ * and filters it creates in a thread-local and resets them with {@link Tokenizer#setReader(Reader)}
+ * for the next text, so e.g. a FreeLing tokenizer loads its data only the first time a thread uses it.
+ * Instances are thread-safe.
+ */
+@Slf4j
+public class TokenizationService implements Closeable {
+
+    public static final String DEFAULT_STOP_WORDS_LOCATION = "src/main/resources/rules/knowledge/stopwords.txt";
+    public static final String FREELING_DATA_DIRECTORY = "C:/freeling4-win64/data/";
+
+    private static final String FIELD_NAME = "text";
+
+    /**
+     * Stop words in the order they were loaded in.
+     */
+    @Getter
+    private final List<String> stopWords;
+    private final CharArraySet stopWordsSet;
+    private final Map<DocumentHandler.TokenizerType, Analyzer> analyzers =
+            new EnumMap<>(DocumentHandler.TokenizerType.class);
+
+    /**
+     * Creates service with stop words loaded from the specified file, one or more words per line.
+     * If the file doesn't exist, no words are stopped.
+     *
+     * @param stopWordsFile file of stop words
+     */
+    public TokenizationService(File stopWordsFile) {
+        this(loadStopWords(stopWordsFile));
+    }
+
+    public TokenizationService(List<String> stopWords) {
+        this.stopWords = Collections.unmodifiableList(new ArrayList<>(stopWords));
+        stopWordsSet = CharArraySet.unmodifiableSet(new CharArraySet(stopWords, true));
+        for (DocumentHandler.TokenizerType type : DocumentHandler.TokenizerType.values()) {
+            analyzers.put(type, new ChainAnalyzer(type));
+        }
+    }
+
+    /**
+     * Gets the service {@link DocumentHandler} tokenizes texts with, which uses the default stop words.
+     */
+    public static TokenizationService getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static class DefaultHolder {
+
+        private static final TokenizationService INSTANCE =
+                new TokenizationService(new File(DEFAULT_STOP_WORDS_LOCATION));
+    }
+
+    private static List<String> loadStopWords(File stopWordsFile) {
+        List<String> stopWords = new ArrayList<>();
+        try (Scanner scanner = new Scanner(stopWordsFile)) {
+            while (scanner.hasNext()) {
+                stopWords.add(scanner.next());
+            }
+        } catch (FileNotFoundException e) {
+            log.error(e.getMessage());
+        }
+        return stopWords;
+    }
+
+    /**
+     * Converts the specified text into tokens using the specified type of a tokenizer.
+     * If {@code tokenizerType} is {@code null}, use the default type.
+     *
+     * @param text text to convert
+     * @param tokenizerType type of a tokenizer
+     * @return tokens of the text
+     */
+    public List<String> tokenize(String text, DocumentHandler.TokenizerType tokenizerType) {
+        Reader reader = new StringReader(text);
+        Analyzer analyzer = analyzers.get(tokenizerType != null
+                ? tokenizerType
+                : DocumentHandler.TokenizerType.FreeLingTokenizer);
+
+        List<String> resultTokens = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(FIELD_NAME, reader)) {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                resultTokens.add(termAttribute.toString());
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+        return resultTokens;
+    }
+
+    /**
+     * Closes the analyzers releasing the chains of all threads.
+     */
+    @Override
+    public void close() {
+        for (Analyzer analyzer : analyzers.values()) {
+            analyzer.close();
+        }
+    }
+
+    /**
+     * Tokenizer of the specified type followed by lower-casing, stop words removal, ICU folding
+     * and, for the standard tokenizer, stemming.
+     */
+    private class ChainAnalyzer extends Analyzer {
+
+        private final DocumentHandler.TokenizerType type;
+
+        private ChainAnalyzer(DocumentHandler.TokenizerType type) {
+            this.type = type;
+        }
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
+            Tokenizer source;
+            if (type == DocumentHandler.TokenizerType.FreeLingTokenizer) {
+                source = new FreeLingTokenizer(reader, FREELING_DATA_DIRECTORY, "en", null, null, false);
+            } else {
+                source = new StandardTokenizer(reader);
+            }
+
+            TokenStream tokenStream = new LowerCaseFilter(source);
+            tokenStream = new StopFilter(tokenStream, stopWordsSet);
+            tokenStream = new ICUFoldingFilter(tokenStream);
+            if (type == DocumentHandler.TokenizerType.StandardTokenizer) {
+                tokenStream = new SnowballFilter(tokenStream, "English"); // stemming
+            }
+            return new TokenStreamComponents(source, tokenStream);
+        }
+    }
+}
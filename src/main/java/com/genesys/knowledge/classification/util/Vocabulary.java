@@ -0,0 +1,124 @@
+package com.genesys.knowledge.classification.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of terms which assigns every distinct term a dense {@code int} id starting from 0.
+ * <p>
+ * Documents of a corpus share one vocabulary, so each distinct term is stored only once
+ * and documents can hold their tokens as arrays of ids. All methods are thread-safe: lookups don't take a lock,
+ * only adding a new term does. A term is stored in the array of terms before its id is published, so an id
+ * obtained from any method can be resolved by any thread.
+ */
+public class Vocabulary {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final ConcurrentHashMap<String, Integer> termIds = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    private volatile String[] terms = new String[INITIAL_CAPACITY];
+    private volatile int size;
+
+    /**
+     * Gets id of the specified term adding the term to {@code this} vocabulary if it isn't there yet.
+     *
+     * @param term term to intern
+     * @return id of the term
+     */
+    public int intern(String term) {
+        Integer termId = termIds.get(term);
+        return termId != null ? termId : add(term);
+    }
+
+    private synchronized int add(String term) {
+        Integer existingId = termIds.get(term);
+        if (existingId != null) {
+            return existingId;
+        }
+        int termId = size;
+        String[] current = terms;
+        if (termId == current.length) {
+            current = Arrays.copyOf(current, 2 * current.length);
+            terms = current;
+        }
+        current[termId] = term;
+        size = termId + 1;
+        termIds.put(term, termId);
+        return termId;
+    }
+
+    /**
+     * Gets ids of the specified terms adding new terms to {@code this} vocabulary.
+     *
+     * @param terms terms to intern
+     * @return ids of the terms in the same order
+     */
+    public int[] intern(List<String> terms) {
+        int[] ids = new int[terms.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = intern(terms.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Gets id of the specified term without adding it.
+     *
+     * @param term term to look up
+     * @return id of the term, or {@code -1} if {@code this} vocabulary doesn't contain it
+     */
+    public int getId(String term) {
+        Integer termId = termIds.get(term);
+        return termId != null ? termId : -1;
+    }
+
+    public String getTerm(int termId) {
+        // the size is read before the array, so the array holds every term below it
+        if (termId < 0 || termId >= size) {
+            throw new IndexOutOfBoundsException("Term id: " + termId + ", vocabulary size: " + size);
+        }
+        return terms[termId];
+    }
+
+    /**
+     * Gets terms with the specified ids.
+     *
+     * @param termIds ids of terms
+     * @return terms in the same order
+     */
+    public List<String> getTerms(int[] termIds) {
+        List<String> result = new ArrayList<>(termIds.length);
+        for (int termId : termIds) {
+            result.add(getTerm(termId));
+        }
+        return result;
+    }
+
+    /**
+     * Gets read-only view of the terms with the specified ids, which resolves the terms on access
+     * instead of copying them.
+     *
+     * @param termIds ids of terms, which mustn't be modified while the view is used
+     * @return terms in the same order
+     */
+    public List<String> viewTerms(int[] termIds) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return getTerm(termIds[index]);
+            }
+
+            @Override
+            public int size() {
+                return termIds.length;
+            }
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -26,6 +26,8 @@ public class Document {
     @JsonProperty(value = "relatedCategories")
     @Getter @Setter
     private List<Category> categories;
+    @Getter @Setter
+    private String id;
 
     public Document() {
         text = "";
@@ -37,6 +39,12 @@ public class Document {
         categories = new ArrayList<>();
     }
 
+    public Document(String kbId, String text, List<Category> categories) {
+        this.kbId = kbId;
+        this.text = text;
+        this.categories = categories;
+    }
+
     public void addCategory(Category category) {
         categories.add(category);
     }
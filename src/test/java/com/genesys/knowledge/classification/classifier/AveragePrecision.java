@@ -0,0 +1,45 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
+
+import java.util.List;
+
+/**
+ * Mean average precision of the categories ranked by a classifier, shared by the precision tests.
+ */
+public final class AveragePrecision {
+
+    private AveragePrecision() {
+    }
+
+    /**
+     * Ranks all categories of every test document and averages the average precisions of the rankings.
+     */
+    public static double evaluate(AbstractClassifier classifier, List<Learner.Document> testDocuments)
+            throws ClassifierNotTrainedException {
+        int categoriesNumber = classifier.getCategoryHandler().getCategoriesQuantity();
+        double sumAvgPrecision = 0;
+        for (Learner.Document document : testDocuments) {
+            List<String> classifiedCategoryIds =
+                    classifier.classifyDocumentTopCategories(document, categoriesNumber).getCategoryIds();
+            sumAvgPrecision += of(document.getCategories(), classifiedCategoryIds);
+        }
+        return sumAvgPrecision / testDocuments.size();
+    }
+
+    /**
+     * Average precision of the ranked category ids against the expected ones.
+     */
+    public static double of(List<String> expected, List<String> actual) {
+        double s = 0.0;
+        int numRelevant = 0;
+        for (int i = 0; i < actual.size() && numRelevant < expected.size(); i++) {
+            if (expected.contains(actual.get(i))) {
+                ++numRelevant;
+                s += (double) numRelevant / (i + 1);
+            }
+        }
+        return s / expected.size();
+    }
+}
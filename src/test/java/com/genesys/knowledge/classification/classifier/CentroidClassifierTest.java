@@ -0,0 +1,170 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.Vector;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CentroidClassifierTest {
+
+    private static List<Learner.Document> trainingDocuments;
+    private static List<Learner.Document> testDocuments;
+
+    @BeforeClass
+    public static void splitDataset() throws IOException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json");
+        Collections.shuffle(documents, new Random(42));
+        trainingDocuments = documents.subList(0, 4 * documents.size() / 5);
+        testDocuments = documents.subList(4 * documents.size() / 5, documents.size());
+    }
+
+    @Test
+    public void testCentroidPrecisionAndTrainingTime() throws ClassifierNotTrainedException {
+        long start = System.nanoTime();
+        CentroidClassifier classifier = new CentroidClassifier(new ArrayList<>(trainingDocuments));
+        long trainingNanos = System.nanoTime() - start;
+
+        CentroidModel model = classifier.getModel();
+        System.out.println(String.format("Centroids of %d categories over %d terms trained in %.1f ms, "
+                        + "%d postings, model %d KB", model.getNumCategories(), model.getNumFeatures(),
+                trainingNanos / 1e6, model.getPostingsNumber(), model.estimateSizeInBytes() / 1024));
+
+        start = System.nanoTime();
+        double avgPrecision = AveragePrecision.evaluate(classifier, testDocuments);
+        System.out.println(String.format("Average precision %.4f, %.1f us per document", avgPrecision,
+                (System.nanoTime() - start) / 1e3 / testDocuments.size()));
+    }
+
+    @Test
+    public void testCentroidClassifiesTrainingDocumentsIntoTheirCategories() throws ClassifierNotTrainedException {
+        CentroidClassifier classifier = new CentroidClassifier(new ArrayList<>(trainingDocuments));
+
+        int correct = 0;
+        for (Learner.Document document : trainingDocuments) {
+            if (document.getCategories().contains(classifier.classifyDocumentWithMostConfidentCategory(document))) {
+                correct++;
+            }
+        }
+        System.out.println("Training documents classified correctly: " + correct + " of " + trainingDocuments.size());
+        assertTrue(correct > trainingDocuments.size() / 2);
+    }
+
+    @Test
+    public void testInvertedIndexScoresLikeDenseCentroids() {
+        // category 0: terms 0 and 1, category 1: term 1 only, category 2: term 2 only
+        CentroidModel model = new CentroidModel.Builder(3, 4)
+                .addDocument(0, new int[]{0, 1}, new double[]{0.6, 0.8})
+                .addDocument(1, new int[]{1}, new double[]{1})
+                .addDocument(2, new int[]{2}, new double[]{1})
+                .build();
+
+        assertEquals(4, model.getPostingsNumber());
+        assertEquals(0.8, model.getWeight(0, 1), 1e-12);
+        Vector query = new RandomAccessSparseVector(4);
+        query.setQuick(1, 1);
+        Vector similarities = model.classifyNoLink(query);
+        assertEquals(0.8, similarities.get(0), 1e-12);
+        assertEquals(1, similarities.get(1), 1e-12);
+        assertEquals(0, similarities.get(2), 0);
+
+        // a term out of every centroid gets equal scores
+        query = new RandomAccessSparseVector(4);
+        query.setQuick(3, 1);
+        assertEquals(1.0 / 3, model.classifyFull(query).get(2), 1e-12);
+    }
+
+    @Test
+    public void testCategoryWithoutWeightedTermsGetsEmptyCentroid() {
+        // terms of category 1 are in every document, so their tf-idf weights are zero
+        CentroidModel model = new CentroidModel.Builder(2, 3)
+                .addDocument(0, new int[]{0, 2}, new double[]{1, 0})
+                .addDocument(1, new int[]{2}, new double[]{0})
+                .build();
+
+        assertEquals(1, model.getPostingsNumber());
+        assertEquals(0, model.getWeight(1, 2), 0);
+        Vector query = new RandomAccessSparseVector(3);
+        query.setQuick(0, 1);
+        query.setQuick(2, 1);
+        Vector similarities = model.classifyNoLink(query);
+        assertEquals(1, similarities.get(0), 1e-12);
+        assertEquals(0, similarities.get(1), 0);
+        assertEquals(1, model.classifyFull(query).get(0), 1e-12);
+    }
+
+    @Test
+    public void testWriteAndReadPostings() throws IOException {
+        CentroidModel model = new CentroidModel.Builder(3, 4)
+                .addDocument(0, new int[]{0, 1}, new double[]{0.6, 0.8})
+                .addDocument(2, new int[]{1, 3}, new double[]{1, 1})
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.write(new DataOutputStream(bytes));
+
+        CentroidModel read = new CentroidModel();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(model.getNumCategories(), read.getNumCategories());
+        assertEquals(model.getNumFeatures(), read.getNumFeatures());
+        assertEquals(model.getPostingsNumber(), read.getPostingsNumber());
+        for (int category = 0; category < model.getNumCategories(); category++) {
+            for (int termId = 0; termId < model.getNumFeatures(); termId++) {
+                assertEquals(model.getWeight(category, termId), read.getWeight(category, termId), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testReadCorruptModels() throws IOException {
+        // negative numbers of categories, terms and postings
+        assertCorrupt(-1, 1, 0);
+        assertCorrupt(2, -1, 0);
+        assertCorrupt(2, 1, -1);
+        // postings of a term beyond the number of postings
+        assertCorrupt(2, 2, 1, 1, 1, 0, 0.5);
+        // postings of terms not adding up to the number of postings
+        assertCorrupt(2, 2, 2, 1, 0, 0, 0.5, 1, 0.5);
+        // category out of range
+        assertCorrupt(2, 1, 1, 1, 2, 0.5);
+    }
+
+    private static void assertCorrupt(int categoriesNumber, int termsNumber, int postingsNumber, Number... rest)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(categoriesNumber);
+        out.writeInt(termsNumber);
+        out.writeInt(postingsNumber);
+        for (Number value : rest) {
+            if (value instanceof Double) {
+                out.writeDouble(value.doubleValue());
+            } else {
+                out.writeInt(value.intValue());
+            }
+        }
+        CentroidModel model = new CentroidModel();
+        try {
+            model.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Corrupt centroid model mustn't be read.");
+        } catch (IOException e) {
+            System.out.println("Corrupt centroid model: " + e);
+        }
+        assertEquals(0, model.getNumCategories());
+    }
+}
@@ -0,0 +1,150 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+import org.apache.mahout.math.Matrix;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.function.Functions;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrozenLinearModelTest {
+
+    private static final int ITERATIONS = 20;
+    private static final int COPIES = 20;
+
+    private static List<Learner.Document> documents;
+    private static LogisticRegressionClassifier classifier;
+
+    @BeforeClass
+    public static void trainClassifier() throws IOException {
+        documents = Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json");
+        Learner learner = new Learner(new ArrayList<>(documents));
+        learner.trainClassifier(documents);
+        classifier = learner.getClassifier();
+    }
+
+    @Test
+    public void testFrozenModelScoresLikeTrainedOne() throws ClassifierNotTrainedException {
+        LogisticRegressionClassifier frozen = classifier.freeze();
+
+        assertTrue(frozen.isFrozen());
+        for (Learner.Document document : documents) {
+            Vector expected = classifier.classifyDocument(document);
+            Vector actual = frozen.classifyDocument(document);
+            assertEquals(0, expected.minus(actual).norm(Double.POSITIVE_INFINITY), 1e-12);
+        }
+    }
+
+    @Test
+    public void testSerializeFrozenModel() throws ClassifierNotTrainedException {
+        LogisticRegressionClassifier frozen = classifier.freeze();
+
+        LogisticRegressionClassifier deserialized = new LogisticRegressionClassifier(frozen.serializeModel());
+        deserialized.setCategoryHandler(frozen.getCategoryHandler());
+
+        assertTrue(deserialized.isFrozen());
+        Learner.Document document = documents.get(0);
+        assertEquals(0, frozen.classifyDocument(document).minus(deserialized.classifyDocument(document))
+                .norm(Double.POSITIVE_INFINITY), 0);
+    }
+
+    @Test
+    public void testQuantizedModelsScoreCloseToTrainedOne() throws ClassifierNotTrainedException {
+        for (WeightPrecision precision : new WeightPrecision[]{WeightPrecision.FLOAT16, WeightPrecision.INT8}) {
+            LogisticRegressionClassifier quantized = new LogisticRegressionClassifier(classifier.serializeModel(precision));
+
+            assertEquals(precision, ((FrozenLinearModel) quantized.getClassifier()).getPrecision());
+            double maxError = 0;
+            for (Learner.Document document : documents) {
+                Vector expected = classifier.classifyDocument(document);
+                maxError = Math.max(maxError, expected.minus(quantized.classifyDocument(document))
+                        .norm(Double.POSITIVE_INFINITY));
+            }
+            System.out.println(precision + ": max probability error " + maxError);
+            assertTrue(maxError < 0.05);
+        }
+    }
+
+    @Test
+    public void testFreezingLeavesTrainedModelUntouched() {
+        Learner learner = new Learner(new ArrayList<>(documents));
+        learner.trainClassifier(documents.subList(0, documents.size() / 2));
+        OnlineLogisticRegression model = (OnlineLogisticRegression) learner.getClassifier().getClassifier();
+        Matrix beta = model.getBeta().clone();
+
+        FrozenLinearModel frozenModel = FrozenLinearModel.of(model);
+
+        assertEquals(0, beta.minus(model.getBeta()).aggregate(Functions.MAX, Functions.ABS), 0);
+        // the frozen model has the pending regularization applied, as the trained one does once it's scored
+        for (Learner.Document document : documents) {
+            Vector featureVector = learner.getClassifier().getFeatureVector(document, Collections.emptyList());
+            assertEquals(0, model.classifyFull(featureVector).minus(frozenModel.classifyFull(featureVector))
+                    .norm(Double.POSITIVE_INFINITY), 1e-12);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTrainFrozenModel() {
+        classifier.freeze().train(documents.get(0), documents.get(0).getCategories().get(0), Collections.emptyList());
+    }
+
+    @Test
+    public void testScoringLatencyAndMemory() {
+        OnlineLogisticRegression model = (OnlineLogisticRegression) classifier.getClassifier();
+        FrozenLinearModel frozenModel = FrozenLinearModel.of(model);
+        List<Vector> featureVectors = new ArrayList<>();
+        for (Learner.Document document : documents) {
+            featureVectors.add(classifier.getFeatureVector(document, Collections.emptyList()));
+        }
+
+        double checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (Vector featureVector : featureVectors) {
+                checksum += model.classifyFull(featureVector).getQuick(0);
+            }
+        }
+        long mahoutNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (Vector featureVector : featureVectors) {
+                checksum -= frozenModel.classifyFull(featureVector).getQuick(0);
+            }
+        }
+        long frozenNanos = System.nanoTime() - start;
+
+        int classifications = ITERATIONS * featureVectors.size();
+        System.out.println(model.numCategories() + " categories, " + model.numFeatures() + " features");
+        System.out.println("OnlineLogisticRegression: " + mahoutNanos / classifications + " ns per document");
+        System.out.println("FrozenLinearModel: " + frozenNanos / classifications + " ns per document");
+        System.out.println("OnlineLogisticRegression heap: " + measureHeap(model::copy) / COPIES + " bytes");
+        System.out.println("FrozenLinearModel heap: " + measureHeap(() -> FrozenLinearModel.of(model)) / COPIES
+                + " bytes, estimated " + frozenModel.estimateSizeInBytes() + " bytes");
+        assertEquals(0, checksum, 1e-6);
+    }
+
+    private static long measureHeap(Supplier<Object> factory) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        List<Object> copies = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            copies.add(factory.get());
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        return copies.size() > 0 ? after - before : 0;
+    }
+}
@@ -1,6 +1,7 @@
 package com.genesys.knowledge.classification.classifier;
 
 import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
 import com.genesys.knowledge.domain.Category;
 import org.junit.Before;
 import org.junit.Test;
@@ -81,6 +82,18 @@ public class LrClassifierConstructedWithFixedCategoriesAndFeaturesNumbersTest {
         assertEquals(expectedProbability, actualProbability, 0);
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void testClassifyDocumentWithoutCorpusStatistics() throws ClassifierNotTrainedException {
+        List<List<String>> tokensList = new ArrayList<>();
+        List<String> tokens = Arrays.asList("test", "text");
+        tokensList.add(tokens);
+        trainClassifier(tokens, new Category("category"), tokensList);
+
+        // documents are weighted by statistics of a corpus, which a classifier built without documents doesn't have
+        Learner.Document document = new Learner.Document();
+        classifier.classifyDocument(document);
+    }
+
     private void trainClassifier(List<String> tokens, Category category, Collection<List<String>> documentTokens) {
         for (int trainLoop = 0; trainLoop < 30; trainLoop++) {
             classifier.train(tokens, category, documentTokens);
@@ -0,0 +1,241 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+import org.apache.mahout.math.Matrix;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.function.Functions;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ModelRegistryTest {
+
+    private static final Map<String, byte[]> models = new HashMap<>();
+    private static List<Learner.Document> boaDocuments;
+
+    @BeforeClass
+    public static void serializeModels() throws IOException {
+        for (String knowledgeBaseId : new String[]{"boa", "wellsfargo"}) {
+            List<Learner.Document> documents =
+                    Learner.convertJsonToDocuments("src/main/resources/dataset/" + knowledgeBaseId + ".json");
+            Learner learner = new Learner(new ArrayList<>(documents));
+            learner.trainClassifier(documents);
+            models.put(knowledgeBaseId, learner.getClassifier().serializeModel());
+            if ("boa".equals(knowledgeBaseId)) {
+                boaDocuments = documents;
+            }
+        }
+    }
+
+    @Test
+    public void testLoadModelLazily() throws IOException, ClassifierNotTrainedException {
+        AtomicInteger loads = new AtomicInteger();
+        ModelRegistry registry = new ModelRegistry(knowledgeBaseId -> {
+            loads.incrementAndGet();
+            return models.get(knowledgeBaseId);
+        });
+        assertEquals(0, loads.get());
+
+        LogisticRegressionClassifier classifier = registry.get("boa");
+        assertSame(classifier, registry.get("boa"));
+        assertEquals(1, loads.get());
+        assertEquals(1, registry.getHitCount());
+        assertEquals(1, registry.getMissCount());
+        assertEquals(models.get("boa").length, registry.getResidentBytes());
+        assertNotNull(classifier.classifyDocumentWithMostConfidentCategory(boaDocuments.get(0)));
+    }
+
+    @Test
+    public void testDeduplicateConcurrentLoads() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        ModelRegistry registry = new ModelRegistry(knowledgeBaseId -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            await(loadReleased);
+            return models.get(knowledgeBaseId);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch requestsStarted = new CountDownLatch(8);
+        List<Future<LogisticRegressionClassifier>> classifiers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            classifiers.add(executor.submit(() -> {
+                requestsStarted.countDown();
+                return registry.get("boa");
+            }));
+        }
+        // every request asks for the model while the first load is held
+        loadStarted.await();
+        requestsStarted.await();
+        while (registry.getMissCount() + registry.getHitCount() < 8) {
+            Thread.yield();
+        }
+        loadReleased.countDown();
+        for (Future<LogisticRegressionClassifier> classifier : classifiers) {
+            assertSame(classifiers.get(0).get(), classifier.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, loads.get());
+        System.out.println(registry);
+    }
+
+    @Test
+    public void testConcurrentReadersLeaveModelUntouched() throws Exception {
+        ModelRegistry registry = new ModelRegistry(models::get);
+        LogisticRegressionClassifier classifier = registry.get("boa");
+        OnlineLogisticRegression model = (OnlineLogisticRegression) classifier.getClassifier();
+        Matrix beta = model.getBeta().clone();
+        List<Vector> expected = new ArrayList<>();
+        for (Learner.Document document : boaDocuments) {
+            expected.add(classifier.classifyDocument(document));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<Vector>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                LogisticRegressionClassifier reader = registry.get("boa");
+                List<Vector> scores = new ArrayList<>();
+                for (Learner.Document document : boaDocuments) {
+                    scores.add(reader.classifyDocument(document));
+                }
+                return scores;
+            }));
+        }
+        for (Future<List<Vector>> result : results) {
+            List<Vector> scores = result.get();
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(0, expected.get(i).minus(scores.get(i)).norm(Double.POSITIVE_INFINITY), 0);
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(0, beta.minus(model.getBeta()).aggregate(Functions.MAX, Functions.ABS), 0);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsedModel() throws IOException {
+        ModelRegistry registry = new ModelRegistry(models::get, 1, Long.MAX_VALUE);
+
+        LogisticRegressionClassifier boa = registry.get("boa");
+        registry.get("wellsfargo");
+        assertEquals(1, registry.getResidentModelsNumber());
+        assertEquals(1, registry.getEvictionCount());
+
+        assertNotSame(boa, registry.get("boa"));
+        assertEquals(3, registry.getLoadCount());
+    }
+
+    @Test
+    public void testEvictByResidentBytes() throws IOException {
+        long maxBytes = models.get("boa").length + models.get("wellsfargo").length - 1;
+        ModelRegistry registry = new ModelRegistry(models::get, 10, maxBytes);
+
+        registry.get("boa");
+        registry.get("wellsfargo");
+
+        assertEquals(1, registry.getResidentModelsNumber());
+        assertEquals(models.get("wellsfargo").length, registry.getResidentBytes());
+    }
+
+    @Test
+    public void testKeepOversizedModelOutOfRegistry() throws IOException {
+        ModelRegistry registry = new ModelRegistry(models::get, 10, models.get("boa").length - 1);
+
+        LogisticRegressionClassifier boa = registry.get("boa");
+
+        assertNotNull(boa);
+        assertEquals(0, registry.getResidentModelsNumber());
+        assertEquals(0, registry.getResidentBytes());
+        assertNotSame(boa, registry.get("boa"));
+    }
+
+    @Test
+    public void testInvalidateModelWhileItIsLoaded() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ModelRegistry registry = new ModelRegistry(knowledgeBaseId -> {
+            if (loads.incrementAndGet() == 1) {
+                loadStarted.countDown();
+                await(loadReleased);
+            }
+            return models.get(knowledgeBaseId);
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<LogisticRegressionClassifier> staleLoad = executor.submit(() -> registry.get("boa"));
+        loadStarted.await();
+        registry.invalidate("boa");
+        loadReleased.countDown();
+        LogisticRegressionClassifier stale = staleLoad.get();
+        executor.shutdown();
+
+        assertEquals(0, registry.getResidentModelsNumber());
+        LogisticRegressionClassifier fresh = registry.get("boa");
+        assertNotSame(stale, fresh);
+        assertSame(fresh, registry.get("boa"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCorruptModelIsNotCached() {
+        byte[] model = models.get("boa");
+        byte[] truncatedModel = Arrays.copyOf(model, model.length / 2);
+        ModelRegistry registry = new ModelRegistry(knowledgeBaseId -> truncatedModel);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                registry.get("boa");
+                fail("Truncated model mustn't be loaded.");
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Truncated model: " + e);
+            }
+        }
+        assertEquals(0, registry.getResidentModelsNumber());
+        assertEquals(2, registry.getLoadFailureCount());
+        assertEquals(0, registry.getLoadCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadFailure() throws IOException {
+        ModelRegistry registry = new ModelRegistry(knowledgeBaseId -> {
+            throw new IOException("No model for " + knowledgeBaseId);
+        });
+        try {
+            registry.get("unknown");
+        } finally {
+            assertEquals(1, registry.getLoadFailureCount());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.mahout.math.Vector;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NaiveBayesClassifierTest {
+
+    private static List<Learner.Document> trainingDocuments;
+    private static List<Learner.Document> testDocuments;
+
+    @BeforeClass
+    public static void splitDataset() throws IOException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json");
+        Collections.shuffle(documents, new Random(42));
+        trainingDocuments = documents.subList(0, 4 * documents.size() / 5);
+        testDocuments = documents.subList(4 * documents.size() / 5, documents.size());
+    }
+
+    @Test
+    public void testNaiveBayesPrecisionAndTrainingTime() throws ClassifierNotTrainedException {
+        for (NaiveBayesModel.Variant variant : NaiveBayesModel.Variant.values()) {
+            long start = System.nanoTime();
+            NaiveBayesClassifier classifier = new NaiveBayesClassifier(new ArrayList<>(trainingDocuments), variant,
+                    ClassifierDefaults.DEFAULT_NAIVE_BAYES_NUM_FEATURES);
+            long trainingNanos = System.nanoTime() - start;
+
+            System.out.println(String.format("%-11s trained in %.1f ms, average precision %.4f", variant,
+                    trainingNanos / 1e6, AveragePrecision.evaluate(classifier, testDocuments)));
+        }
+
+        long start = System.nanoTime();
+        Learner learner = new Learner(new ArrayList<>(trainingDocuments));
+        learner.trainClassifier(trainingDocuments);
+        long trainingNanos = System.nanoTime() - start;
+        System.out.println(String.format("%-11s trained in %.1f ms, average precision %.4f", "LR",
+                trainingNanos / 1e6, AveragePrecision.evaluate(learner.getClassifier(), testDocuments)));
+    }
+
+    @Test
+    public void testParallelCountsEqualSequentialOnes() {
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier(new ArrayList<>(trainingDocuments));
+
+        NaiveBayesModel.Counts counts = new NaiveBayesModel.Counts(
+                classifier.getCategoryHandler().getCategoriesQuantity(), classifier.getModel().getNumFeatures());
+        for (Learner.Document document : trainingDocuments) {
+            int[] categoryOrderNumbers = document.getCategories().stream()
+                    .mapToInt(id -> classifier.getCategoryHandler().getCategoryOrderNumbers().get(id))
+                    .toArray();
+            counts.add(classifier.getFeatureVector(document, Collections.emptyList()), categoryOrderNumbers);
+        }
+        NaiveBayesModel sequential = NaiveBayesModel.train(counts, NaiveBayesModel.Variant.MULTINOMIAL,
+                ClassifierDefaults.DEFAULT_NAIVE_BAYES_ALPHA);
+
+        NaiveBayesModel parallel = classifier.getModel();
+        for (int category = 0; category < parallel.getNumCategories(); category++) {
+            assertEquals(sequential.getBias(category), parallel.getBias(category), 1e-12);
+            for (int feature = 0; feature < parallel.getNumFeatures(); feature++) {
+                assertEquals(sequential.getWeight(category, feature), parallel.getWeight(category, feature), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testSerializeModel() throws ClassifierNotTrainedException {
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier(new ArrayList<>(trainingDocuments),
+                NaiveBayesModel.Variant.COMPLEMENT, ClassifierDefaults.DEFAULT_NAIVE_BAYES_NUM_FEATURES);
+
+        NaiveBayesClassifier deserialized = new NaiveBayesClassifier(classifier.serializeModel());
+
+        assertEquals(NaiveBayesModel.Variant.COMPLEMENT, deserialized.getModel().getVariant());
+        assertEquals(classifier.getCategoryHandler().getCategoryIds(), deserialized.getCategoryHandler().getCategoryIds());
+        for (Learner.Document document : testDocuments) {
+            Vector expected = classifier.classifyDocument(document);
+            Vector actual = deserialized.classifyDocument(document);
+            assertEquals(0, expected.minus(actual).norm(Double.POSITIVE_INFINITY), 0);
+            assertEquals(classifier.classifyDocumentWithMostConfidentCategory(document),
+                    deserialized.classifyDocumentWithMostConfidentCategory(document));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountsTooBigForArray() {
+        new NaiveBayesModel.Counts(1 << 12, 1 << 20);
+    }
+
+    @Test
+    public void testReadCorruptModel() throws IOException {
+        int[][] shapes = {{-1, 10}, {10, -1}, {1 << 12, 1 << 20}};
+        for (int[] shape : shapes) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(NaiveBayesModel.Variant.MULTINOMIAL.ordinal());
+            out.writeInt(shape[0]);
+            out.writeInt(shape[1]);
+            try {
+                new NaiveBayesModel().readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+                fail("Model of " + shape[0] + " categories and " + shape[1] + " features mustn't be read.");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid Naive Bayes model"));
+            }
+        }
+    }
+
+    @Test
+    public void testProbabilitiesSumToOne() throws ClassifierNotTrainedException {
+        NaiveBayesClassifier classifier = new NaiveBayesClassifier(new ArrayList<>(trainingDocuments));
+
+        for (Learner.Document document : testDocuments) {
+            Vector probabilities = classifier.classifyDocument(document);
+            assertEquals(classifier.getCategoryHandler().getCategoriesQuantity(), probabilities.size());
+            assertEquals(1, probabilities.zSum(), 1e-9);
+            assertTrue(probabilities.minValue() >= 0);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.genesys.knowledge.classification.classifier;
+
+import com.genesys.knowledge.classification.util.CategoryHandler;
+import com.genesys.knowledge.domain.Category;
+import org.apache.mahout.math.DenseVector;
+import org.apache.mahout.math.Vector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TopCategoriesTest {
+
+    private static final int ITERATIONS = 10_000;
+
+    @Test
+    public void testSelectTopCategories() {
+        CategoryHandler categoryHandler = new CategoryHandler();
+        for (String categoryId : Arrays.asList("a", "b", "c", "d", "e")) {
+            categoryHandler.addCategory(new Category(categoryId));
+        }
+        Vector scores = new DenseVector(new double[]{0.1, 0.3, 0.05, 0.3, 0.25});
+
+        TopCategories topCategories = TopCategories.select(scores, 3, categoryHandler);
+
+        assertArrayEquals(new int[]{1, 3, 4}, topCategories.getIndexes());
+        assertArrayEquals(new double[]{0.3, 0.3, 0.25}, topCategories.getScores(), 0);
+        assertEquals(Arrays.asList("b", "d", "e"), topCategories.getCategoryIds());
+    }
+
+    @Test
+    public void testSelectMoreCategoriesThanExist() {
+        Vector scores = new DenseVector(new double[]{0.2, 0.5, 0.3});
+
+        TopCategories topCategories = TopCategories.select(scores, 10, new CategoryHandler());
+
+        assertArrayEquals(new int[]{1, 2, 0}, topCategories.getIndexes());
+    }
+
+    @Test
+    public void testSelectionMatchesFullSort() {
+        Random random = new Random(42);
+        for (int run = 0; run < 100; run++) {
+            Vector scores = randomScores(1 + random.nextInt(500), random);
+            int numberOfTopResults = 1 + random.nextInt(20);
+
+            TopCategories topCategories = TopCategories.select(scores, numberOfTopResults, new CategoryHandler());
+
+            List<Vector.Element> sorted = sortAll(scores);
+            for (int rank = 0; rank < topCategories.size(); rank++) {
+                assertEquals(sorted.get(rank).get(), topCategories.getScore(rank), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testSelectionTime() {
+        Random random = new Random(42);
+        for (int categoriesNumber : new int[]{100, 1_000, 10_000}) {
+            Vector scores = randomScores(categoriesNumber, random);
+
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                checksum += sortAll(scores).subList(0, 10).get(0).index();
+            }
+            long sortNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                checksum += TopCategories.select(scores, 10, null).getIndex(0);
+            }
+            long heapNanos = System.nanoTime() - start;
+
+            System.out.println(categoriesNumber + " categories, top 10: full sort "
+                    + sortNanos / ITERATIONS + " ns, bounded heap " + heapNanos / ITERATIONS + " ns (" + checksum + ")");
+        }
+    }
+
+    private static Vector randomScores(int size, Random random) {
+        double[] scores = new double[size];
+        for (int i = 0; i < size; i++) {
+            scores[i] = random.nextDouble();
+        }
+        return new DenseVector(scores);
+    }
+
+    /**
+     * Ranks categories the way the top-N classification did before the bounded heap.
+     */
+    private static List<Vector.Element> sortAll(Vector scores) {
+        List<Vector.Element> elements = new ArrayList<>();
+        for (int i = 0; i < scores.size(); i++) {
+            elements.add(scores.getElement(i));
+        }
+        elements.sort((o1, o2) -> Double.compare(o2.get(), o1.get()));
+        return elements;
+    }
+}
@@ -0,0 +1,183 @@
+package com.genesys.knowledge.classification.classifier.engine;
+
+import com.genesys.knowledge.classification.classifier.AveragePrecision;
+import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
+import com.genesys.knowledge.domain.Category;
+import org.apache.mahout.math.Vector;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Trains every engine on the bundled datasets and ranks them by precision, printing training throughput
+ * and scoring latency next to it, so an engine can be chosen for a tenant based on its data.
+ */
+public class ClassifierEngineBenchmarkTest {
+
+    private static final int EPOCHS = 10;
+
+    private final Map<String, ClassifierEngine.Factory> engineFactories = new LinkedHashMap<>();
+
+    {
+        engineFactories.put("logistic-regression", LogisticRegressionEngine::new);
+        engineFactories.put("passive-aggressive", PassiveAggressiveEngine::new);
+        engineFactories.put("linear-svm", LinearSvmEngine::new);
+    }
+
+    @Test
+    public void testRankEngines() throws IOException, ClassifierNotTrainedException {
+        for (String dataset : Arrays.asList("src/main/resources/dataset/boa.json",
+                "src/main/resources/dataset/wellsfargo.json")) {
+            List<Learner.Document> documents = Learner.convertJsonToDocuments(dataset);
+            Collections.shuffle(documents, new Random(42));
+            List<Learner.Document> trainingDocuments = documents.subList(0, 4 * documents.size() / 5);
+            List<Learner.Document> testDocuments = documents.subList(4 * documents.size() / 5, documents.size());
+
+            List<EngineReport> reports = new ArrayList<>();
+            for (Map.Entry<String, ClassifierEngine.Factory> entry : engineFactories.entrySet()) {
+                reports.add(benchmark(entry.getKey(), entry.getValue(), trainingDocuments, testDocuments));
+            }
+            reports.sort(Comparator.comparingDouble((EngineReport report) -> report.avgPrecision).reversed());
+
+            System.out.println(dataset);
+            for (EngineReport report : reports) {
+                System.out.println("  " + report);
+            }
+        }
+    }
+
+    @Test
+    public void testSerializeEngines() throws IOException, ClassifierNotTrainedException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json");
+        for (ClassifierEngine.Factory factory : engineFactories.values()) {
+            EngineClassifier classifier = new EngineClassifier(new ArrayList<>(documents), factory);
+            for (Learner.Document document : documents) {
+                classifier.train(document, document.getCategories().get(0));
+            }
+
+            EngineClassifier deserialized = new EngineClassifier(classifier.serializeModel());
+
+            assertEquals(classifier.getEngine().getClass(), deserialized.getEngine().getClass());
+            for (Learner.Document document : documents.subList(0, 100)) {
+                Vector expected = classifier.classifyDocument(document);
+                Vector actual = deserialized.classifyDocument(document);
+                assertEquals(1, actual.zSum(), 1e-9);
+                assertEquals(0, expected.minus(actual).norm(Double.POSITIVE_INFINITY), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testReadCorruptLinearSvmEngine() throws IOException {
+        // negative number of categories, and a number of weights overflowing int
+        assertCorruptLinearSvmEngine(-1, 10);
+        assertCorruptLinearSvmEngine(65536, 65536);
+        // fewer weights than the header promises
+        assertCorruptLinearSvmEngine(2, 10);
+    }
+
+    private static void assertCorruptLinearSvmEngine(int numCategories, int numFeatures) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(numCategories);
+        out.writeInt(numFeatures);
+        out.writeDouble(0.1);
+        out.writeDouble(1e-4);
+        out.writeLong(0);
+        out.writeDouble(1);
+        LinearSvmEngine engine = new LinearSvmEngine();
+        try {
+            engine.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Corrupt engine mustn't be read.");
+        } catch (IOException e) {
+            System.out.println("Corrupt engine: " + e);
+        }
+        assertEquals(0, engine.getNumCategories());
+    }
+
+    private EngineReport benchmark(String name, ClassifierEngine.Factory factory,
+                                   List<Learner.Document> trainingDocuments, List<Learner.Document> testDocuments)
+            throws ClassifierNotTrainedException {
+        EngineClassifier classifier = new EngineClassifier(new ArrayList<>(trainingDocuments), factory);
+
+        // documents are encoded once, so training time is the time of the engine itself
+        List<Vector> featureVectors = new ArrayList<>(trainingDocuments.size());
+        for (Learner.Document document : trainingDocuments) {
+            featureVectors.add(classifier.getFeatureVector(document, Collections.emptyList()));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < trainingDocuments.size(); i++) {
+            order.add(i);
+        }
+
+        Random random = new Random(42);
+        long examples = 0;
+        long trainingStart = System.nanoTime();
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            Collections.shuffle(order, random);
+            for (int i : order) {
+                for (String categoryId : trainingDocuments.get(i).getCategories()) {
+                    classifier.train(featureVectors.get(i), new Category(categoryId));
+                    examples++;
+                }
+            }
+        }
+        long trainingNanos = System.nanoTime() - trainingStart;
+
+        long[] latencies = new long[testDocuments.size()];
+        double sumAvgPrecision = 0;
+        for (int i = 0; i < testDocuments.size(); i++) {
+            Learner.Document document = testDocuments.get(i);
+            long start = System.nanoTime();
+            List<String> classifiedCategoryIds = classifier.classifyDocumentTopCategories(document,
+                    classifier.getCategoryHandler().getCategoriesQuantity()).getCategoryIds();
+            latencies[i] = System.nanoTime() - start;
+            sumAvgPrecision += AveragePrecision.of(document.getCategories(), classifiedCategoryIds);
+        }
+        Arrays.sort(latencies);
+        assertTrue(latencies.length > 0);
+
+        EngineReport report = new EngineReport();
+        report.name = name;
+        report.avgPrecision = sumAvgPrecision / testDocuments.size();
+        report.trainingThroughput = examples / (trainingNanos / 1e9);
+        report.p99LatencyMicros = latencies[(int) Math.ceil(0.99 * latencies.length) - 1] / 1e3;
+        report.modelSizeBytes = classifier.getEngine().estimateSizeInBytes();
+        report.threadSafety = classifier.getEngine().getThreadSafety();
+        return report;
+    }
+
+    private static class EngineReport {
+
+        private String name;
+        private double avgPrecision;
+        private double trainingThroughput;
+        private double p99LatencyMicros;
+        private long modelSizeBytes;
+        private ClassifierEngine.ThreadSafety threadSafety;
+
+        @Override
+        public String toString() {
+            return String.format("%-20s average precision %.4f, training %.0f examples/s, p99 scoring %.1f us, "
+                    + "model %d KB, thread safety %s", name, avgPrecision, trainingThroughput, p99LatencyMicros,
+                    modelSizeBytes / 1024, threadSafety);
+        }
+    }
+}
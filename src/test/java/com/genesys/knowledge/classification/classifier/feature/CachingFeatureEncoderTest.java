@@ -0,0 +1,209 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.learner.Learner;
+import com.genesys.knowledge.classification.util.Vocabulary;
+import org.apache.mahout.math.RandomAccessSparseVector;
+import org.apache.mahout.math.Vector;
+import org.apache.mahout.vectorizer.encoders.ConstantValueEncoder;
+import org.apache.mahout.vectorizer.encoders.FeatureVectorEncoder;
+import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CachingFeatureEncoderTest {
+
+    private static List<List<String>> documentTokens;
+
+    @BeforeClass
+    public static void readTokens() throws IOException {
+        documentTokens = new ArrayList<>();
+        for (Learner.Document document : Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json")) {
+            List<String> tokens = new ArrayList<>(document.getTitle().getTokens());
+            tokens.addAll(document.getBody().getTokens());
+            documentTokens.add(tokens);
+        }
+    }
+
+    @Test
+    public void testVectorsEqualUncachedEncoder() {
+        for (int probes : new int[]{1, 2, 3}) {
+            for (int numFeatures : new int[]{7, 1000, 1 << 18}) {
+                StaticWordValueEncoder encoder = createEncoder(probes);
+                CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(createEncoder(probes), 1 << 16);
+                Random random = new Random(numFeatures);
+
+                // twice, so the second pass is served from the cache
+                for (int pass = 0; pass < 2; pass++) {
+                    for (List<String> tokens : documentTokens) {
+                        Vector expected = new RandomAccessSparseVector(numFeatures);
+                        Vector actual = new RandomAccessSparseVector(numFeatures);
+                        for (String token : tokens) {
+                            double weight = random.nextDouble();
+                            encoder.addToVector(token, weight, expected);
+                            cachingEncoder.addToVector(token, weight, actual);
+                        }
+                        assertBitIdentical(expected, actual);
+                    }
+                }
+                assertTrue(cachingEncoder.getHits() > cachingEncoder.getMisses());
+            }
+        }
+    }
+
+    @Test
+    public void testVectorsOfAnotherSizeAreEncodedAnew() {
+        CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(createEncoder(1), 16);
+        for (int numFeatures : new int[]{100, 1000, 100}) {
+            Vector expected = new RandomAccessSparseVector(numFeatures);
+            Vector actual = new RandomAccessSparseVector(numFeatures);
+            createEncoder(1).addToVector("token", 0.5, expected);
+            cachingEncoder.addToVector("token", 0.5, actual);
+            assertBitIdentical(expected, actual);
+        }
+        assertEquals(3, cachingEncoder.getMisses());
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(createEncoder(1), 100);
+        for (List<String> tokens : documentTokens) {
+            Vector vector = new RandomAccessSparseVector(1000);
+            for (String token : tokens) {
+                cachingEncoder.addToVector(token, 1, vector);
+            }
+        }
+        assertEquals(100, cachingEncoder.size());
+    }
+
+    @Test
+    public void testRecentlyUsedTermsStayCached() {
+        CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(createEncoder(1), 100);
+        Vector vector = new RandomAccessSparseVector(1000);
+        for (int i = 0; i < 10_000; i++) {
+            cachingEncoder.addToVector("frequent", 1, vector);
+            cachingEncoder.addToVector("rare" + i, 1, vector);
+        }
+        assertTrue(cachingEncoder.size() <= 100);
+        // the frequent term is hashed only the first time, however many rare terms evict each other
+        assertEquals(9_999, cachingEncoder.getHits());
+    }
+
+    @Test
+    public void testHashForProbeAnsweredFromRecordedProbes() {
+        for (int probes : new int[]{1, 3}) {
+            CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(createEncoder(probes), 16);
+            for (String token : documentTokens.get(0)) {
+                Vector expected = new RandomAccessSparseVector(1000);
+                createEncoder(probes).addToVector(token, 1, expected);
+
+                byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+                for (int probe = 0; probe < probes; probe++) {
+                    int index = cachingEncoder.hashForProbe(bytes, 1000, cachingEncoder.getName(), probe);
+                    assertTrue(token, expected.getQuick(index) != 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTermIdEncoderBypassesCache() {
+        CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(createEncoder(2), 1 << 16);
+        Vocabulary vocabulary = new Vocabulary();
+        TermIdFeatureEncoder termIdEncoder = new TermIdFeatureEncoder(cachingEncoder, vocabulary, 1000);
+        for (String token : documentTokens.get(0)) {
+            Vector expected = new RandomAccessSparseVector(1000);
+            Vector actual = new RandomAccessSparseVector(1000);
+            createEncoder(2).addToVector(token, 0.7, expected);
+            termIdEncoder.addToVector(vocabulary.intern(token), 0.7, actual);
+            assertBitIdentical(expected, actual);
+        }
+        assertEquals(0, cachingEncoder.size());
+    }
+
+    @Test
+    public void testConstantEncoderAndTracing() {
+        CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(
+                new ConstantValueEncoder(ClassifierDefaults.DEFAULT_INTERCEPT_ENCODER_NAME), 16);
+        Vector expected = new RandomAccessSparseVector(100);
+        Vector actual = new RandomAccessSparseVector(100);
+        ConstantValueEncoder encoder = new ConstantValueEncoder(ClassifierDefaults.DEFAULT_INTERCEPT_ENCODER_NAME);
+        for (int i = 0; i < 2; i++) {
+            encoder.addToVector("1", 0.3, expected);
+            cachingEncoder.addToVector("1", 0.3, actual);
+        }
+        assertBitIdentical(expected, actual);
+
+        // a trace dictionary gets the term even though it's cached
+        Map<String, Set<Integer>> traceDictionary = new HashMap<>();
+        cachingEncoder.setTraceDictionary(traceDictionary);
+        cachingEncoder.addToVector("1", 0.3, actual);
+        assertFalse(traceDictionary.isEmpty());
+    }
+
+    @Test
+    public void testEncodingThroughput() {
+        int numFeatures = 1 << 16;
+        int passes = 20;
+        for (int probes : new int[]{1, 2}) {
+            FeatureVectorEncoder encoder = createEncoder(probes);
+            CachingFeatureEncoder cachingEncoder = new CachingFeatureEncoder(createEncoder(probes), 1 << 16);
+            // warm up both
+            encode(encoder, numFeatures, 2);
+            encode(cachingEncoder, numFeatures, 2);
+
+            long start = System.nanoTime();
+            long tokens = encode(encoder, numFeatures, passes);
+            double uncachedTokensPerSecond = tokens / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            encode(cachingEncoder, numFeatures, passes);
+            double cachedTokensPerSecond = tokens / ((System.nanoTime() - start) / 1e9);
+
+            System.out.println(String.format("%d probes: uncached %.0f tokens/s, cached %.0f tokens/s, %.1fx, "
+                            + "%d terms cached", probes, uncachedTokensPerSecond, cachedTokensPerSecond,
+                    cachedTokensPerSecond / uncachedTokensPerSecond, cachingEncoder.size()));
+        }
+    }
+
+    private static long encode(FeatureVectorEncoder encoder, int numFeatures, int passes) {
+        long tokensNumber = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            for (List<String> tokens : documentTokens) {
+                Vector vector = new RandomAccessSparseVector(numFeatures);
+                for (String token : tokens) {
+                    encoder.addToVector(token, 1, vector);
+                }
+                tokensNumber += tokens.size();
+            }
+        }
+        return tokensNumber;
+    }
+
+    private static StaticWordValueEncoder createEncoder(int probes) {
+        StaticWordValueEncoder encoder = new StaticWordValueEncoder(ClassifierDefaults.DEFAULT_FEATURE_ENCODER_NAME);
+        encoder.setProbes(probes);
+        return encoder;
+    }
+
+    private static void assertBitIdentical(Vector expected, Vector actual) {
+        assertEquals(expected.getNumNonZeroElements(), actual.getNumNonZeroElements());
+        for (Vector.Element element : expected.nonZeroes()) {
+            assertEquals(Double.doubleToLongBits(element.get()),
+                    Double.doubleToLongBits(actual.getQuick(element.index())));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureSpaceSizerTest {
+
+    @Test
+    public void testEstimateVocabularySize() {
+        for (int vocabularySize : new int[]{10, 1_000, 20_000, 1_000_000}) {
+            FeatureSpaceSizer sizer = new FeatureSpaceSizer();
+            // every term is added twice, repeated terms mustn't be counted
+            for (int repeat = 0; repeat < 2; repeat++) {
+                for (int i = 0; i < vocabularySize; i++) {
+                    sizer.addTerm("term" + i);
+                }
+            }
+
+            long estimate = sizer.estimateVocabularySize();
+            System.out.println(vocabularySize + " terms estimated as " + estimate);
+            assertEquals(vocabularySize, estimate, Math.max(1, 0.03 * vocabularySize));
+        }
+    }
+
+    @Test
+    public void testMergedSketchesCountUnion() {
+        FeatureSpaceSizer first = new FeatureSpaceSizer();
+        FeatureSpaceSizer second = new FeatureSpaceSizer();
+        FeatureSpaceSizer whole = new FeatureSpaceSizer();
+        for (int i = 0; i < 30_000; i++) {
+            (i < 20_000 ? first : second).addTerm("term" + i);
+            if (i >= 10_000 && i < 20_000) {
+                second.addTerm("term" + i);
+            }
+            whole.addTerm("term" + i);
+        }
+
+        assertEquals(whole.estimateVocabularySize(), first.merge(second).estimateVocabularySize());
+    }
+
+    @Test
+    public void testNumFeaturesMeetsTargetCollisionRate() throws IOException {
+        List<String> terms = new ArrayList<>();
+        for (Learner.Document document : Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json")) {
+            terms.addAll(document.getTitle().getTokens());
+            terms.addAll(document.getBody().getTokens());
+        }
+        Set<String> vocabulary = new HashSet<>(terms);
+        FeatureSpaceSizer sizer = new FeatureSpaceSizer().addTerms(terms);
+        System.out.println("Vocabulary of " + vocabulary.size() + " terms estimated as "
+                + sizer.estimateVocabularySize());
+
+        StaticWordValueEncoder encoder = new StaticWordValueEncoder(ClassifierDefaults.DEFAULT_FEATURE_ENCODER_NAME);
+        for (double collisionRate : new double[]{0.5, 0.2, 0.1, 0.05, 0.01}) {
+            int numFeatures = sizer.numFeatures(collisionRate);
+            FeatureSpaceSizer.CollisionStatistics expected =
+                    FeatureSpaceSizer.expectedCollisions(vocabulary.size(), numFeatures);
+            FeatureSpaceSizer.CollisionStatistics actual =
+                    FeatureSpaceSizer.measureCollisions(vocabulary, encoder, numFeatures);
+            System.out.println(String.format("Target %.2f: expected %s", collisionRate, expected));
+            System.out.println(String.format("Target %.2f: measured %s", collisionRate, actual));
+
+            assertEquals(vocabulary.size(), actual.getVocabularySize());
+            assertEquals(collisionRate, expected.getCollisionRate(), 0.1 * collisionRate + 0.01);
+            assertEquals(collisionRate, actual.getCollisionRate(), 0.3 * collisionRate + 0.01);
+        }
+    }
+
+    @Test
+    public void testNumFeaturesFormula() {
+        // m = n / -ln(1 - r)
+        assertEquals((int) Math.ceil(10_000 / -Math.log(0.9)), FeatureSpaceSizer.numFeatures(10_000, 0.1));
+        assertEquals(ClassifierDefaults.DEFAULT_NUM_FEATURES, FeatureSpaceSizer.numFeatures(5, 0.1));
+        assertEquals(ClassifierDefaults.DEFAULT_MAX_NUM_FEATURES, FeatureSpaceSizer.numFeatures(100_000_000, 0.1));
+        assertTrue(FeatureSpaceSizer.numFeatures(10_000, 0.01) > FeatureSpaceSizer.numFeatures(10_000, 0.1));
+    }
+
+    @Test
+    public void testNumFeaturesFitMemoryBudget() {
+        // a small vocabulary is sized by the collision rate alone
+        assertEquals(FeatureSpaceSizer.numFeatures(10_000, 0.1), FeatureSpaceSizer.numFeatures(10_000, 0.1, 10, 4));
+
+        int numFeatures = FeatureSpaceSizer.numFeatures(100_000_000, 0.1, 100, 16);
+        System.out.println("100 categories, 16 model copies: " + numFeatures + " features");
+        assertTrue(numFeatures < ClassifierDefaults.DEFAULT_MAX_NUM_FEATURES);
+        assertTrue(8L * 101 * 16 * numFeatures <= ClassifierDefaults.DEFAULT_MAX_MODEL_WEIGHTS_BYTES);
+        // more copies of a model get fewer features
+        assertTrue(FeatureSpaceSizer.numFeatures(100_000_000, 0.1, 100, 32) < numFeatures);
+        assertEquals(ClassifierDefaults.DEFAULT_NUM_FEATURES,
+                FeatureSpaceSizer.numFeatures(100_000_000, 0.1, Integer.MAX_VALUE / 16, 16));
+    }
+}
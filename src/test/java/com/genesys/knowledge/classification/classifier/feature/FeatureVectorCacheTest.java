@@ -0,0 +1,71 @@
+package com.genesys.knowledge.classification.classifier.feature;
+
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.mahout.math.Vector;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureVectorCacheTest {
+
+    private static List<Learner.Document> documents;
+    private static LogisticRegressionClassifier classifier;
+
+    @BeforeClass
+    public static void createClassifier() throws IOException {
+        documents = Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json");
+        classifier = new LogisticRegressionClassifier(new ArrayList<>(documents));
+    }
+
+    @Test
+    public void testCachedVectorsEqualEncodedOnes() {
+        FeatureVectorCache cache = new FeatureVectorCache(classifier, documents, Long.MAX_VALUE);
+
+        assertEquals(documents.size(), cache.getCachedDocumentsNumber());
+        for (Learner.Document document : documents) {
+            assertVectorsEqual(classifier.getFeatureVector(document, documents), cache.getFeatureVector(document));
+        }
+    }
+
+    @Test
+    public void testDocumentsBeyondBudgetAreEncodedOnRequest() {
+        long totalNonZeros = 0;
+        for (Learner.Document document : documents) {
+            totalNonZeros += classifier.getFeatureVector(document, documents).getNumNonZeroElements();
+        }
+        FeatureVectorCache cache = new FeatureVectorCache(classifier, documents, totalNonZeros / 2);
+
+        assertTrue(cache.getCachedDocumentsNumber() > 0);
+        assertTrue(cache.getCachedDocumentsNumber() < documents.size());
+        assertTrue(cache.getCachedNonZeros() <= cache.getMaxCachedNonZeros());
+        for (Learner.Document document : documents) {
+            assertVectorsEqual(classifier.getFeatureVector(document, documents), cache.getFeatureVector(document));
+        }
+    }
+
+    @Test
+    public void testEmptyBudgetCachesNothing() {
+        FeatureVectorCache cache = new FeatureVectorCache(classifier, documents, 0);
+
+        assertEquals(0, cache.getCachedDocumentsNumber());
+        assertEquals(0, cache.getCachedNonZeros());
+        Learner.Document document = documents.get(0);
+        assertVectorsEqual(classifier.getFeatureVector(document, documents), cache.getFeatureVector(document));
+    }
+
+    private static void assertVectorsEqual(Vector expected, Vector actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getNumNonZeroElements(), actual.getNumNonZeroElements());
+        for (Vector.Element element : expected.nonZeroes()) {
+            assertEquals(Double.doubleToLongBits(element.get()),
+                    Double.doubleToLongBits(actual.getQuick(element.index())));
+        }
+    }
+}
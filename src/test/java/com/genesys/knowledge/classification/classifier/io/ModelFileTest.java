@@ -0,0 +1,260 @@
+package com.genesys.knowledge.classification.classifier.io;
+
+import com.genesys.knowledge.classification.classifier.FrozenLinearModel;
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.WeightPrecision;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.mahout.math.Vector;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModelFileTest {
+
+    private static final int ITERATIONS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Learner.Document> documents;
+    private static LogisticRegressionClassifier classifier;
+
+    @BeforeClass
+    public static void trainClassifier() throws IOException {
+        documents = Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json");
+        Learner learner = new Learner(new ArrayList<>(documents));
+        learner.trainClassifier(documents);
+        classifier = learner.getClassifier();
+    }
+
+    @Test
+    public void testSaveAndLoadModel() throws IOException, ClassifierNotTrainedException {
+        Path file = folder.getRoot().toPath().resolve("boa.model");
+        ModelFile.save(classifier, file);
+
+        LogisticRegressionClassifier loaded = ModelFile.load(file);
+
+        assertFalse(loaded.isFrozen());
+        assertEquals(classifier.getCategoryHandler().getCategoryIds(), loaded.getCategoryHandler().getCategoryIds());
+        for (Learner.Document document : documents) {
+            assertEquals(classifier.classifyDocumentWithMostConfidentCategory(document),
+                    loaded.classifyDocumentWithMostConfidentCategory(document));
+        }
+        // only the model file is left, the temporary one is moved over it
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testSaveAndLoadFrozenModel() throws IOException, ClassifierNotTrainedException {
+        Path file = folder.getRoot().toPath().resolve("boa.model");
+        LogisticRegressionClassifier frozen = classifier.freeze(WeightPrecision.INT8);
+        ModelFile.save(frozen, file);
+
+        LogisticRegressionClassifier loaded = ModelFile.load(file);
+
+        assertTrue(loaded.isFrozen());
+        Vector expected = frozen.classifyDocument(documents.get(0));
+        assertEquals(0, expected.minus(loaded.classifyDocument(documents.get(0))).norm(Double.POSITIVE_INFINITY), 0);
+    }
+
+    @Test
+    public void testMapFrozenModel() throws IOException, ClassifierNotTrainedException {
+        for (WeightPrecision precision : WeightPrecision.values()) {
+            Path file = folder.getRoot().toPath().resolve("boa-" + precision + ".model");
+            ModelFile.save(classifier.freeze(precision), file);
+
+            LogisticRegressionClassifier loaded = ModelFile.load(file);
+            LogisticRegressionClassifier mapped = ModelFile.map(file);
+
+            assertTrue(mapped.isFrozen());
+            for (Learner.Document document : documents) {
+                Vector expected = loaded.classifyDocument(document);
+                assertEquals(0, expected.minus(mapped.classifyDocument(document)).norm(Double.POSITIVE_INFINITY), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMapTruncatedFile() throws IOException {
+        for (WeightPrecision precision : WeightPrecision.values()) {
+            Path file = folder.getRoot().toPath().resolve("boa-" + precision + ".model");
+            ModelFile.save(classifier.freeze(precision), file);
+            byte[] model = Files.readAllBytes(file);
+
+            // cut off within the weights and halfway through the file
+            for (int length : new int[]{model.length - 1, model.length / 2}) {
+                Files.write(file, Arrays.copyOf(model, length));
+                try {
+                    ModelFile.map(file);
+                    fail("Truncated model file mustn't be mapped.");
+                } catch (IOException e) {
+                    System.out.println(precision + " model truncated to " + length + " bytes: " + e);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStartupTimeWith100Models() throws IOException, ClassifierNotTrainedException {
+        int modelsNumber = 100;
+        LogisticRegressionClassifier frozen = classifier.freeze();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < modelsNumber; i++) {
+            Path file = folder.getRoot().toPath().resolve("kb-" + i + ".model");
+            ModelFile.save(frozen, file);
+            files.add(file);
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        List<LogisticRegressionClassifier> classifiers = new ArrayList<>();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        for (Path file : files) {
+            classifiers.add(ModelFile.load(file));
+        }
+        long loadNanos = System.nanoTime() - start;
+        System.gc();
+        long loadHeap = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+        long loadedModelBytes = ((FrozenLinearModel) classifiers.get(0).getClassifier()).estimateSizeInBytes();
+        classifiers.clear();
+
+        System.gc();
+        heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        start = System.nanoTime();
+        for (Path file : files) {
+            classifiers.add(ModelFile.map(file));
+        }
+        long mapNanos = System.nanoTime() - start;
+        System.gc();
+        long mapHeap = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+
+        // the first classification of a mapped model pages its weights in
+        start = System.nanoTime();
+        for (LogisticRegressionClassifier mapped : classifiers) {
+            mapped.classifyDocument(documents.get(0));
+        }
+        long firstClassificationNanos = System.nanoTime() - start;
+
+        System.out.println(modelsNumber + " models of " + Files.size(files.get(0)) + " bytes");
+        System.out.println("Loaded onto heap in " + loadNanos / 1e6 + " ms, heap " + loadHeap / 1024 + " KB");
+        System.out.println("Mapped in " + mapNanos / 1e6 + " ms, heap " + mapHeap / 1024 + " KB, first classifications "
+                + firstClassificationNanos / 1e6 + " ms");
+        // mapped models keep their weights off the heap, only their headers are read when they're opened
+        for (LogisticRegressionClassifier mapped : classifiers) {
+            assertTrue(((FrozenLinearModel) mapped.getClassifier()).estimateSizeInBytes() < loadedModelBytes / 10);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadUnsupportedFile() throws IOException {
+        Path file = folder.newFile("not-a-model").toPath();
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6});
+
+        ModelFile.load(file);
+    }
+
+    @Test
+    public void testLoadCorruptFiles() throws IOException {
+        // negative number of categories
+        assertCorrupt(writeHeader(-1).toByteArray());
+
+        // unknown weight precision
+        ByteArrayOutputStream bytes = writeHeader(0);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(false);
+        out.writeByte(ModelFile.FROZEN_LINEAR_MODEL);
+        out.writeInt(2);
+        out.writeInt(1);
+        out.writeByte(WeightPrecision.values().length);
+        assertCorrupt(bytes.toByteArray());
+
+        // number of weights not matching the model
+        bytes = writeHeader(0);
+        out = new DataOutputStream(bytes);
+        out.writeBoolean(false);
+        out.writeByte(ModelFile.FROZEN_LINEAR_MODEL);
+        out.writeInt(3);
+        out.writeInt(10);
+        out.writeByte(WeightPrecision.DOUBLE.ordinal());
+        out.writeInt(2);
+        out.writeInt(-4);
+        assertCorrupt(bytes.toByteArray());
+
+        // truncated model
+        Path file = folder.getRoot().toPath().resolve("boa.model");
+        ModelFile.save(classifier.freeze(), file);
+        byte[] model = Files.readAllBytes(file);
+        assertCorrupt(Arrays.copyOf(model, model.length - 8));
+    }
+
+    private static ByteArrayOutputStream writeHeader(int categoriesNumber) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(ModelFile.MAGIC);
+        out.writeShort(ModelFile.VERSION);
+        out.writeUTF(ClassifierDefaults.DEFAULT_FEATURE_ENCODER_NAME);
+        out.writeInt(1);
+        out.writeUTF(ClassifierDefaults.DEFAULT_INTERCEPT_ENCODER_NAME);
+        out.writeUTF(ClassifierDefaults.DEFAULT_TF_TYPE.name());
+        out.writeInt(categoriesNumber);
+        return bytes;
+    }
+
+    private void assertCorrupt(byte[] content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("corrupt.model");
+        Files.write(file, content);
+        try {
+            ModelFile.load(file);
+            fail("Corrupt model file mustn't be loaded.");
+        } catch (IOException e) {
+            System.out.println("Corrupt model file: " + e);
+        }
+    }
+
+    @Test
+    public void testLoadTime() throws IOException {
+        Path modelFile = folder.getRoot().toPath().resolve("boa.model");
+        ModelFile.save(classifier, modelFile);
+        Path serializedFile = folder.getRoot().toPath().resolve("boa.mahout");
+        Files.write(serializedFile, classifier.serializeModel());
+
+        // warm up both
+        new LogisticRegressionClassifier(Files.readAllBytes(serializedFile));
+        ModelFile.load(modelFile);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            new LogisticRegressionClassifier(Files.readAllBytes(serializedFile));
+        }
+        long serializedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            ModelFile.load(modelFile);
+        }
+        long modelFileNanos = System.nanoTime() - start;
+
+        System.out.println("byte[] model (" + Files.size(serializedFile) + " bytes): "
+                + serializedNanos / ITERATIONS / 1e6 + " ms per load");
+        System.out.println("Model file (" + Files.size(modelFile) + " bytes): "
+                + modelFileNanos / ITERATIONS / 1e6 + " ms per load");
+    }
+}
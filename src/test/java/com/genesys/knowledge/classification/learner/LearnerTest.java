@@ -1,17 +1,45 @@
 package com.genesys.knowledge.classification.learner;
 
+import com.genesys.knowledge.classification.classifier.AveragePrecision;
+import com.genesys.knowledge.classification.classifier.BatchClassificationResult;
+import com.genesys.knowledge.classification.classifier.FrozenLinearModel;
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.WeightPrecision;
+import com.genesys.knowledge.classification.classifier.feature.CorpusStatistics;
+import com.genesys.knowledge.classification.classifier.feature.FeatureSpaceSizer;
+import com.genesys.knowledge.classification.defaults.ClassifierDefaults;
+import com.genesys.knowledge.classification.defaults.LearnerDefaults;
 import com.genesys.knowledge.classification.exception.ClassifierNotTrainedException;
 import com.genesys.knowledge.classification.util.CategoryHandler;
+import com.genesys.knowledge.classification.util.DocumentHandler;
+import com.genesys.knowledge.classification.util.Vocabulary;
 import com.genesys.knowledge.domain.Category;
+import org.apache.mahout.classifier.sgd.OnlineLogisticRegression;
+import org.apache.mahout.math.Matrix;
 import org.apache.mahout.math.Vector;
+import org.apache.mahout.math.function.Functions;
+import org.apache.mahout.vectorizer.encoders.StaticWordValueEncoder;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Created by rhorilyi on 25.07.2017.
@@ -42,6 +70,52 @@ public class LearnerTest {
         }
     }
 
+    @Test
+    public void testConvertJsonToDocumentsInternsTokens() throws IOException {
+        Vocabulary vocabulary = new Vocabulary();
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation, vocabulary);
+
+        Learner.Document document = documents.get(0);
+        assertSame(vocabulary, document.getVocabulary());
+        assertEquals(Arrays.asList("notice", "say", "federal", "law", "give", "consumer", "right", "limit",
+                "share", "way", "share", "law"), document.getTitle().getTokens());
+        int[] titleTokenIds = document.getTitle().getTokenIds();
+        assertEquals(titleTokenIds[8], titleTokenIds[10]); // both are "share"
+        // interned tokens are resolved through a view created once
+        assertSame(document.getTitle().getTokens(), document.getTitle().getTokens());
+    }
+
+    @Test
+    public void testDocumentReaderStreamsDataset() throws IOException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+
+        try (DocumentReader reader = new DocumentReader(new File(datasetLocation), null, true)) {
+            int documentsNumber = 0;
+            while (reader.hasNext()) {
+                Learner.Document streamedDocument = reader.next();
+                Learner.Document document = documents.get(documentsNumber++);
+
+                assertEquals(document.getId(), streamedDocument.getId());
+                assertEquals(document.getCategories(), streamedDocument.getCategories());
+                assertEquals(document.getTitle().getTokens(), streamedDocument.getTitle().getTokens());
+                assertEquals(document.getBody().getTokens(), streamedDocument.getBody().getTokens());
+                assertNull(streamedDocument.getBody().getOriginal());
+            }
+            assertEquals(documents.size(), documentsNumber);
+        }
+    }
+
+    @Test
+    public void testTrainClassifierWithStreamedDataset() throws IOException, ClassifierNotTrainedException {
+        Learner learner = Learner.fromDataset(new File(datasetLocation));
+        learner.trainClassifier(new File(datasetLocation));
+
+        assertTrue(learner.getClassifier().isTrained());
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation,
+                learner.getClassifier().getCorpusStatistics().getVocabulary());
+        assertNotNull(learner.classifyDocumentWithMostConfidentCategory(documents.get(0)));
+    }
+
     @Test
     public void testLearner() throws IOException, ClassifierNotTrainedException {
         List<Learner.Document> allDocuments = Learner.convertJsonToDocuments(datasetLocation);
@@ -74,7 +148,7 @@ public class LearnerTest {
             // 2
             evaluateAllConfidenceScoresPrecision(learner, testDocuments, allConfidenceScoresStatistics);
             // 3
-            avgPrecision += evaluateAveragePrecision(learner, testDocuments);
+            avgPrecision += AveragePrecision.evaluate(learner.getClassifier(), testDocuments);
         }
 
         // analyze evaluation
@@ -83,6 +157,71 @@ public class LearnerTest {
         analyzeAveragePrecisionEvaluation(avgPrecision);
     }
 
+    @Test
+    public void testFeatureSpaceSizing() throws IOException, ClassifierNotTrainedException {
+        List<Learner.Document> allDocuments = Learner.convertJsonToDocuments(datasetLocation);
+        Collections.shuffle(allDocuments, new Random(42));
+        List<Learner.Document> trainingDocuments = allDocuments.subList(0, 4 * allDocuments.size() / 5);
+        List<Learner.Document> testDocuments = allDocuments.subList(4 * allDocuments.size() / 5, allDocuments.size());
+
+        Set<String> vocabulary = new HashSet<>();
+        for (Learner.Document document : trainingDocuments) {
+            vocabulary.addAll(document.getTitle().getTokens());
+            vocabulary.addAll(document.getBody().getTokens());
+        }
+        int longestDocumentSize = DocumentHandler.findMaxNumberOfTokens(new ArrayList<>(trainingDocuments));
+        int sizedFeaturesNumber = new Learner(new ArrayList<>(trainingDocuments)).getClassifier().getNumFeatures();
+
+        int runsNumber = 10;
+        for (int featuresNumber : new int[]{longestDocumentSize, sizedFeaturesNumber}) {
+            double avgPrecision = 0;
+            long modelBytes = 0;
+            for (int run = 0; run < runsNumber; run++) {
+                Learner learner = new Learner(new ArrayList<>(trainingDocuments), featuresNumber);
+                learner.trainClassifier(trainingDocuments);
+                avgPrecision += AveragePrecision.evaluate(learner.getClassifier(), testDocuments);
+
+                // coefficients of all categories but the first one, plus per-feature update steps and counts
+                OnlineLogisticRegression model = (OnlineLogisticRegression) learner.getClassifier().getClassifier();
+                modelBytes = 8L * (model.numCategories() + 1) * model.numFeatures();
+            }
+
+            System.out.println(String.format("%s: %s, model %d KB, average precision %.4f",
+                    featuresNumber == longestDocumentSize ? "Longest document" : "Vocabulary sized",
+                    FeatureSpaceSizer.measureCollisions(vocabulary, new StaticWordValueEncoder(
+                            ClassifierDefaults.DEFAULT_FEATURE_ENCODER_NAME), featuresNumber),
+                    modelBytes / 1024, avgPrecision / runsNumber));
+        }
+        assertTrue(sizedFeaturesNumber > longestDocumentSize);
+    }
+
+    @Test
+    public void testParallelTrainingThroughput() throws IOException, ClassifierNotTrainedException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        int examplesNumber = 0;
+        for (Learner.Document document : documents) {
+            examplesNumber += document.getCategories().size();
+        }
+        examplesNumber *= LearnerDefaults.DEFAULT_EPOCHS_NUMBER;
+
+        Learner sequentialLearner = new Learner(new ArrayList<>(documents));
+        long start = System.nanoTime();
+        sequentialLearner.trainClassifier(documents);
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+        Learner parallelLearner = new Learner(new ArrayList<>(documents));
+        start = System.nanoTime();
+        parallelLearner.trainClassifier(documents, LearnerDefaults.DEFAULT_TRAINING_THREADS_NUMBER);
+        double parallelSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Sequential training: " + examplesNumber / sequentialSeconds + " examples/s");
+        System.out.println("Parallel training (" + LearnerDefaults.DEFAULT_TRAINING_THREADS_NUMBER + " threads): "
+                + examplesNumber / parallelSeconds + " examples/s");
+
+        assertTrue(parallelLearner.getClassifier().isTrained());
+        assertNotNull(parallelLearner.classifyDocumentWithMostConfidentCategory(documents.get(0)));
+    }
+
     private int evaluateBestConfidentCategoriesPrecision(Learner learner, List<Learner.Document> documents)
             throws ClassifierNotTrainedException {
         int numberOfCorrectClassificationsPerRun = 0;
@@ -121,21 +260,245 @@ public class LearnerTest {
         }
     }
 
-    private double evaluateAveragePrecision(Learner learner, List<Learner.Document> testDocuments)
-            throws ClassifierNotTrainedException {
-        double sumAvgPrecision = 0;
-        CategoryHandler categoryHandler = learner.getClassifier().getCategoryHandler();
+    @Test
+    public void testClassificationDoesNotGrowHeap() throws IOException, ClassifierNotTrainedException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        Learner learner = new Learner(new ArrayList<>(documents));
+        learner.trainClassifier(documents);
+        int datasetSize = learner.getDataset().size();
+        CorpusStatistics statistics = learner.getClassifier().getCorpusStatistics();
+
+        int classificationsNumber = 2_000_000;
+        int samplingInterval = 200_000;
+        Runtime runtime = Runtime.getRuntime();
+        List<Long> usedHeap = new ArrayList<>();
+        for (int i = 0; i < classificationsNumber; i++) {
+            if (i % samplingInterval == 0) {
+                System.gc();
+                usedHeap.add(runtime.totalMemory() - runtime.freeMemory());
+                System.out.println(i + " classifications: " + usedHeap.get(usedHeap.size() - 1) / 1024 + " KB used");
+            }
+            learner.classifyDocument(documents.get(i % documents.size()));
+        }
 
-        for (Learner.Document document : testDocuments) {
-            Vector vector = learner.classifyDocument(document);
-            List<String> classifiedCategoryIds = getSortedCategoryIds(vector, categoryHandler);
+        assertEquals(datasetSize, learner.getDataset().size());
+        assertSame(statistics, learner.getClassifier().getCorpusStatistics());
+        // later samples mustn't exceed the first one taken after warm-up by more than a few megabytes
+        long warmedUpHeap = usedHeap.get(1);
+        for (long heap : usedHeap.subList(1, usedHeap.size())) {
+            assertTrue(heap - warmedUpHeap < 16 * 1024 * 1024);
+        }
+    }
+
+    @Test
+    public void testAddDocumentsUpdatesCorpusStatistics() throws IOException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        Learner learner = new Learner(new ArrayList<>(documents.subList(0, 400)));
+        int documentsNumber = learner.getClassifier().getCorpusStatistics().getDocumentsNumber();
+
+        learner.addDocuments(documents.subList(400, documents.size()));
+
+        assertEquals(400, documentsNumber);
+        assertEquals(documents.size(), learner.getDataset().size());
+        assertEquals(documents.size(), learner.getClassifier().getCorpusStatistics().getDocumentsNumber());
+    }
+
+    @Test
+    public void testClassifyBatch() throws IOException, ClassifierNotTrainedException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        Learner learner = new Learner(new ArrayList<>(documents));
+        learner.trainClassifier(documents);
+
+        BatchClassificationResult<Vector> batchResult = learner.classifyBatch(documents);
+        assertEquals(documents.size(), batchResult.getDocumentsNumber());
+        for (int i = 0; i < documents.size(); i++) {
+            Vector expected = learner.classifyDocument(documents.get(i));
+            assertEquals(0, expected.minus(batchResult.getResults().get(i)).norm(1), 1e-12);
+        }
+
+        BatchClassificationResult<List<Vector.Element>> topResults = learner.classifyBatch(documents, 3);
+        assertEquals(learner.classifyDocumentWithMostConfidentCategory(documents.get(7)),
+                learner.getClassifier().getCategoryHandler().getCategory(topResults.getResults().get(7).get(0).index()).getId());
+
+        long start = System.nanoTime();
+        for (Learner.Document document : documents) {
+            learner.classifyDocument(document);
+        }
+        System.out.println("Sequential: " + documents.size() + " documents in " + (System.nanoTime() - start) / 1e6 + " ms");
+        System.out.println("Batch: " + learner.classifyBatch(documents));
+    }
+
+    @Test
+    public void testClassifyBatchLeavesTrainedModelUntouched() throws IOException, ClassifierNotTrainedException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        Learner learner = new Learner(new ArrayList<>(documents));
+        learner.trainClassifier(documents);
+        LogisticRegressionClassifier classifier = learner.getClassifier();
+        OnlineLogisticRegression model = (OnlineLogisticRegression) classifier.getClassifier();
+        Matrix beta = model.getBeta().clone();
+        // scored sequentially by a sealed copy of the model
+        LogisticRegressionClassifier frozen = classifier.freeze();
+
+        for (int run = 0; run < 5; run++) {
+            BatchClassificationResult<Vector> batchResult = classifier.classifyBatch(documents);
+            for (int i = 0; i < documents.size(); i++) {
+                Vector expected = frozen.classifyDocument(documents.get(i));
+                assertEquals(0, expected.minus(batchResult.getResults().get(i)).norm(Double.POSITIVE_INFINITY), 1e-12);
+            }
+            assertEquals(0, beta.minus(model.getBeta()).aggregate(Functions.MAX, Functions.ABS), 0);
+        }
+    }
+
+    @Test
+    public void testSnapshotPublishing() throws Exception {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        Learner learner = new Learner(new ArrayList<>(documents));
+        learner.trainClassifier(documents);
+        LogisticRegressionClassifier classifier = learner.getClassifier();
+        classifier.enableSnapshotPublishing(100, 0);
+
+        Learner.Document document = documents.get(0);
+        String categoryId = classifier.getCategoryHandler().getCategory(0).getId();
+        Vector published = classifier.classifyDocument(document);
+        for (int i = 1; i < 100; i++) {
+            classifier.train(documents.get(i), categoryId, Collections.emptyList());
+        }
+        assertEquals(0, published.minus(classifier.classifyDocument(document)).norm(1), 0);
+
+        classifier.train(documents.get(100), categoryId, Collections.emptyList());
+        assertTrue(published.minus(classifier.classifyDocument(document)).norm(1) > 0);
+
+        // readers classify while the model keeps learning, every result has to be a complete probability distribution
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        AtomicBoolean training = new AtomicBoolean(true);
+        List<Future<Integer>> classifications = new ArrayList<>();
+        for (int reader = 0; reader < 4; reader++) {
+            classifications.add(readers.submit(() -> {
+                int classificationsNumber = 0;
+                while (training.get()) {
+                    Vector scores = classifier.classifyDocument(documents.get(classificationsNumber % documents.size()));
+                    assertEquals(1, scores.zSum(), 1e-9);
+                    classificationsNumber++;
+                }
+                return classificationsNumber;
+            }));
+        }
+        long start = System.nanoTime();
+        for (int epoch = 0; epoch < 5; epoch++) {
+            for (Learner.Document trainingDoc : documents) {
+                for (String trainingCategoryId : trainingDoc.getCategories()) {
+                    classifier.train(trainingDoc, trainingCategoryId, Collections.emptyList());
+                }
+            }
+        }
+        long trainingNanos = System.nanoTime() - start;
+        training.set(false);
 
-            List<String> expectedCategories = document.getCategories();
-            double avgPrecision = calcAvgPrecision(expectedCategories, classifiedCategoryIds);
-            sumAvgPrecision += avgPrecision;
+        int classificationsNumber = 0;
+        for (Future<Integer> future : classifications) {
+            classificationsNumber += future.get();
         }
+        readers.shutdown();
+        System.out.println("Trained 5 epochs in " + trainingNanos / 1e6
+                + " ms while serving " + classificationsNumber + " classifications");
+    }
+
+    @Test
+    public void testQuantizedModelsPrecision() throws IOException, ClassifierNotTrainedException {
+        for (String dataset : Arrays.asList(datasetLocation, "src/main/resources/dataset/wellsfargo.json")) {
+            List<Learner.Document> allDocuments = Learner.convertJsonToDocuments(dataset);
+            Collections.shuffle(allDocuments, new Random(42));
+            List<Learner.Document> trainingDocuments = allDocuments.subList(0, 4 * allDocuments.size() / 5);
+            List<Learner.Document> testDocuments = allDocuments.subList(4 * allDocuments.size() / 5, allDocuments.size());
+
+            Map<WeightPrecision, Double> avgPrecisions = new EnumMap<>(WeightPrecision.class);
+            Map<WeightPrecision, Long> modelSizes = new EnumMap<>(WeightPrecision.class);
+            int runs = 10;
+            for (int run = 0; run < runs; run++) {
+                Learner learner = new Learner(new ArrayList<>(trainingDocuments));
+                learner.trainClassifier(trainingDocuments);
+
+                for (WeightPrecision precision : WeightPrecision.values()) {
+                    LogisticRegressionClassifier frozen = learner.getClassifier().freeze(precision);
+                    avgPrecisions.merge(precision, AveragePrecision.evaluate(frozen, testDocuments) / runs, Double::sum);
+                    modelSizes.put(precision, ((FrozenLinearModel) frozen.getClassifier()).estimateSizeInBytes());
+                }
+            }
 
-        return sumAvgPrecision / testDocuments.size();
+            System.out.println(dataset);
+            for (WeightPrecision precision : WeightPrecision.values()) {
+                System.out.println(String.format("  %-7s average precision %.4f, model %d KB", precision,
+                        avgPrecisions.get(precision), modelSizes.get(precision) / 1024));
+            }
+            // the same models are quantized, so precision may only drop by the rounding of the coefficients
+            double doublePrecision = avgPrecisions.get(WeightPrecision.DOUBLE);
+            assertEquals(doublePrecision, avgPrecisions.get(WeightPrecision.FLOAT16), 0.005);
+            assertEquals(doublePrecision, avgPrecisions.get(WeightPrecision.INT8), 0.02);
+        }
+    }
+
+    @Test
+    public void testResumeTrainingFromCheckpoint() throws IOException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        Path checkpointsDirectory = Files.createTempDirectory("checkpoints");
+        long seed = 42;
+
+        Learner uninterruptedLearner = new Learner(new ArrayList<>(documents));
+        try (TrainingCheckpointer checkpointer = new TrainingCheckpointer(checkpointsDirectory.resolve("full"), 1000)) {
+            uninterruptedLearner.trainClassifier(documents, checkpointer, seed);
+        }
+
+        // interrupts the training thread on the third checkpoint, as if the process were stopped
+        Learner interruptedLearner = new Learner(new ArrayList<>(documents));
+        Path interruptedDirectory = checkpointsDirectory.resolve("interrupted");
+        try (TrainingCheckpointer checkpointer = new TrainingCheckpointer(interruptedDirectory, 1000) {
+            private int checkpoints;
+
+            @Override
+            public synchronized boolean checkpoint(LogisticRegressionClassifier classifier, int epoch, int position,
+                                                   long seed) {
+                if (++checkpoints == 3) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.checkpoint(classifier, epoch, position, seed);
+            }
+        }) {
+            interruptedLearner.trainClassifier(documents, checkpointer, seed);
+            fail("Training should have been interrupted.");
+        } catch (InterruptedIOException e) {
+            Thread.interrupted();
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Training interrupted at epoch"));
+        }
+
+        Learner resumedLearner = new Learner(new ArrayList<>(documents));
+        long start = System.nanoTime();
+        try (TrainingCheckpointer checkpointer = new TrainingCheckpointer(interruptedDirectory, 1000)) {
+            resumedLearner.resumeTraining(documents, checkpointer);
+        }
+        System.out.println("Resumed training finished in " + (System.nanoTime() - start) / 1e6 + " ms");
+
+        Matrix expected = ((OnlineLogisticRegression) uninterruptedLearner.getClassifier().getClassifier()).getBeta();
+        Matrix actual = ((OnlineLogisticRegression) resumedLearner.getClassifier().getClassifier()).getBeta();
+        assertEquals(0, expected.minus(actual).aggregate(Functions.MAX, Functions.ABS), 0);
+    }
+
+    @Test
+    public void testCheckpointWriteFailureIsReported() throws IOException {
+        List<Learner.Document> documents = Learner.convertJsonToDocuments(datasetLocation);
+        Learner learner = new Learner(new ArrayList<>(documents));
+        Path checkpointsDirectory = Files.createTempDirectory("checkpoints");
+        TrainingCheckpointer checkpointer = new TrainingCheckpointer(checkpointsDirectory, 1000);
+        // checkpoints can't be written into a directory which doesn't exist any more
+        Files.delete(checkpointsDirectory);
+
+        assertTrue(checkpointer.checkpoint(learner.getClassifier(), 0, 0, 42));
+        try {
+            // waits for the pending checkpoint
+            checkpointer.close();
+            fail("Failed checkpoint should have been reported.");
+        } catch (IOException e) {
+            assertTrue(e.toString(), e.getMessage().contains(checkpointsDirectory.toString()));
+        }
     }
 
     private void analyzeBestConfidentCategoriesPrecisionEvaluation(int testDocumentsNumber,
@@ -170,39 +533,4 @@ public class LearnerTest {
         double overallAvgPrecision = avgPrecision / 50;
         System.out.println("Average precision: " + overallAvgPrecision);
     }
-
-    private List<String> getSortedCategoryIds(Vector vector, CategoryHandler categoryHandler) {
-        List<String> sortedCategoryIds = new ArrayList<>();
-
-        Map<Double, String> map = new TreeMap<>();
-        for (Vector.Element element : vector.all()) {
-            map.put(element.get(), categoryHandler.getCategory(element.index()).getId());
-        }
-        for (Map.Entry<Double, String> entry : map.entrySet()) {
-            sortedCategoryIds.add(entry.getValue());
-        }
-        Collections.reverse(sortedCategoryIds);
-
-        return sortedCategoryIds;
-    }
-
-    private double calcAvgPrecision(Collection expected, Collection actual) {
-        double s = 0.0;
-        int n = actual.size(); // count of retrieved allDocuments
-        int numRelevant = 0; // to keep track of number of relevant allDocuments seen so far
-
-        Iterator iterator = actual.iterator();
-        for (int i = 0; i < n; i++) {
-            Object o = iterator.next();
-            if (expected.contains(o)) {
-                ++numRelevant;
-                s += ((double)numRelevant / (double)(i + 1));
-                if (numRelevant == expected.size()) {
-                    break;
-                }
-            }
-        }
-
-        return s / (double)expected.size();
-    }
 }
@@ -5,6 +5,8 @@ import com.genesys.knowledge.domain.Document;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -62,7 +64,7 @@ public class CategoryHandlerTest {
     public void testDeserializeCategoryOrderNumbers() {
         Category category = new Category("category");
         handler.addCategory(category);
-        CategoryHandler.serializeCategoryOrderNumbers();
+        handler.serializeCategoryOrderNumbers();
 
         handler.clear();
 
@@ -70,10 +72,31 @@ public class CategoryHandlerTest {
         int expectedQuantity = 0;
         assertEquals(expectedQuantity, actualCategoriesQuantity);
 
-        CategoryHandler.deserializeCategoryOrderNumbers();
+        handler.deserializeCategoryOrderNumbers();
 
         actualCategoriesQuantity = handler.getCategoriesQuantity();
         expectedQuantity = 1;
         assertEquals(expectedQuantity, actualCategoriesQuantity);
     }
+
+    @Test
+    public void testCategoryLookups() {
+        handler.addCategory(new Category("category1"));
+        handler.addCategory(new Category("category2"));
+
+        assertEquals(1, handler.resolveCategoryOrderNumber(new Category("category2")));
+        assertEquals(2, handler.resolveCategoryOrderNumber(new Category("category3")));
+        assertEquals("category3", handler.getCategory(2).getId());
+        assertEquals(Arrays.asList("category1", "category2", "category3"), handler.getCategoryIds());
+    }
+
+    @Test
+    public void testHandlersAreIndependent() {
+        CategoryHandler anotherHandler = new CategoryHandler();
+        handler.addCategory(new Category("category1"));
+        anotherHandler.addCategory(new Category("category2"));
+
+        assertEquals(1, handler.getCategoriesQuantity());
+        assertEquals("category2", anotherHandler.getCategory(0).getId());
+    }
 }
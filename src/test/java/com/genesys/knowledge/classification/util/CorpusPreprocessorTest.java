@@ -0,0 +1,115 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.knowledge.classification.classifier.LogisticRegressionClassifier;
+import com.genesys.knowledge.classification.classifier.NaiveBayesClassifier;
+import com.genesys.knowledge.classification.learner.Learner;
+import com.genesys.knowledge.domain.Category;
+import com.genesys.knowledge.domain.Document;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CorpusPreprocessorTest {
+
+    private static List<Document> documents;
+
+    @BeforeClass
+    public static void readDocuments() throws IOException {
+        documents = new ArrayList<>();
+        for (Learner.Document learnerDocument : Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json")) {
+            Document document = new Document(learnerDocument.getBody().getOriginal());
+            for (String categoryId : learnerDocument.getCategories()) {
+                document.addCategory(new Category(categoryId));
+            }
+            documents.add(document);
+        }
+    }
+
+    @Test
+    public void testStatisticsEqualSequentialComputation() {
+        PreprocessedCorpus corpus = new CorpusPreprocessor().preprocess(documents);
+
+        assertEquals(documents.size(), corpus.getDocumentsNumber());
+        assertEquals(DocumentHandler.findMaxNumberOfTokens(documents), corpus.getMaxNumberOfTokens());
+        assertEquals(DocumentHandler.findUniqueCategoriesNumber(documents), corpus.getCategoryCounts().size());
+        long totalNumberOfTokens = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            String text = documents.get(i).getText();
+            List<String> expectedTokens = text != null
+                    ? DocumentHandler.convertTextToTokens(text, null)
+                    : Collections.emptyList();
+            assertEquals(expectedTokens, corpus.getTokens(i));
+            totalNumberOfTokens += expectedTokens.size();
+        }
+        assertEquals(totalNumberOfTokens, corpus.getTotalNumberOfTokens());
+    }
+
+    @Test
+    public void testCategoryCounts() {
+        Document doc1 = new Document("Test text");
+        doc1.addCategory(new Category("1"));
+        doc1.addCategory(new Category("2"));
+        Document doc2 = new Document(null);
+        doc2.addCategory(new Category("2"));
+        Document doc3 = new Document("Big long test text with an annex");
+        doc3.addCategory(new Category("3"));
+        doc3.addCategory(new Category("3"));
+
+        PreprocessedCorpus corpus = new CorpusPreprocessor(TokenizationService.getDefault(), null, 2)
+                .preprocess(Arrays.asList(doc1, doc2, doc3));
+
+        assertEquals(3, corpus.getCategoryCounts().size());
+        assertEquals(Arrays.asList("1", "2", "3"), new ArrayList<>(corpus.getCategoryCounts().keySet()));
+        assertEquals(1, (int) corpus.getCategoryCounts().get("1"));
+        assertEquals(2, (int) corpus.getCategoryCounts().get("2"));
+        assertEquals(1, (int) corpus.getCategoryCounts().get("3"));
+        assertTrue(corpus.getTokens(1).isEmpty());
+        assertEquals(5, corpus.getMaxNumberOfTokens());
+    }
+
+    @Test
+    public void testClassifiersGetCategoriesOfCorpus() {
+        CategoryHandler categoryHandler = new CategoryHandler();
+        categoryHandler.initHandler(documents);
+
+        PreprocessedCorpus corpus = new CorpusPreprocessor().preprocess(documents);
+        CategoryHandler corpusCategoryHandler = new CategoryHandler();
+        corpusCategoryHandler.initHandler(corpus);
+
+        assertEquals(categoryHandler.getCategoryIds(), corpusCategoryHandler.getCategoryIds());
+        assertEquals(categoryHandler.getCategoryIds(),
+                new LogisticRegressionClassifier(corpus).getCategoryHandler().getCategoryIds());
+        assertEquals(categoryHandler.getCategoryIds(),
+                new NaiveBayesClassifier(documents).getCategoryHandler().getCategoryIds());
+    }
+
+    @Test
+    public void testPreprocessingTime() {
+        new CorpusPreprocessor().preprocess(documents.subList(0, 10));
+
+        long start = System.nanoTime();
+        DocumentHandler.findMaxNumberOfTokens(documents);
+        DocumentHandler.findUniqueCategoriesNumber(documents);
+        for (Document document : documents) {
+            if (document.getText() != null) {
+                DocumentHandler.convertTextToTokens(document.getText(), null);
+            }
+        }
+        double sequentialMillis = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        new CorpusPreprocessor().preprocess(documents);
+        double preprocessingMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.println(String.format("%d documents: separate passes %.1f ms, single parallel pass %.1f ms, %.1fx",
+                documents.size(), sequentialMillis, preprocessingMillis, sequentialMillis / preprocessingMillis));
+    }
+}
@@ -0,0 +1,104 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.knowledge.classification.learner.Learner;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrimitiveTfIdfTest {
+
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void testTfIdfMatchesGenericVersion() {
+        List<List<String>> documents = Arrays.asList(
+                Arrays.asList("test", "text", "test", "machine"),
+                Arrays.asList("real", "document", "text"),
+                Collections.singletonList("machine"));
+        Map<String, Integer> termIds = new HashMap<>();
+        List<int[]> idDocuments = internTerms(documents, termIds);
+
+        for (TfIdf.TfType type : TfIdf.TfType.values()) {
+            Map<String, Double> idf = TfIdf.idf(toVocabularies(documents));
+            double[] primitiveIdf = PrimitiveTfIdf.idf(idDocuments, termIds.size());
+
+            for (int i = 0; i < documents.size(); i++) {
+                Map<String, Double> expected = TfIdf.tfIdf(TfIdf.tf(documents.get(i), type), idf, TfIdf.Normalization.COSINE);
+                PrimitiveTfIdf.TermWeights actual = PrimitiveTfIdf.tfIdf(
+                        PrimitiveTfIdf.tf(idDocuments.get(i), type), primitiveIdf, TfIdf.Normalization.COSINE);
+
+                assertEquals(expected.size(), actual.size());
+                for (Map.Entry<String, Double> entry : expected.entrySet()) {
+                    assertEquals(entry.getValue(), actual.get(termIds.get(entry.getKey())), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTfIdfPerformanceOnDatasets() throws IOException {
+        for (String datasetLocation : Arrays.asList("src/main/resources/dataset/boa.json",
+                                                    "src/main/resources/dataset/wellsfargo.json")) {
+            List<List<String>> documents = new ArrayList<>();
+            for (Learner.Document document : Learner.convertJsonToDocuments(datasetLocation)) {
+                List<String> terms = new ArrayList<>(document.getTitle().getTokens());
+                terms.addAll(document.getBody().getTokens());
+                documents.add(terms);
+            }
+            Map<String, Integer> termIds = new HashMap<>();
+            List<int[]> idDocuments = internTerms(documents, termIds);
+            List<Set<String>> vocabularies = toVocabularies(documents);
+
+            double checksum = 0;
+            long start = System.nanoTime();
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+                Map<String, Double> idf = TfIdf.idf(vocabularies);
+                for (List<String> document : documents) {
+                    checksum += TfIdf.tfIdf(TfIdf.tf(document), idf, TfIdf.Normalization.COSINE).size();
+                }
+            }
+            long genericNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+                double[] idf = PrimitiveTfIdf.idf(idDocuments, termIds.size());
+                for (int[] document : idDocuments) {
+                    checksum -= PrimitiveTfIdf.tfIdf(PrimitiveTfIdf.tf(document), idf, TfIdf.Normalization.COSINE).size();
+                }
+            }
+            long primitiveNanos = System.nanoTime() - start;
+
+            assertEquals(0, checksum, 0);
+            System.out.println(datasetLocation + ": generic tf-idf " + genericNanos / ITERATIONS / 1000 + " us/corpus, "
+                    + "primitive tf-idf " + primitiveNanos / ITERATIONS / 1000 + " us/corpus");
+        }
+    }
+
+    private static List<int[]> internTerms(List<List<String>> documents, Map<String, Integer> termIds) {
+        List<int[]> idDocuments = new ArrayList<>();
+        for (List<String> document : documents) {
+            int[] ids = new int[document.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Integer id = termIds.get(document.get(i));
+                if (id == null) {
+                    id = termIds.size();
+                    termIds.put(document.get(i), id);
+                }
+                ids[i] = id;
+            }
+            idDocuments.add(ids);
+        }
+        return idDocuments;
+    }
+
+    private static List<Set<String>> toVocabularies(List<List<String>> documents) {
+        List<Set<String>> vocabularies = new ArrayList<>();
+        for (List<String> document : documents) {
+            vocabularies.add(new HashSet<>(document));
+        }
+        return vocabularies;
+    }
+}
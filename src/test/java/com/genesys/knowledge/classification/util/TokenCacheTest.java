@@ -0,0 +1,208 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.knowledge.classification.learner.Learner;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TokenCacheTest {
+
+    private static final DocumentHandler.TokenizerType TYPE = DocumentHandler.TokenizerType.StandardTokenizer;
+
+    private static List<Learner.Document> documents;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void readDocuments() throws IOException {
+        documents = new ArrayList<>();
+        for (Learner.Document document : Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json")) {
+            if (document.getBody().getOriginal() != null) {
+                documents.add(document);
+            }
+        }
+    }
+
+    @Test
+    public void testCachedTokensSurviveReopening() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        TokenizationService service = TokenizationService.getDefault();
+
+        try (TokenCache cache = new TokenCache(file, service)) {
+            for (Learner.Document document : documents) {
+                cache.tokenize(document.getId(), document.getBody().getOriginal(), TYPE);
+            }
+        }
+
+        try (TokenCache cache = new TokenCache(file, service)) {
+            assertEquals(documents.size(), cache.getEntriesNumber());
+            for (Learner.Document document : documents) {
+                String text = document.getBody().getOriginal();
+                assertEquals(service.tokenize(text, TYPE), cache.get(document.getId(), text, TYPE));
+            }
+        }
+    }
+
+    @Test
+    public void testChangedTextInvalidatesEntry() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            cache.tokenize("1", "Test text sample", TYPE);
+            assertNull(cache.get("1", "Another sample", TYPE));
+            assertEquals(Arrays.asList("anoth", "sampl"), cache.tokenize("1", "Another sample", TYPE));
+        }
+
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            assertEquals(1, cache.getEntriesNumber());
+            assertNull(cache.get("1", "Test text sample", TYPE));
+            assertEquals(Arrays.asList("anoth", "sampl"), cache.get("1", "Another sample", TYPE));
+            // the other tokenizer has its own entries
+            assertNull(cache.get("1", "Another sample", DocumentHandler.TokenizerType.FreeLingTokenizer));
+        }
+    }
+
+    @Test
+    public void testChangedStopWordsInvalidateEntries() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+
+        try (TokenCache cache = new TokenCache(file, new TokenizationService(Arrays.asList("test")))) {
+            assertEquals(Arrays.asList("text", "sampl"), cache.tokenize(null, "Test text sample", TYPE));
+            assertEquals(Arrays.asList("text", "sampl"), cache.get(null, "Test text sample", TYPE));
+        }
+
+        try (TokenCache cache = new TokenCache(file, new TokenizationService(Arrays.asList("test", "text")))) {
+            assertNull(cache.get(null, "Test text sample", TYPE));
+            assertEquals(Arrays.asList("sampl"), cache.tokenize(null, "Test text sample", TYPE));
+        }
+    }
+
+    @Test
+    public void testPartiallyWrittenRecordIsCutOff() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        long completeSize;
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            cache.tokenize("1", "Test text sample", TYPE);
+            completeSize = cache.getSizeInBytes();
+            cache.tokenize("2", "Another sample", TYPE);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            assertEquals(completeSize, cache.getSizeInBytes());
+            assertEquals(Arrays.asList("test", "text", "sampl"), cache.get("1", "Test text sample", TYPE));
+            assertNull(cache.get("2", "Another sample", TYPE));
+        }
+    }
+
+    @Test
+    public void testCorruptRecordsAreCutOff() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        long completeSize;
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            cache.tokenize("1", "Test text sample", TYPE);
+            completeSize = cache.getSizeInBytes();
+            cache.tokenize("2", "Another sample", TYPE);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // a flipped byte of the last token of the second record
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), channel.size() - 1);
+            // a tail of zeros, as if the file was extended but its records were never written
+            channel.write(ByteBuffer.allocate(64), channel.size());
+        }
+
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            assertEquals(completeSize, cache.getSizeInBytes());
+            assertEquals(1, cache.getEntriesNumber());
+            assertNull(cache.get("2", "Another sample", TYPE));
+            assertEquals(Arrays.asList("anoth", "sampl"), cache.tokenize("2", "Another sample", TYPE));
+        }
+    }
+
+    @Test
+    public void testFullCacheStopsCaching() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        long maxSize;
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            cache.tokenize("1", "Test text sample", TYPE);
+            maxSize = cache.getSizeInBytes();
+        }
+
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault(), maxSize)) {
+            assertFalse(cache.put("2", "Another sample", TYPE, Arrays.asList("anoth", "sampl")));
+            assertEquals(Arrays.asList("anoth", "sampl"), cache.tokenize("2", "Another sample", TYPE));
+            assertNull(cache.get("2", "Another sample", TYPE));
+            assertEquals(maxSize, cache.getSizeInBytes());
+        }
+    }
+
+    @Test
+    public void testStaleRecordsAreCompacted() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        long latestSize;
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            for (int version = 0; version < 10; version++) {
+                cache.tokenize("1", "Test text sample " + version, TYPE);
+            }
+            cache.tokenize("2", "Another sample", TYPE);
+            long size = cache.getSizeInBytes();
+            cache.tokenize("3", "Test text sample", TYPE);
+            latestSize = cache.getSizeInBytes() - size;
+        }
+
+        try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+            assertEquals(3, cache.getEntriesNumber());
+            assertEquals(TokenizationService.getDefault().tokenize("Test text sample 9", TYPE),
+                    cache.get("1", "Test text sample 9", TYPE));
+            assertEquals(Arrays.asList("anoth", "sampl"), cache.get("2", "Another sample", TYPE));
+            assertEquals(Arrays.asList("test", "text", "sampl"), cache.get("3", "Test text sample", TYPE));
+            assertTrue(cache.getSizeInBytes() < 6 + 4 * latestSize);
+        }
+    }
+
+    @Test
+    public void testCachedTokenizationTime() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("tokens.cache");
+        for (DocumentHandler.TokenizerType type : DocumentHandler.TokenizerType.values()) {
+            long start = System.nanoTime();
+            try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+                for (Learner.Document document : documents) {
+                    cache.tokenize(document.getId(), document.getBody().getOriginal(), type);
+                }
+            }
+            double coldMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            long size;
+            try (TokenCache cache = new TokenCache(file, TokenizationService.getDefault())) {
+                for (Learner.Document document : documents) {
+                    cache.tokenize(document.getId(), document.getBody().getOriginal(), type);
+                }
+                size = cache.getSizeInBytes();
+            }
+            double warmMillis = (System.nanoTime() - start) / 1e6;
+
+            System.out.println(String.format("%-18s %d documents: tokenized %.1f ms, from cache %.1f ms, %.1fx, "
+                            + "cache %d KB", type, documents.size(), coldMillis, warmMillis, coldMillis / warmMillis,
+                    size / 1024));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.genesys.knowledge.classification.util;
+
+import com.genesys.elasticsearch.index.analysis.tokenizers.FreeLingTokenizer;
+import com.genesys.knowledge.classification.learner.Learner;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.core.StopFilter;
+import org.apache.lucene.analysis.icu.ICUFoldingFilter;
+import org.apache.lucene.analysis.snowball.SnowballFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenizationServiceTest {
+
+    private static final int TEXTS_NUMBER = 200;
+
+    private static List<String> texts;
+
+    @BeforeClass
+    public static void readTexts() throws IOException {
+        texts = new ArrayList<>();
+        for (Learner.Document document : Learner.convertJsonToDocuments("src/main/resources/dataset/boa.json")) {
+            String text = document.getBody().getOriginal();
+            if (text != null && !text.isEmpty()) {
+                texts.add(text);
+            }
+            if (texts.size() == TEXTS_NUMBER) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    public void testTokensEqualPerCallTokenization() {
+        for (DocumentHandler.TokenizerType type : DocumentHandler.TokenizerType.values()) {
+            for (String text : texts) {
+                assertEquals(convertTextToTokensPerCall(text, type), DocumentHandler.convertTextToTokens(text, type));
+            }
+        }
+    }
+
+    @Test
+    public void testTokenizeFromManyThreads() throws Exception {
+        TokenizationService service = TokenizationService.getDefault();
+        List<List<String>> expected = new ArrayList<>();
+        for (String text : texts) {
+            expected.add(service.tokenize(text, DocumentHandler.TokenizerType.StandardTokenizer));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<List<String>>>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                List<List<String>> tokens = new ArrayList<>();
+                for (String text : texts) {
+                    tokens.add(service.tokenize(text, DocumentHandler.TokenizerType.StandardTokenizer));
+                }
+                return tokens;
+            }));
+        }
+        for (Future<List<List<String>>> future : futures) {
+            assertEquals(expected, future.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTokensPerSecond() {
+        for (DocumentHandler.TokenizerType type : DocumentHandler.TokenizerType.values()) {
+            // warm up both ways, so the cached chain of this thread is built before it's measured
+            convertTextToTokensPerCall(texts.get(0), type);
+            DocumentHandler.convertTextToTokens(texts.get(0), type);
+
+            long tokens = 0;
+            long start = System.nanoTime();
+            for (String text : texts) {
+                tokens += convertTextToTokensPerCall(text, type).size();
+            }
+            double perCallTokensPerSecond = tokens / ((System.nanoTime() - start) / 1e9);
+
+            tokens = 0;
+            start = System.nanoTime();
+            for (String text : texts) {
+                tokens += DocumentHandler.convertTextToTokens(text, type).size();
+            }
+            double cachedTokensPerSecond = tokens / ((System.nanoTime() - start) / 1e9);
+
+            System.out.println(String.format("%-18s per call %.0f tokens/s, cached %.0f tokens/s, %.1fx", type,
+                    perCallTokensPerSecond, cachedTokensPerSecond, cachedTokensPerSecond / perCallTokensPerSecond));
+        }
+    }
+
+    @Test
+    public void testCustomStopWords() {
+        TokenizationService service = new TokenizationService(Arrays.asList("test", "text"));
+
+        List<String> tokens = service.tokenize("Test text sample", DocumentHandler.TokenizerType.StandardTokenizer);
+
+        assertEquals(Arrays.asList("sampl"), tokens);
+        service.close();
+    }
+
+    /**
+     * Tokenizes the text the way {@link DocumentHandler#convertTextToTokens} did before tokenizers were cached:
+     * stop words are read and the whole chain is built on every call.
+     */
+    private static List<String> convertTextToTokensPerCall(String text, DocumentHandler.TokenizerType tokenizerType) {
+        List<String> resultTokens = new ArrayList<>();
+
+        TokenStream tokenStream;
+        if ((tokenizerType == null) || (tokenizerType == DocumentHandler.TokenizerType.FreeLingTokenizer)) {
+            tokenStream = new FreeLingTokenizer(new StringReader(text),
+                    TokenizationService.FREELING_DATA_DIRECTORY,
+                    "en", null, null, false);
+        } else {
+            tokenStream = new StandardTokenizer(new BufferedReader(new StringReader(text)));
+        }
+
+        tokenStream = new LowerCaseFilter(tokenStream);
+
+        ArrayList<String> stopWordsList = new ArrayList<>();
+        try (Scanner scanner = new Scanner(new File(TokenizationService.DEFAULT_STOP_WORDS_LOCATION))) {
+            while (scanner.hasNext()) {
+                stopWordsList.add(scanner.next());
+            }
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+        }
+        CharArraySet stopWordsSet = new CharArraySet(stopWordsList, true);
+        tokenStream = new StopFilter(tokenStream, stopWordsSet);
+
+        tokenStream = new ICUFoldingFilter(tokenStream);
+
+        if (tokenizerType == DocumentHandler.TokenizerType.StandardTokenizer) {
+            tokenStream = new SnowballFilter(tokenStream, "English"); // stemming
+        }
+
+        try {
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                resultTokens.add(tokenStream.getAttribute(CharTermAttribute.class).toString());
+            }
+            tokenStream.end();
+            tokenStream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return resultTokens;
+    }
+}
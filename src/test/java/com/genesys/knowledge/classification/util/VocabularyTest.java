@@ -0,0 +1,67 @@
+package com.genesys.knowledge.classification.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class VocabularyTest {
+
+    @Test
+    public void testInternAssignsDenseIds() {
+        Vocabulary vocabulary = new Vocabulary();
+
+        assertEquals(0, vocabulary.intern("first"));
+        assertEquals(1, vocabulary.intern("second"));
+        assertEquals(0, vocabulary.intern("first"));
+        assertEquals(-1, vocabulary.getId("third"));
+        assertEquals(2, vocabulary.size());
+        assertEquals(Arrays.asList("second", "first"), vocabulary.getTerms(new int[]{1, 0}));
+        assertEquals(Arrays.asList("second", "first"), vocabulary.viewTerms(new int[]{1, 0}));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUnknownTermId() {
+        new Vocabulary().getTerm(0);
+    }
+
+    @Test
+    public void testConcurrentInterning() throws Exception {
+        int threadsNumber = 8;
+        int termsNumber = 50_000;
+        Vocabulary vocabulary = new Vocabulary();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threadsNumber; thread++) {
+                futures.add(executor.submit(() -> {
+                    int[] ids = new int[termsNumber];
+                    for (int i = 0; i < termsNumber; i++) {
+                        ids[i] = vocabulary.intern("term" + i);
+                        // an id is resolvable as soon as it's returned
+                        assertEquals("term" + i, vocabulary.getTerm(ids[i]));
+                    }
+                    return ids;
+                }));
+            }
+
+            int[] expected = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                int[] ids = future.get();
+                for (int i = 0; i < termsNumber; i++) {
+                    assertEquals(expected[i], ids[i]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(termsNumber, vocabulary.size());
+    }
+}